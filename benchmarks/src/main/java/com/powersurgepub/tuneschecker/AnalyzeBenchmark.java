@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures the analysis of a loaded collection, with a few seeded 
+ anomalies, on one thread and on several. The anomalies found are only 
+ counted, so that the building of the anomaly tree is not measured. 
+
+ @author Herb Bowie
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class AnalyzeBenchmark {
+  
+  @Param({"10000", "100000"})
+  private     int                 tracks;
+  
+  @Param({"1", "4"})
+  private     int                 parallelism;
+  
+  private     File                mediaFolder;
+  private     TunesCollection     tunes;
+  private     TunesAnalysis       analysis;
+  
+  @Setup(Level.Trial)
+  public void loadLibrary() 
+      throws IOException {
+    mediaFolder = File.createTempFile("iTunes Media ", "");
+    mediaFolder.delete();
+    tunes = LibraryFixture.loadLibrary(tracks, mediaFolder);
+    analysis = new TunesAnalysis();
+    analysis.setParallelism(parallelism);
+  }
+  
+  @TearDown(Level.Trial)
+  public void deleteLibrary() {
+    LibraryFixture.deleteFolder(mediaFolder);
+  }
+  
+  @Benchmark
+  public int analyze() {
+    CountingAnomalySink sink = new CountingAnomalySink();
+    tunes.analyze(analysis, sink);
+    return sink.getCount();
+  }
+  
+}
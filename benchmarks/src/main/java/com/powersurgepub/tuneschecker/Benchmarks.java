@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import org.openjdk.jmh.profile.*;
+  import org.openjdk.jmh.runner.*;
+  import org.openjdk.jmh.runner.options.*;
+
+/**
+ Runs the benchmarks, accepting the usual JMH command line options, and 
+ always adding the GC profiler, so that the allocation rate of each 
+ benchmark is reported along with its throughput. 
+
+ @author Herb Bowie
+ */
+public class Benchmarks {
+  
+  public static void main(String[] args) 
+      throws IOException, RunnerException, CommandLineOptionException {
+    
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    Runner runner = new Runner(new OptionsBuilder()
+        .parent(commandLine)
+        .addProfiler(GCProfiler.class)
+        .build());
+    if (commandLine.shouldHelp()) {
+      commandLine.showHelp();
+    }
+    else
+    if (commandLine.shouldList()) {
+      runner.list();
+    } else {
+      runner.run();
+    }
+  }
+  
+}
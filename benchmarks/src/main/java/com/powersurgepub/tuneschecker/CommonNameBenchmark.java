@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.nio.charset.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures the reduction of names to their common forms. With repeated 
+ names, as in a real library, nearly every name is found in the cache of 
+ common names; with distinct names, there are more names than the cache 
+ can hold, so that every name must be reduced afresh; and with a million 
+ names, the cache is swamped on the scale of the largest libraries. 
+ 
+ The million names are generated, unless a file of real names is given 
+ with -p nameFile=path, holding one name per line. Only the text before 
+ the first tab on each line is used, so that the corpus of common names 
+ used by the tests may be given as well. The names in the file are 
+ repeated, with a number appended, until there are a million of them. 
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CommonNameBenchmark {
+  
+  public static final int         REPEATED_NAMES = 1024;
+  public static final int         DISTINCT_NAMES 
+      = CommonNameCache.DEFAULT_CAPACITY * 4;
+  public static final int         MILLION_NAMES = 1000000;
+  
+  @Param({"repeated", "distinct", "million"})
+  private     String              names;
+  
+  @Param({""})
+  private     String              nameFile;
+  
+  private     String[]            artistNames;
+  private     String[]            trackNames;
+  private     int                 next = 0;
+  
+  @Setup(Level.Trial)
+  public void generateNames() 
+      throws IOException {
+    int numberOfNames = REPEATED_NAMES;
+    if (names.equals("distinct")) {
+      numberOfNames = DISTINCT_NAMES;
+    }
+    else
+    if (names.equals("million")) {
+      numberOfNames = MILLION_NAMES;
+      if (nameFile.length() > 0) {
+        readNames(new File(nameFile), numberOfNames);
+        TunesCommonName.getCache().clear();
+        return;
+      }
+    }
+    List<TunesLibraryGenerator.Track> tracks 
+        = LibraryFixture.generateTracks(numberOfNames);
+    artistNames = new String[numberOfNames];
+    trackNames = new String[numberOfNames];
+    for (int i = 0; i < numberOfNames; i++) {
+      TunesLibraryGenerator.Track track = tracks.get(i);
+      artistNames[i] = track.getArtist() + " " + String.valueOf(i);
+      trackNames[i] = track.getName() + " (Take " + String.valueOf(i) + ")";
+    }
+    TunesCommonName.getCache().clear();
+  }
+  
+  /**
+   Read the names to be reduced from a file, using each name both as an 
+   artist name and as a track name. 
+  
+   @param file          The file of names, one per line. 
+   @param numberOfNames The number of names wanted. 
+  */
+  private void readNames(File file, int numberOfNames) 
+      throws IOException {
+    List<String> fileNames = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader
+        (new FileInputStream(file), StandardCharsets.UTF_8));
+    try {
+      String line = reader.readLine();
+      while (line != null) {
+        int tab = line.indexOf('\t');
+        if (tab >= 0) {
+          line = line.substring(0, tab);
+        }
+        fileNames.add(line);
+        line = reader.readLine();
+      }
+    } finally {
+      reader.close();
+    }
+    if (fileNames.isEmpty()) {
+      throw new IOException("No names found in " + file.toString());
+    }
+    artistNames = new String[numberOfNames];
+    trackNames = new String[numberOfNames];
+    for (int i = 0; i < numberOfNames; i++) {
+      String name = fileNames.get(i % fileNames.size());
+      if (i >= fileNames.size()) {
+        name = name + " " + String.valueOf(i / fileNames.size());
+      }
+      artistNames[i] = name;
+      trackNames[i] = name;
+    }
+  }
+  
+  @Benchmark
+  public TunesCommonName setArtistName() {
+    TunesCommonName commonName = new TunesCommonName();
+    commonName.setName(artistNames[next], TunesCommonName.ARTIST_NAME);
+    next = (next + 1) % artistNames.length;
+    return commonName;
+  }
+  
+  @Benchmark
+  public TunesCommonName setTrackName() {
+    TunesCommonName commonName = new TunesCommonName();
+    commonName.setName(trackNames[next], TunesCommonName.TRACK_NAME);
+    next = (next + 1) % trackNames.length;
+    return commonName;
+  }
+  
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.util.*;
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures comparisons, equality checks and hash codes of common names, 
+ as made when artists, albums and tracks are stored into the collection's 
+ sorted maps. None of these should allocate anything, which the GC 
+ profiler's gc.alloc.rate.norm confirms. 
+ 
+ Each name is paired with a separately built name: every other pair is 
+ equal, so that equals must compare the full keys, and the others differ, 
+ mostly only near the end. 
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CommonNameCompareBenchmark {
+  
+  public static final int         PAIRS = 4096;
+  
+  private     TunesCommonName[]   names;
+  private     TunesCommonName[]   others;
+  private     int                 next = 0;
+  
+  @Setup(Level.Trial)
+  public void buildNames() {
+    List<TunesLibraryGenerator.Track> tracks 
+        = LibraryFixture.generateTracks(PAIRS + 1);
+    names = new TunesCommonName[PAIRS];
+    others = new TunesCommonName[PAIRS];
+    for (int i = 0; i < PAIRS; i++) {
+      String name = tracks.get(i).getArtist() + " " + tracks.get(i).getName();
+      names[i] = new TunesCommonName();
+      names[i].setName(name, TunesCommonName.ARTIST_NAME);
+      others[i] = new TunesCommonName();
+      if (i % 2 == 0) {
+        others[i].setName(name, TunesCommonName.ARTIST_NAME);
+      } else {
+        others[i].setName(name + " " + String.valueOf(i), 
+            TunesCommonName.ARTIST_NAME);
+      }
+    }
+  }
+  
+  @Benchmark
+  public int compareTo() {
+    int result = names[next].compareTo(others[next]);
+    next = (next + 1) & (PAIRS - 1);
+    return result;
+  }
+  
+  @Benchmark
+  public boolean equals() {
+    boolean result = names[next].equals(others[next]);
+    next = (next + 1) & (PAIRS - 1);
+    return result;
+  }
+  
+  @Benchmark
+  public int hashCode() {
+    int result = names[next].hashCode();
+    next = (next + 1) & (PAIRS - 1);
+    return result;
+  }
+  
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures the handling of one key element from a library file, followed 
+ by the dispatch of its value: once by resolving the key with TunesKey 
+ and switching on the result, and once as the parser used to do it, by 
+ turning the key into a String and comparing it against each key of 
+ interest in turn with equalsIgnoreCase. 
+ 
+ The keys are those of a typical track dict, in the order iTunes writes 
+ them, each held in a reused text buffer, as the streaming parser holds 
+ them. Each key is paired with the type of its value, since the parser 
+ dispatches strings, integers and true values separately. 
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class KeyDispatchBenchmark {
+  
+  public static final int         STRING_VALUE    = 0;
+  public static final int         INTEGER_VALUE   = 1;
+  public static final int         TRUE_VALUE      = 2;
+  public static final int         OTHER_VALUE     = 3;
+  
+  /** The keys of a typical track, with the type of each value. */
+  public static final String[]    TRACK_KEYS      = {
+    "Track ID",             "1",
+    "Size",                 "1",
+    "Total Time",           "1",
+    "Disc Number",          "1",
+    "Disc Count",           "1",
+    "Track Number",         "1",
+    "Track Count",          "1",
+    "Year",                 "1",
+    "Date Modified",        "3",
+    "Date Added",           "3",
+    "Bit Rate",             "1",
+    "Sample Rate",          "1",
+    "Play Count",           "1",
+    "Play Date",            "1",
+    "Play Date UTC",        "3",
+    "Rating",               "1",
+    "Album Rating",         "1",
+    "Compilation",          "2",
+    "Persistent ID",        "0",
+    "Track Type",           "0",
+    "File Folder Count",    "1",
+    "Library Folder Count", "1",
+    "Name",                 "0",
+    "Artist",               "0",
+    "Album Artist",         "0",
+    "Composer",             "0",
+    "Album",                "0",
+    "Genre",                "0",
+    "Kind",                 "0",
+    "Sort Album",           "0",
+    "Sort Artist",          "0",
+    "Sort Name",            "0",
+    "Location",             "0"
+  };
+  
+  private     StringBuilder[]     keys;
+  private     int[]               valueTypes;
+  private     int                 next = 0;
+  
+  @Setup(Level.Trial)
+  public void loadKeys() {
+    int numberOfKeys = TRACK_KEYS.length / 2;
+    keys = new StringBuilder[numberOfKeys];
+    valueTypes = new int[numberOfKeys];
+    for (int i = 0; i < numberOfKeys; i++) {
+      keys[i] = new StringBuilder(TRACK_KEYS[i * 2]);
+      valueTypes[i] = Integer.parseInt(TRACK_KEYS[(i * 2) + 1]);
+    }
+  }
+  
+  @Benchmark
+  public int lookup() {
+    TunesKey key = TunesKey.lookup(keys[next]);
+    int valueType = valueTypes[next];
+    next = (next + 1) % keys.length;
+    switch (valueType) {
+      case STRING_VALUE:
+        return dispatchString(key);
+      case INTEGER_VALUE:
+        return dispatchInteger(key);
+      case TRUE_VALUE:
+        return dispatchTrue(key);
+      default:
+        return -1;
+    }
+  }
+  
+  @Benchmark
+  public int equalsIgnoreCase() {
+    String key = keys[next].toString();
+    int valueType = valueTypes[next];
+    next = (next + 1) % keys.length;
+    switch (valueType) {
+      case STRING_VALUE:
+        return dispatchString(key);
+      case INTEGER_VALUE:
+        return dispatchInteger(key);
+      case TRUE_VALUE:
+        return dispatchTrue(key);
+      default:
+        return -1;
+    }
+  }
+  
+  private static int dispatchString(TunesKey key) {
+    switch (key) {
+      case MUSIC_FOLDER:
+      case SORT_NAME:
+      case NAME:
+      case ARTIST:
+      case COMPOSER:
+      case ALBUM:
+      case SORT_ALBUM:
+      case GENRE:
+      case SORT_ARTIST:
+      case ALBUM_ARTIST:
+      case KIND:
+      case LOCATION:
+      case PLAYLIST:
+      case TRACK_TYPE:
+        return key.ordinal();
+      default:
+        return -1;
+    }
+  }
+  
+  private static int dispatchInteger(TunesKey key) {
+    switch (key) {
+      case SIZE:
+      case TOTAL_TIME:
+      case DISC_NUMBER:
+      case DISC_COUNT:
+      case TRACK_NUMBER:
+      case TRACK_COUNT:
+      case YEAR:
+      case RATING:
+      case BIT_RATE:
+      case SAMPLE_RATE:
+        return key.ordinal();
+      default:
+        return -1;
+    }
+  }
+  
+  private static int dispatchTrue(TunesKey key) {
+    switch (key) {
+      case PODCAST:
+      case AUDIOBOOKS:
+      case MOVIE:
+      case HAS_VIDEO:
+      case COMPILATION:
+        return key.ordinal();
+      default:
+        return -1;
+    }
+  }
+  
+  /**
+   The chain of comparisons the parser made for a string value, in the 
+   same sequence. 
+  */
+  private static int dispatchString(String key) {
+    if (key.equalsIgnoreCase("Music Folder")) {
+      return TunesKey.MUSIC_FOLDER.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Sort Name")) {
+      return TunesKey.SORT_NAME.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Name")) {
+      return TunesKey.NAME.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Artist")) {
+      return TunesKey.ARTIST.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Composer")) {
+      return TunesKey.COMPOSER.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Album")) {
+      return TunesKey.ALBUM.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Sort Album")) {
+      return TunesKey.SORT_ALBUM.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Genre")) {
+      return TunesKey.GENRE.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Sort Artist")) {
+      return TunesKey.SORT_ARTIST.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Album Artist")) {
+      return TunesKey.ALBUM_ARTIST.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Kind")) {
+      return TunesKey.KIND.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Location")) {
+      return TunesKey.LOCATION.ordinal();
+    }
+    else
+    if (key.startsWith("Playlist")) {
+      return TunesKey.PLAYLIST.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Track Type")) {
+      return TunesKey.TRACK_TYPE.ordinal();
+    } else {
+      return -1;
+    }
+  }
+  
+  /**
+   The chain of comparisons the parser made for an integer value, in the 
+   same sequence. 
+  */
+  private static int dispatchInteger(String key) {
+    if (key.equalsIgnoreCase("Size")) {
+      return TunesKey.SIZE.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Total Time")) {
+      return TunesKey.TOTAL_TIME.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Disc Number")) {
+      return TunesKey.DISC_NUMBER.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Disc Count")) {
+      return TunesKey.DISC_COUNT.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Track Number")) {
+      return TunesKey.TRACK_NUMBER.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Track Count")) {
+      return TunesKey.TRACK_COUNT.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Year")) {
+      return TunesKey.YEAR.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Rating")) {
+      return TunesKey.RATING.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Bit Rate")) {
+      return TunesKey.BIT_RATE.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Sample Rate")) {
+      return TunesKey.SAMPLE_RATE.ordinal();
+    } else {
+      return -1;
+    }
+  }
+  
+  /**
+   The chain of comparisons the parser made for a true value, in the same 
+   sequence. 
+  */
+  private static int dispatchTrue(String key) {
+    if (key.equalsIgnoreCase("Podcast")) {
+      return TunesKey.PODCAST.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Audiobooks")) {
+      return TunesKey.AUDIOBOOKS.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Movie")) {
+      return TunesKey.MOVIE.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Has Video")) {
+      return TunesKey.HAS_VIDEO.ordinal();
+    }
+    else
+    if (key.equalsIgnoreCase("Compilation")) {
+      return TunesKey.COMPILATION.ordinal();
+    } else {
+      return -1;
+    }
+  }
+  
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.util.*;
+
+/**
+ Builds synthetic iTunes libraries for the benchmarks, using the 
+ TunesLibraryGenerator. The same number of tracks always produces the 
+ same library. 
+
+ @author Herb Bowie
+ */
+public class LibraryFixture {
+  
+  /** The percentage of each type of anomaly seeded in analyzed libraries. */
+  public static final double      ANOMALY_PERCENT   = 1.0;
+  
+  /**
+   Generate a list of tracks. 
+  
+   @param numberOfTracks The number of tracks wanted. 
+  
+   @return The tracks, in Artist/Album/Track sequence. 
+  */
+  public static List<TunesLibraryGenerator.Track> generateTracks
+      (int numberOfTracks) {
+    return newGenerator(numberOfTracks).generate();
+  }
+  
+  /**
+   Write a library file of the given size to a temporary file, which will 
+   be deleted when the JVM exits, without writing a Music folder. 
+  
+   @param numberOfTracks The number of tracks to be listed. 
+  
+   @return The library file written. 
+  */
+  public static File writeLibrary(int numberOfTracks) 
+      throws IOException {
+    File libraryFile = File.createTempFile
+        ("iTunes Library " + String.valueOf(numberOfTracks) + " ", ".xml");
+    libraryFile.deleteOnExit();
+    newGenerator(numberOfTracks).writeLibrary(libraryFile, 
+        TunesLibraryGenerator.DEFAULT_MEDIA_FOLDER_URL, 0);
+    return libraryFile;
+  }
+  
+  /**
+   Write a library of the given size, along with its Music folder and 
+   some seeded anomalies, into a new temporary folder, and load it into a 
+   new collection. 
+  
+   @param numberOfTracks The number of tracks to be listed. 
+   @param mediaFolder    The temporary folder to be written, which should 
+                         be passed to deleteFolder when no longer needed. 
+  
+   @return The collection holding the library. 
+  */
+  public static TunesCollection loadLibrary(int numberOfTracks, File mediaFolder) 
+      throws IOException {
+    TunesLibraryGenerator generator = newGenerator(numberOfTracks);
+    for (int id = 0; id < AnomalyTypeTable.ANOMALY_TYPE.length; id++) {
+      generator.setAnomalyPercent(id, ANOMALY_PERCENT);
+    }
+    generator.write(mediaFolder);
+    File libraryFile = generator.getLibraryFiles().get(0);
+    TunesCollection tunes = new TunesCollection();
+    TunesLibrary library = new TunesLibrary();
+    library.setLibraryFile(libraryFile);
+    int libIndex = tunes.addLibrary(library);
+    TunesParser parser = new TunesParser();
+    parser.parseStream(tunes, libIndex, libraryFile.toString());
+    parser.scanMediaMusicFolder(tunes, libIndex, library.getMusicFolder());
+    return tunes;
+  }
+  
+  /**
+   Delete a temporary folder and everything within it. 
+  
+   @param folder The folder to be deleted. 
+  */
+  public static void deleteFolder(File folder) {
+    File[] entries = folder.listFiles();
+    if (entries != null) {
+      for (File entry: entries) {
+        if (entry.isDirectory()) {
+          deleteFolder(entry);
+        } else {
+          entry.delete();
+        }
+      }
+    }
+    folder.delete();
+  }
+  
+  private static TunesLibraryGenerator newGenerator(int numberOfTracks) {
+    TunesLibraryGenerator generator = new TunesLibraryGenerator();
+    generator.setNumberOfTracks(numberOfTracks);
+    return generator;
+  }
+  
+}
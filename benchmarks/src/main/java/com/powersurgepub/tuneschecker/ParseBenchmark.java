@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures the loading of whole iTunes Library XML files, of various sizes, 
+ through both the SAX parser and the streaming parser. 
+
+ @author Herb Bowie
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2, time = 20)
+@Measurement(iterations = 5, time = 20)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ParseBenchmark {
+  
+  @Param({"10000", "100000", "500000"})
+  private     int                 tracks;
+  
+  private     File                libraryFile;
+  
+  @Setup(Level.Trial)
+  public void writeLibrary() 
+      throws IOException {
+    libraryFile = LibraryFixture.writeLibrary(tracks);
+  }
+  
+  @TearDown(Level.Trial)
+  public void deleteLibrary() {
+    libraryFile.delete();
+  }
+  
+  @Benchmark
+  public TunesCollection parse() {
+    TunesCollection tunes = newCollection();
+    new TunesParser().parse(tunes, 0, libraryFile.toString());
+    return tunes;
+  }
+  
+  @Benchmark
+  public TunesCollection parseStream() {
+    TunesCollection tunes = newCollection();
+    new TunesParser().parseStream(tunes, 0, libraryFile.toString());
+    return tunes;
+  }
+  
+  private TunesCollection newCollection() {
+    TunesCollection tunes = new TunesCollection();
+    TunesLibrary library = new TunesLibrary();
+    library.setLibraryFile(libraryFile);
+    tunes.addLibrary(library);
+    return tunes;
+  }
+  
+}
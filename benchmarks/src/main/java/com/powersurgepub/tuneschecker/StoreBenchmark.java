@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.util.*;
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures the building of a collection, one track at a time, through 
+ storeArtist, storeAlbum and storeTrack, as the parsers do. The tracks 
+ are stored either grouped by artist and album, as they would be in a 
+ Music folder, so that the "same as last" paths are taken, or shuffled, 
+ as they often are in a library file, so that consecutive tracks seldom 
+ share an artist. 
+
+ @author Herb Bowie
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class StoreBenchmark {
+  
+  @Param({"10000", "100000"})
+  private     int                 tracks;
+  
+  @Param({"grouped", "shuffled"})
+  private     String              order;
+  
+  private     List<TunesLibraryGenerator.Track> trackList;
+  
+  @Setup(Level.Trial)
+  public void generateTracks() {
+    trackList = new ArrayList<TunesLibraryGenerator.Track>
+        (LibraryFixture.generateTracks(tracks));
+    if (order.equals("shuffled")) {
+      Collections.shuffle(trackList, 
+          new Random(TunesLibraryGenerator.DEFAULT_SEED));
+    }
+  }
+  
+  @Benchmark
+  public TunesCollection store() {
+    TunesCollection tunes = new TunesCollection();
+    for (TunesLibraryGenerator.Track generated: trackList) {
+      TunesArtist artist = new TunesArtist();
+      artist.setArtist(generated.getArtist());
+      artist = tunes.storeArtist(artist);
+      
+      TunesAlbum album = new TunesAlbum();
+      album.setArtist(generated.getArtist());
+      album.setAlbum(generated.getAlbum());
+      album = artist.storeAlbum(album);
+      
+      TunesTrack track = new TunesTrack();
+      track.setName(generated.getName());
+      track.setTrackNumber(generated.getTrackNumber());
+      album.storeTrack(track);
+    }
+    return tunes;
+  }
+  
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.util.*;
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+  import org.openjdk.jmh.infra.*;
+
+/**
+ Measures the picking apart of track file locations, both on their own 
+ and followed by the calls made for each track as a library is loaded. 
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TrackFileNameBenchmark {
+  
+  public static final int         LOCATIONS = 4096;
+  
+  private     String[]            locations;
+  private     int                 next = 0;
+  
+  @Setup(Level.Trial)
+  public void generateLocations() {
+    List<TunesLibraryGenerator.Track> tracks 
+        = LibraryFixture.generateTracks(LOCATIONS);
+    locations = new String[LOCATIONS];
+    for (int i = 0; i < LOCATIONS; i++) {
+      locations[i] = tracks.get(i).getLocation
+          (TunesLibraryGenerator.DEFAULT_MEDIA_FOLDER_URL);
+    }
+  }
+  
+  @Benchmark
+  public TrackFileName construct() {
+    TrackFileName trackFileName = new TrackFileName(locations[next]);
+    next = (next + 1) % LOCATIONS;
+    return trackFileName;
+  }
+  
+  @Benchmark
+  public void constructAndRead(Blackhole blackhole) {
+    TrackFileName trackFileName = new TrackFileName(locations[next]);
+    next = (next + 1) % LOCATIONS;
+    blackhole.consume(trackFileName.getArtistName());
+    blackhole.consume(trackFileName.getAlbumName());
+    blackhole.consume(trackFileName.getFileName());
+    blackhole.consume(trackFileName.getTrackNumber());
+  }
+  
+  @Benchmark
+  public TunesFile setLocation() {
+    TunesFile file = new TunesFile();
+    file.setLocation(locations[next]);
+    next = (next + 1) % LOCATIONS;
+    return file;
+  }
+  
+}
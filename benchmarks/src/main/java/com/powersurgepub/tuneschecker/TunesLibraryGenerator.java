@@ -0,0 +1,938 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.nio.charset.*;
+  import java.util.*;
+
+/**
+ Generates synthetic iTunes libraries, for testing TunesChecker at scale: 
+ an iTunes Library XML file, plus a matching Music folder containing an 
+ Artist/Album/Track tree of empty files. 
+
+ The names of artists, albums and tracks can be skewed, so that some 
+ artists' names start with "The", some albums are compilations, and some 
+ album and track names are shared with many others, as they are in real 
+ libraries. 
+
+ A chosen percentage of anomalies of each type in the AnomalyTypeTable 
+ can be seeded, and the number of each actually seeded is reported, so 
+ that the results of an analysis can be checked. Anomalies are seeded so 
+ that each is reported just once: every album keeps its first track, so 
+ that no album or artist goes missing along with its tracks; tracks on 
+ disk but not in the library, or in the library but not on disk, are 
+ seeded in the first library; tracks missing from a library are seeded 
+ in the last library, and so only when there is more than one; and a 
+ missing track number is seeded by leaving out the second track of an 
+ album altogether. 
+
+ The same options and seed always produce the same library. 
+
+ @author Herb Bowie
+ */
+public class TunesLibraryGenerator {
+  
+  public static final String      LIBRARY_FILE_NAME = "iTunes Library.xml";
+  public static final String      TRACK_EXTENSION   = ".m4a";
+  public static final String      DEFAULT_MEDIA_FOLDER_URL 
+      = "file://localhost/Users/tunes/Music/iTunes/iTunes%20Media/";
+  
+  public static final long        DEFAULT_SEED      = 20150101L;
+  public static final int         MAX_ALBUMS        = 8;
+  public static final int         MAX_TRACKS        = 18;
+  
+  public static final String      USAGE             =
+      "Usage: TunesLibraryGenerator [options] output-folder\n"
+    + "  -tracks <n>          The number of tracks to generate.\n"
+    + "  -libraries <n>       The number of libraries, each with its own Music folder.\n"
+    + "  -skew <percent>      The percentage of artists, albums and tracks given\n"
+    + "                       skewed names, and of albums that are compilations.\n"
+    + "  -anomaly <id> <pct>  Seed this percentage of anomalies of the given type.\n"
+    + "  -anomalies <pct>     Seed this percentage of anomalies of every type.\n"
+    + "  -mintracks <n>       The setting to be used for the analysis, so that\n"
+    + "                       missing track numbers are seeded where they will be found.\n"
+    + "  -seed <n>            The seed for the random choices made.\n"
+    + "  -nofolder            Write only the library files, not the Music folders.\n";
+  
+  private static final String[]   FIRST_NAMES = {
+    "Ella", "Miles", "Joni", "Townes", "Lucinda", "Gram", "Etta", "Otis", 
+    "Aretha", "Hank", "Patsy", "Chet", "Nina", "Guy", "Iris", "Lyle", 
+    "Rosanne", "Merle", "Dusty", "Nick"
+  };
+  
+  private static final String[]   LAST_NAMES = {
+    "Fitzgerald", "Davis", "Mitchell", "Clark", "Williams", "Parsons", 
+    "James", "Redding", "Franklin", "Hancock", "Cline", "Baker", "Simone", 
+    "Dewitt", "Lovett", "Cash", "Haggard", "Springfield", "Lowe", "Harris"
+  };
+  
+  private static final String[]   ADJECTIVES = {
+    "Silver", "Electric", "Midnight", "Velvet", "Crimson", "Lonesome", 
+    "Golden", "Rolling", "Broken", "Wild", "Blue", "Hollow", "Northern", 
+    "Quiet", "Burning", "Empty", "Restless", "Gentle", "Distant", "Bitter"
+  };
+  
+  private static final String[]   NOUNS = {
+    "Road", "Heart", "Train", "Morning", "River", "Fire", "Dream", "Window", 
+    "Highway", "Rain", "Letter", "Garden", "Moon", "Wheel", "Harbor", 
+    "Prairie", "Ghost", "Lantern", "Canyon", "Sparrow", "Mirror", "Kingdom"
+  };
+  
+  private static final String[]   BAND_NOUNS = {
+    "Horses", "Rivers", "Ramblers", "Pilots", "Sparrows", "Lanterns", 
+    "Drifters", "Shadows", "Wolves", "Mountains", "Strangers", "Saints"
+  };
+  
+  private static final String[]   POPULAR_TRACKS = {
+    "Intro", "Yesterday", "Home", "Untitled", "Outro", "Hallelujah", 
+    "Summertime", "Blue Moon", "Crazy", "Angel", "Stardust", "Tennessee Waltz"
+  };
+  
+  private static final String[]   POPULAR_ALBUMS = {
+    "Greatest Hits", "Live", "Unplugged", "Christmas", "Anthology", "Gold", 
+    "Demos", "Rarities"
+  };
+  
+  private static final String[]   GENRES = {
+    "Rock", "Jazz", "Folk", "Blues", "Country", "Classical", "Soul", "Pop"
+  };
+  
+  private     int                 numberOfTracks = 10000;
+  private     int                 numberOfLibraries = 1;
+  private     int                 skew = 10;
+  private     long                seed = DEFAULT_SEED;
+  private     int                 minTracks = 2;
+  private     boolean             writeMusicFolders = true;
+  
+  /** Percentage of each type of anomaly to seed, indexed by type ID. */
+  private     double[]            anomalyPercent 
+      = new double[AnomalyTypeTable.ANOMALY_TYPE.length];
+  
+  /** Number of each type of anomaly seeded, indexed by type ID. */
+  private     int[]               anomaliesSeeded 
+      = new int[AnomalyTypeTable.ANOMALY_TYPE.length];
+  
+  private     ArrayList<Track>    tracks = null;
+  private     ArrayList<File>     libraryFiles = new ArrayList<File>();
+  
+  private     Random              random;
+  private     ArrayList<String>   artistNames = new ArrayList<String>();
+  private     HashSet<String>     artistKeys = new HashSet<String>();
+  private     HashSet<String>     compilationKeys = new HashSet<String>();
+  private     int                 serial = 10;
+  
+  public TunesLibraryGenerator() {
+    
+  }
+  
+  public static void main(String[] args) {
+    TunesLibraryGenerator generator = new TunesLibraryGenerator();
+    System.exit(generator.run(args));
+  }
+  
+  /**
+   Generate a library, as directed by the passed command line arguments, 
+   and report on what was generated. 
+  
+   @param args The command line arguments. 
+  
+   @return The exit status: zero if the library was written, two if not. 
+  */
+  public int run(String[] args) {
+    
+    File outputFolder = null;
+    int i = 0;
+    try {
+      while (i < args.length) {
+        String arg = args[i];
+        if (arg.equals("-tracks")) {
+          i++;
+          setNumberOfTracks(Integer.parseInt(args[i]));
+        }
+        else
+        if (arg.equals("-libraries")) {
+          i++;
+          setNumberOfLibraries(Integer.parseInt(args[i]));
+        }
+        else
+        if (arg.equals("-skew")) {
+          i++;
+          setSkew(Integer.parseInt(args[i]));
+        }
+        else
+        if (arg.equals("-anomaly")) {
+          i = i + 2;
+          setAnomalyPercent(Integer.parseInt(args[i - 1]), 
+              Double.parseDouble(args[i]));
+        }
+        else
+        if (arg.equals("-anomalies")) {
+          i++;
+          for (int id = 0; id < anomalyPercent.length; id++) {
+            setAnomalyPercent(id, Double.parseDouble(args[i]));
+          }
+        }
+        else
+        if (arg.equals("-mintracks")) {
+          i++;
+          setMinTracks(Integer.parseInt(args[i]));
+        }
+        else
+        if (arg.equals("-seed")) {
+          i++;
+          setSeed(Long.parseLong(args[i]));
+        }
+        else
+        if (arg.equals("-nofolder")) {
+          setWriteMusicFolders(false);
+        }
+        else
+        if (arg.startsWith("-") || outputFolder != null) {
+          System.err.println("Unexpected argument " + arg);
+          System.err.print(USAGE);
+          return TunesCheckerCLI.EXIT_ERROR;
+        } else {
+          outputFolder = new File(arg);
+        }
+        i++;
+      } // end while more arguments
+    } catch (NumberFormatException e) {
+      System.err.println("Invalid number: " + e.getMessage());
+      System.err.print(USAGE);
+      return TunesCheckerCLI.EXIT_ERROR;
+    } catch (ArrayIndexOutOfBoundsException e) {
+      System.err.println("Missing value for " + args[args.length - 1]);
+      System.err.print(USAGE);
+      return TunesCheckerCLI.EXIT_ERROR;
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.print(USAGE);
+      return TunesCheckerCLI.EXIT_ERROR;
+    }
+    if (outputFolder == null) {
+      System.err.print(USAGE);
+      return TunesCheckerCLI.EXIT_ERROR;
+    }
+    
+    try {
+      write(outputFolder);
+    } catch (IOException e) {
+      System.err.println("I/O Error: " + e.getMessage());
+      return TunesCheckerCLI.EXIT_ERROR;
+    }
+    
+    for (File libraryFile: libraryFiles) {
+      System.out.println("Library written to " + libraryFile.toString());
+    }
+    System.out.println(String.valueOf(tracks.size()) + " tracks generated");
+    for (int id = 0; id < anomaliesSeeded.length; id++) {
+      System.out.println(String.valueOf(anomaliesSeeded[id]) 
+          + " anomalies seeded of type " + String.valueOf(id) + ": " 
+          + AnomalyTypeTable.ANOMALY_TYPE[id].trim());
+    }
+    return TunesCheckerCLI.EXIT_CLEAN;
+  } // end method run
+  
+  public void setNumberOfTracks(int numberOfTracks) {
+    if (numberOfTracks < 1) {
+      throw new IllegalArgumentException
+          ("Number of tracks must be at least one");
+    }
+    this.numberOfTracks = numberOfTracks;
+    tracks = null;
+  }
+  
+  public int getNumberOfTracks() {
+    return numberOfTracks;
+  }
+  
+  public void setNumberOfLibraries(int numberOfLibraries) {
+    if (numberOfLibraries < 1) {
+      throw new IllegalArgumentException
+          ("Number of libraries must be at least one");
+    }
+    this.numberOfLibraries = numberOfLibraries;
+    tracks = null;
+  }
+  
+  public int getNumberOfLibraries() {
+    return numberOfLibraries;
+  }
+  
+  /**
+   Set the percentage of artists, albums and tracks to be given skewed 
+   names: artists whose names start with "The", and albums and tracks 
+   sharing popular names. The same percentage of albums are compilations. 
+  
+   @param skew A percentage from zero to 100. 
+  */
+  public void setSkew(int skew) {
+    if (skew < 0 || skew > 100) {
+      throw new IllegalArgumentException
+          ("Skew must be a percentage from 0 to 100");
+    }
+    this.skew = skew;
+    tracks = null;
+  }
+  
+  public int getSkew() {
+    return skew;
+  }
+  
+  public void setSeed(long seed) {
+    this.seed = seed;
+    tracks = null;
+  }
+  
+  public long getSeed() {
+    return seed;
+  }
+  
+  /**
+   Set the minimum number of tracks that will be used for the analysis, so 
+   that missing track numbers are only seeded in albums large enough to be 
+   checked. 
+  
+   @param minTracks The value to be passed to TunesAnalysis.setMinTracks. 
+  */
+  public void setMinTracks(int minTracks) {
+    this.minTracks = minTracks;
+    tracks = null;
+  }
+  
+  public int getMinTracks() {
+    return minTracks;
+  }
+  
+  public void setWriteMusicFolders(boolean writeMusicFolders) {
+    this.writeMusicFolders = writeMusicFolders;
+  }
+  
+  public boolean getWriteMusicFolders() {
+    return writeMusicFolders;
+  }
+  
+  /**
+   Set the percentage of anomalies of one type to be seeded. Tracks 
+   missing from the library or from disk, or from another library, are 
+   a percentage of all tracks; missing track numbers are a percentage of 
+   albums. 
+  
+   @param id      The ID of the anomaly type, as found in AnomalyTypeTable. 
+   @param percent The percentage to be seeded, from zero to 100. 
+  */
+  public void setAnomalyPercent(int id, double percent) {
+    if (id < 0 || id >= anomalyPercent.length) {
+      throw new IllegalArgumentException
+          ("No anomaly type with ID " + String.valueOf(id));
+    }
+    if (percent < 0 || percent > 100) {
+      throw new IllegalArgumentException
+          ("Anomaly percentage must be from 0 to 100");
+    }
+    anomalyPercent[id] = percent;
+    tracks = null;
+  }
+  
+  public double getAnomalyPercent(int id) {
+    return anomalyPercent[id];
+  }
+  
+  /**
+   Return the number of anomalies of one type actually seeded, which the 
+   analysis of the generated libraries should find. 
+  
+   @param id The ID of the anomaly type, as found in AnomalyTypeTable. 
+  
+   @return The number of anomalies of that type seeded. 
+  */
+  public int getAnomaliesSeeded(int id) {
+    generate();
+    return anomaliesSeeded[id];
+  }
+  
+  /**
+   Return the library files written by the last call to write. 
+  
+   @return The library files, one for each library. 
+  */
+  public List<File> getLibraryFiles() {
+    return libraryFiles;
+  }
+  
+  /**
+   Generate the tracks, if they have not been generated already with the 
+   current options. 
+  
+   @return The tracks, in Artist/Album/Track sequence, including those 
+           seeded as missing from one source or another. 
+  */
+  public List<Track> generate() {
+    
+    if (tracks != null) {
+      return tracks;
+    }
+    
+    tracks = new ArrayList<Track>(numberOfTracks);
+    Arrays.fill(anomaliesSeeded, 0);
+    random = new Random(seed);
+    artistNames.clear();
+    artistKeys.clear();
+    compilationKeys.clear();
+    serial = 10;
+    
+    while (tracks.size() < numberOfTracks) {
+      String artist = newArtistName();
+      HashSet<String> albumKeys = new HashSet<String>();
+      int numberOfAlbums = 1 + random.nextInt(MAX_ALBUMS);
+      for (int i = 0; 
+          i < numberOfAlbums && tracks.size() < numberOfTracks; 
+          i++) {
+        if (chance(skew)) {
+          generateAlbum(null, compilationKeys);
+        } else {
+          generateAlbum(artist, albumKeys);
+        }
+      } // end for each album
+    } // end while more tracks are needed
+    return tracks;
+  } // end method generate
+  
+  /**
+   Generate the tracks for one album. 
+  
+   @param artist    The album's artist, or null for a compilation. 
+   @param albumKeys The common names of the artist's albums so far. 
+  */
+  private void generateAlbum(String artist, HashSet<String> albumKeys) {
+    
+    boolean compilation = (artist == null);
+    String album = uniqueName(albumKeys, TunesCommonName.GENERIC_NAME, 
+        POPULAR_ALBUMS, false);
+    int year = 1950 + random.nextInt(66);
+    String genre = GENRES[random.nextInt(GENRES.length)];
+    int trackCount = Math.min(1 + random.nextInt(MAX_TRACKS), 
+        numberOfTracks - tracks.size());
+    
+    // Leave out the second track if seeding a missing track number
+    int missingTrackNumber = 0;
+    if (trackCount > minTracks + 1
+        && trackCount > 2
+        && minTracks > 0
+        && chance(anomalyPercent[AnomalyTypeTable.MISSING_TRACK_NUMBER])) {
+      missingTrackNumber = 2;
+      anomaliesSeeded[AnomalyTypeTable.MISSING_TRACK_NUMBER]++;
+    }
+    
+    HashSet<String> trackKeys = new HashSet<String>();
+    for (int trackNumber = 1; trackNumber <= trackCount; trackNumber++) {
+      String name = uniqueName(trackKeys, TunesCommonName.TRACK_NAME, 
+          POPULAR_TRACKS, true);
+      String trackArtist = artist;
+      if (compilation) {
+        trackArtist = artistNames.get(random.nextInt(artistNames.size()));
+      }
+      int anomaly = -1;
+      if (trackNumber == missingTrackNumber) {
+        anomaly = AnomalyTypeTable.MISSING_TRACK_NUMBER;
+      }
+      else
+      if (trackNumber > 1) {
+        anomaly = chooseAnomaly();
+      }
+      tracks.add(new Track(trackArtist, album, name, genre, trackNumber, 
+          trackCount, year, 1000000 + random.nextInt(9000000), compilation, 
+          anomaly));
+    } // end for each track
+  } // end method generateAlbum
+  
+  /**
+   Decide whether a track is to be seeded with an anomaly, and if so which. 
+  
+   @return The ID of the anomaly type, or -1 for none. 
+  */
+  private int chooseAnomaly() {
+    double roll = random.nextDouble() * 100;
+    double limit = anomalyPercent[AnomalyTypeTable.ON_DISK_NOT_IN_LIB];
+    int anomaly = -1;
+    if (roll < limit) {
+      anomaly = AnomalyTypeTable.ON_DISK_NOT_IN_LIB;
+    } else {
+      limit = limit + anomalyPercent[AnomalyTypeTable.IN_LIB_NOT_ON_DISK];
+      if (roll < limit) {
+        anomaly = AnomalyTypeTable.IN_LIB_NOT_ON_DISK;
+      }
+      else
+      if (numberOfLibraries > 1) {
+        limit = limit + anomalyPercent[AnomalyTypeTable.MISSING_FROM_LIBRARY];
+        if (roll < limit) {
+          anomaly = AnomalyTypeTable.MISSING_FROM_LIBRARY;
+        }
+      }
+    }
+    if (anomaly >= 0) {
+      anomaliesSeeded[anomaly]++;
+    }
+    return anomaly;
+  }
+  
+  /**
+   Make up a new artist name, distinct from all others after reduction to 
+   a common name. 
+  
+   @return The new artist name. 
+  */
+  private String newArtistName() {
+    String artist;
+    TunesCommonName commonName = new TunesCommonName();
+    int tries = 0;
+    do {
+      if (random.nextBoolean()) {
+        artist = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " 
+            + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+      } else {
+        artist = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " 
+            + BAND_NOUNS[random.nextInt(BAND_NOUNS.length)];
+      }
+      tries++;
+      if (tries > 3) {
+        artist = artist + " " + nextSerial();
+      }
+      if (chance(skew)) {
+        artist = "The " + artist;
+      }
+      commonName.setName(artist, TunesCommonName.ARTIST_NAME);
+    } while (artistKeys.contains(commonName.getName()));
+    artistKeys.add(commonName.getName());
+    artistNames.add(artist);
+    return artist;
+  }
+  
+  /**
+   Make up a new name for an album or track, distinct from the others in 
+   the same artist or album after reduction to a common name. 
+  
+   @param keys     The common names already used. 
+   @param nameType The type of common name. 
+   @param popular  Popular names, to be used when skewing names. 
+   @param isTrack  True for a track name, false for an album name. 
+  
+   @return The new name. 
+  */
+  private String uniqueName(
+      HashSet<String> keys, 
+      int nameType, 
+      String[] popular, 
+      boolean isTrack) {
+    
+    String name;
+    TunesCommonName commonName = new TunesCommonName();
+    int tries = 0;
+    do {
+      if (tries == 0 && chance(skew)) {
+        name = popular[random.nextInt(popular.length)];
+      }
+      else
+      if (isTrack && random.nextInt(4) == 0) {
+        name = "The " + NOUNS[random.nextInt(NOUNS.length)] + " Song";
+      } else {
+        name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " 
+            + NOUNS[random.nextInt(NOUNS.length)];
+      }
+      tries++;
+      if (tries > 3) {
+        name = name + " " + nextSerial();
+      }
+      commonName.setName(name, nameType);
+    } while (keys.contains(commonName.getName()));
+    keys.add(commonName.getName());
+    return name;
+  }
+  
+  /**
+   Return a number to make a name unique, always of more than one digit, 
+   since a single digit at the end of a track name is ignored. 
+  */
+  private String nextSerial() {
+    serial++;
+    return String.valueOf(serial);
+  }
+  
+  private boolean chance(double percent) {
+    return (percent > 0 && random.nextDouble() * 100 < percent);
+  }
+  
+  /**
+   Generate the tracks, and write each library, along with its Music 
+   folder, unless those have been turned off. With one library, it is 
+   written directly into the output folder; with more, each is written 
+   into a folder of its own, named "Library 1", "Library 2" and so on. 
+  
+   @param outputFolder The folder into which the libraries are written. 
+  */
+  public void write(File outputFolder) 
+      throws IOException {
+    
+    generate();
+    libraryFiles.clear();
+    for (int libIndex = 0; libIndex < numberOfLibraries; libIndex++) {
+      File mediaFolder = outputFolder;
+      if (numberOfLibraries > 1) {
+        mediaFolder = new File(outputFolder, 
+            "Library " + String.valueOf(libIndex + 1));
+      }
+      mediaFolder = mediaFolder.getAbsoluteFile();
+      if (! mediaFolder.isDirectory() && ! mediaFolder.mkdirs()) {
+        throw new IOException("Could not create " + mediaFolder.toString());
+      }
+      File libraryFile = new File(mediaFolder, LIBRARY_FILE_NAME);
+      writeLibrary(libraryFile, toFileURL(mediaFolder), libIndex);
+      libraryFiles.add(libraryFile);
+      if (writeMusicFolders) {
+        writeMusicFolder(mediaFolder, libIndex);
+      }
+    }
+  }
+  
+  /**
+   Write an iTunes Library XML file listing the tracks belonging to one 
+   library. 
+  
+   @param libraryFile    The file to be written. 
+   @param mediaFolderURL The URL of the iTunes Media folder, ending with 
+                         a slash. 
+   @param libIndex       The index of the library being written. 
+  */
+  public void writeLibrary(File libraryFile, String mediaFolderURL, int libIndex) 
+      throws IOException {
+    
+    generate();
+    Writer out = new BufferedWriter(new OutputStreamWriter(
+        new FileOutputStream(libraryFile), StandardCharsets.UTF_8), 65536);
+    try {
+      out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+      out.write("<!DOCTYPE plist PUBLIC \"-//Apple//DTD PLIST 1.0//EN\" "
+          + "\"http://www.apple.com/DTDs/PropertyList-1.0.dtd\">\n");
+      out.write("<plist version=\"1.0\">\n<dict>\n");
+      writeInteger(out, "Major Version", 1);
+      writeInteger(out, "Minor Version", 1);
+      writeString(out, "Application Version", "12.1");
+      writeString(out, "Music Folder", mediaFolderURL);
+      out.write("\t<key>Tracks</key>\n\t<dict>\n");
+      int trackID = 1000;
+      for (Track track: tracks) {
+        trackID++;
+        if (track.isInLibrary(libIndex, numberOfLibraries)) {
+          String id = String.valueOf(trackID);
+          out.write("\t\t<key>" + id + "</key>\n\t\t<dict>\n");
+          writeInteger(out, "Track ID", trackID);
+          writeString(out, "Name", track.getName());
+          writeString(out, "Artist", track.getArtist());
+          writeString(out, "Album", track.getAlbum());
+          writeString(out, "Genre", track.getGenre());
+          writeString(out, "Kind", "AAC audio file");
+          writeInteger(out, "Size", track.getSize());
+          writeInteger(out, "Total Time", 180000 + (trackID % 120000));
+          writeInteger(out, "Track Number", track.getTrackNumber());
+          writeInteger(out, "Track Count", track.getTrackCount());
+          writeInteger(out, "Year", track.getYear());
+          writeInteger(out, "Bit Rate", 256);
+          writeInteger(out, "Sample Rate", 44100);
+          if (track.isCompilation()) {
+            out.write("\t\t\t<key>Compilation</key><true/>\n");
+          }
+          writeString(out, "Track Type", "File");
+          writeString(out, "Location", track.getLocation(mediaFolderURL));
+          out.write("\t\t</dict>\n");
+        }
+      } // end for each track
+      out.write("\t</dict>\n</dict>\n</plist>\n");
+    } finally {
+      out.close();
+    }
+  } // end method writeLibrary
+  
+  /**
+   Write a Music folder holding an empty file for each track belonging to 
+   one library. 
+  
+   @param mediaFolder The iTunes Media folder, within which the Music 
+                      folder is to be written. 
+   @param libIndex    The index of the library being written. 
+  */
+  public void writeMusicFolder(File mediaFolder, int libIndex) 
+      throws IOException {
+    
+    generate();
+    File musicFolder = new File(mediaFolder, TunesLibrary.MUSIC);
+    File albumFolder = null;
+    for (Track track: tracks) {
+      if (track.isOnDisk(libIndex, numberOfLibraries)) {
+        File trackFile = new File(musicFolder, track.getPath());
+        if (! trackFile.getParentFile().equals(albumFolder)) {
+          albumFolder = trackFile.getParentFile();
+          if (! albumFolder.isDirectory() && ! albumFolder.mkdirs()) {
+            throw new IOException("Could not create " + albumFolder.toString());
+          }
+        }
+        new FileOutputStream(trackFile).close();
+      }
+    } // end for each track
+  }
+  
+  /**
+   Return the file URL for a folder, in the form used by iTunes. 
+  
+   @param folder The folder. 
+  
+   @return The URL, ending with a slash. 
+  */
+  public static String toFileURL(File folder) {
+    StringBuilder url = new StringBuilder("file://localhost");
+    String path = folder.getAbsolutePath().replace(File.separatorChar, '/');
+    for (String segment: path.split("/")) {
+      if (segment.length() > 0) {
+        url.append('/');
+        appendEncoded(url, segment);
+      }
+    }
+    url.append('/');
+    return url.toString();
+  }
+  
+  private static void writeString(Writer out, String key, String value) 
+      throws IOException {
+    out.write("\t\t\t<key>");
+    out.write(key);
+    out.write("</key><string>");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '&') {
+        out.write("&amp;");
+      }
+      else
+      if (c == '<') {
+        out.write("&lt;");
+      }
+      else
+      if (c == '>') {
+        out.write("&gt;");
+      } else {
+        out.write(c);
+      }
+    }
+    out.write("</string>\n");
+  }
+  
+  private static void writeInteger(Writer out, String key, long value) 
+      throws IOException {
+    out.write("\t\t\t<key>");
+    out.write(key);
+    out.write("</key><integer>");
+    out.write(String.valueOf(value));
+    out.write("</integer>\n");
+  }
+  
+  /**
+   Append a name to a file URL, encoding anything other than letters, 
+   digits and a few safe symbols, as iTunes does. 
+  */
+  private static void appendEncoded(StringBuilder url, String name) {
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    for (int i = 0; i < bytes.length; i++) {
+      int b = bytes[i] & 0xff;
+      if ((b >= 'a' && b <= 'z')
+          || (b >= 'A' && b <= 'Z')
+          || (b >= '0' && b <= '9')
+          || b == '-' || b == '_' || b == '.' || b == '&' || b == ',') {
+        url.append((char)b);
+      } else {
+        url.append('%');
+        url.append(Character.toUpperCase(Character.forDigit(b >> 4, 16)));
+        url.append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+      }
+    }
+  }
+  
+  /**
+   One generated track, along with any anomaly seeded for it. 
+  */
+  public static class Track {
+    
+    private     String              artist;
+    private     String              album;
+    private     String              name;
+    private     String              genre;
+    private     int                 trackNumber;
+    private     int                 trackCount;
+    private     int                 year;
+    private     long                size;
+    private     boolean             compilation;
+    private     int                 anomaly;
+    
+    private Track(
+        String artist, 
+        String album, 
+        String name, 
+        String genre, 
+        int trackNumber, 
+        int trackCount, 
+        int year, 
+        long size, 
+        boolean compilation, 
+        int anomaly) {
+      
+      this.artist = artist;
+      this.album = album;
+      this.name = name;
+      this.genre = genre;
+      this.trackNumber = trackNumber;
+      this.trackCount = trackCount;
+      this.year = year;
+      this.size = size;
+      this.compilation = compilation;
+      this.anomaly = anomaly;
+    }
+    
+    public String getArtist() {
+      return artist;
+    }
+    
+    public String getAlbum() {
+      return album;
+    }
+    
+    public String getName() {
+      return name;
+    }
+    
+    public String getGenre() {
+      return genre;
+    }
+    
+    public int getTrackNumber() {
+      return trackNumber;
+    }
+    
+    public int getTrackCount() {
+      return trackCount;
+    }
+    
+    public int getYear() {
+      return year;
+    }
+    
+    public long getSize() {
+      return size;
+    }
+    
+    public boolean isCompilation() {
+      return compilation;
+    }
+    
+    /**
+     Return the anomaly seeded for this track. 
+    
+     @return The ID of the anomaly type, or -1 if none was seeded. 
+    */
+    public int getAnomaly() {
+      return anomaly;
+    }
+    
+    /**
+     Should this track be listed in the given library file?
+    */
+    public boolean isInLibrary(int libIndex, int numberOfLibraries) {
+      switch (anomaly) {
+        case AnomalyTypeTable.ON_DISK_NOT_IN_LIB:
+          return (libIndex > 0);
+        case AnomalyTypeTable.MISSING_TRACK_NUMBER:
+          return false;
+        case AnomalyTypeTable.MISSING_FROM_LIBRARY:
+          return (libIndex < numberOfLibraries - 1);
+        default:
+          return true;
+      }
+    }
+    
+    /**
+     Should this track have a file in the given library's Music folder?
+    */
+    public boolean isOnDisk(int libIndex, int numberOfLibraries) {
+      switch (anomaly) {
+        case AnomalyTypeTable.IN_LIB_NOT_ON_DISK:
+          return (libIndex > 0);
+        case AnomalyTypeTable.MISSING_TRACK_NUMBER:
+          return false;
+        case AnomalyTypeTable.MISSING_FROM_LIBRARY:
+          return (libIndex < numberOfLibraries - 1);
+        default:
+          return true;
+      }
+    }
+    
+    /**
+     Return the path to the track's file within the Music folder, laid out 
+     as iTunes lays it out. 
+    */
+    public String getPath() {
+      StringBuilder path = new StringBuilder();
+      if (compilation) {
+        path.append(TunesParser.COMPILATIONS);
+      } else {
+        path.append(artist);
+      }
+      path.append('/');
+      path.append(album);
+      path.append('/');
+      if (trackNumber < 10) {
+        path.append('0');
+      }
+      path.append(trackNumber);
+      path.append(' ');
+      path.append(name);
+      path.append(TRACK_EXTENSION);
+      return path.toString();
+    }
+    
+    /**
+     Return the location of the track's file, as it would appear in the 
+     library file. 
+    
+     @param mediaFolderURL The URL of the iTunes Media folder, ending with 
+                           a slash. 
+    */
+    public String getLocation(String mediaFolderURL) {
+      StringBuilder location = new StringBuilder(mediaFolderURL);
+      location.append(TunesLibrary.MUSIC);
+      String path = getPath();
+      int start = 0;
+      while (start < path.length()) {
+        int slash = path.indexOf('/', start);
+        if (slash < 0) {
+          slash = path.length();
+        }
+        location.append('/');
+        appendEncoded(location, path.substring(start, slash));
+        start = slash + 1;
+      }
+      return location.toString();
+    }
+    
+  } // end class Track
+  
+}
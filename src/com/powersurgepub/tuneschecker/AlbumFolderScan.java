@@ -0,0 +1,243 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import com.powersurgepub.psutils.*;
+  import java.io.*;
+  import java.nio.file.*;
+  import java.nio.file.attribute.*;
+  import java.util.*;
+
+/**
+ The results of scanning one album folder within an artist folder: a new
+ album, plus a new track, its parsed file name, and a file carrying the
+ size and last modified time from disk, for each track file.
+
+ @author Herb Bowie
+ */
+public class AlbumFolderScan {
+
+  private     Path                albumFolder;
+  private     String              albumFolderName;
+  private     int                 libIndex;
+
+  private     TunesAlbum          album = null;
+  private     long                lastModified = 0;
+
+  private     ArrayList<TunesTrack>    tracks
+      = new ArrayList<TunesTrack>();
+  private     ArrayList<TrackFileName> trackFileNames
+      = new ArrayList<TrackFileName>();
+  private     ArrayList<TunesFile>     files
+      = new ArrayList<TunesFile>();
+
+  /**
+   Prepare to scan one album folder.
+
+   @param albumFolder     The album folder.
+   @param albumFolderName The name of the album folder.
+   @param libIndex        The index of the library being scanned.
+  */
+  public AlbumFolderScan(
+      Path albumFolder,
+      String albumFolderName,
+      int libIndex) {
+
+    this.albumFolder = albumFolder;
+    this.albumFolderName = albumFolderName;
+    this.libIndex = libIndex;
+  }
+
+  /**
+   Scan the album folder for tracks, reading the attributes of the folder, 
+   and of each entry within it, just once. An entry that cannot be read is 
+   skipped, without giving up on the rest of the album; but if anything is 
+   skipped, or the folder cannot be listed to the end, the folder's last 
+   modified time is not kept, so that the folder will be scanned again the 
+   next time the Music folder is checked for changes. 
+
+   @return True if we found a usable album, false otherwise.
+  */
+  public boolean scan() {
+
+    album = new TunesAlbum();
+    album.setAlbum(albumFolderName);
+    if (! album.hasKey()) {
+      return false;
+    }
+
+    try {
+      BasicFileAttributes folderAttrs
+          = Files.readAttributes(albumFolder, BasicFileAttributes.class);
+      if (! folderAttrs.isDirectory()) {
+        return false;
+      }
+      lastModified = folderAttrs.lastModifiedTime().toMillis();
+      album.getSources().setFromFolder(libIndex);
+      album.setAlbumFolderName(albumFolderName);
+      try (DirectoryStream<Path> entries
+          = Files.newDirectoryStream(albumFolder)) {
+        for (Path entry: entries) {
+          String trackName = entry.getFileName().toString();
+          if (! trackName.startsWith(".")
+              && (! trackName.endsWith(".pdf"))) {
+            BasicFileAttributes attrs = readEntryAttributes(entry);
+            if (attrs == null) {
+              lastModified = 0;
+            } else {
+              addTrack(entry, trackName, attrs);
+            }
+          } // End if file name doesn't start with a period
+        } // end for each directory entry
+      }
+    } catch (IOException e) {
+      lastModified = 0;
+      Logger.getShared().recordEvent(LogEvent.MINOR,
+          "Album folder could not be read: " + albumFolder.toString(),
+          false);
+    }
+    catch (DirectoryIteratorException e) {
+      lastModified = 0;
+      Logger.getShared().recordEvent(LogEvent.MINOR,
+          "Album folder could not be read: " + albumFolder.toString(),
+          false);
+    }
+    return true;
+  }
+
+  /**
+   Read the attributes of one entry in the album folder. An entry that
+   cannot be followed, such as a link to a file that is no longer there,
+   is described by its own attributes instead, and so is still listed as
+   a track, but without a file.
+
+   @param entry The path to the entry.
+
+   @return The attributes of the entry, or null if it could not be read
+           at all, as when it was deleted while the folder was scanned.
+  */
+  private BasicFileAttributes readEntryAttributes(Path entry) {
+    try {
+      return Files.readAttributes(entry, BasicFileAttributes.class);
+    } catch (IOException e) {
+      try {
+        return Files.readAttributes(entry, BasicFileAttributes.class,
+            LinkOption.NOFOLLOW_LINKS);
+      } catch (IOException e2) {
+        Logger.getShared().recordEvent(LogEvent.MINOR,
+            "Track file could not be read: " + entry.toString(),
+            false);
+        return null;
+      }
+    }
+  }
+
+  /**
+   Add a track for one entry in the album folder.
+
+   @param entry     The path to the track file.
+   @param trackName The name of the track file.
+   @param attrs     The attributes of the track file.
+  */
+  private void addTrack(
+      Path entry,
+      String trackName,
+      BasicFileAttributes attrs) {
+
+    TunesTrack track = new TunesTrack();
+    TrackFileName trackFileName = new TrackFileName(trackName);
+
+    if (trackFileName.hasTrackNumber()) {
+      track.setTrackNumber
+          (trackFileName.getTrackNumber());
+    }
+
+    if (trackFileName.hasSortName()) {
+      track.setSortName(trackFileName.getSortName());
+    }
+    if (trackFileName.hasFileName()) {
+      track.setFileName(trackFileName.getFileName());
+    }
+
+    track.getSources().setFromFolder(libIndex);
+
+    TunesFile file = null;
+    if (attrs.isRegularFile()) {
+      file = new TunesFile();
+      file.setLocation(entry.toFile());
+      file.setSize(attrs.size());
+      file.setLastModified(attrs.lastModifiedTime().toMillis());
+      file.setFileExists();
+      file.getSources().setFromFolder(libIndex);
+    }
+
+    tracks.add(track);
+    trackFileNames.add(trackFileName);
+    files.add(file);
+  }
+
+  /**
+   Return the album built from the folder name.
+
+   @return The new album.
+  */
+  public TunesAlbum getAlbum() {
+    return album;
+  }
+
+  /**
+   Return the last modified time of the album folder, as read before
+   its contents were listed.
+
+   @return The last modified time, in milliseconds.
+  */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  public String getAlbumFolderName() {
+    return albumFolderName;
+  }
+
+  /**
+   Return the number of track files found.
+
+   @return The number of tracks found in the folder.
+  */
+  public int getNumberOfTracks() {
+    return tracks.size();
+  }
+
+  public TunesTrack getTrack(int trackIndex) {
+    return tracks.get(trackIndex);
+  }
+
+  public TrackFileName getTrackFileName(int trackIndex) {
+    return trackFileNames.get(trackIndex);
+  }
+
+  /**
+   Return the file found on disk for a track.
+
+   @param trackIndex The index of the track within this scan.
+
+   @return The file, or null if the entry was not a regular file.
+  */
+  public TunesFile getFile(int trackIndex) {
+    return files.get(trackIndex);
+  }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+/**
+ Receives the anomalies found by an analysis, as they are found, so that 
+ they may be shown in the anomaly tree, counted, written to a file, or 
+ whatever else may be wanted, without building anything more than needed. 
+
+ Anomalies are passed one artist at a time, in artist sequence, and for 
+ each artist in the sequence in which they were found. A sink is only ever 
+ called from one thread at a time. 
+
+ @author Herb Bowie
+ */
+public interface AnomalySink {
+  
+  /**
+   Accept one anomaly. 
+  
+   @param anomaly The anomaly found. 
+  */
+  public void add(TunesAnomaly anomaly);
+  
+  /**
+   Called once every anomaly found by an analysis has been passed. 
+  */
+  public void close();
+  
+}
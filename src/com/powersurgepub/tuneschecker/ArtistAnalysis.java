@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.util.*;
+  import java.util.concurrent.*;
+
+/**
+ The anomalies found for one artist, and for all of its albums and tracks. 
+ The analysis does not touch the anomaly tree, or anything else shared, so 
+ that many artists may be analyzed at once. The anomalies found are later 
+ added to the tree, one artist at a time. 
+
+ @author Herb Bowie
+ */
+public class ArtistAnalysis
+    extends RecursiveAction {
+  
+  private static final long       serialVersionUID = 1L;
+  
+  private     TunesCollection     collection;
+  private     TunesArtist         artist;
+  private     TunesAnalysis       analysis;
+  
+  private     ListAnomalySink     anomalies = new ListAnomalySink();
+  
+  /**
+   Prepare to analyze one artist. 
+  
+   @param collection The collection containing the artist. 
+   @param artist     The artist to be analyzed. 
+   @param analysis   The options for this analysis. 
+  */
+  public ArtistAnalysis(
+      TunesCollection collection, 
+      TunesArtist artist, 
+      TunesAnalysis analysis) {
+    
+    this.collection = collection;
+    this.artist = artist;
+    this.analysis = analysis;
+  }
+  
+  /**
+   Perform each of the passed analyses, using the given number of threads. 
+  
+   @param analyses    The artist analyses to be performed. 
+   @param parallelism The number of threads to use; one or less means 
+                      the analyses will all be done on the calling thread. 
+  */
+  public static void analyzeEach(
+      List<ArtistAnalysis> analyses, 
+      int parallelism) {
+    
+    if (parallelism <= 1 || analyses.size() <= 1) {
+      for (ArtistAnalysis artistAnalysis: analyses) {
+        artistAnalysis.compute();
+      }
+    } else {
+      final List<ArtistAnalysis> tasks = analyses;
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        pool.invoke(new RecursiveAction() {
+          @Override
+          protected void compute() {
+            invokeAll(tasks);
+          }
+        });
+      } finally {
+        pool.shutdown();
+      }
+    }
+  }
+  
+  /**
+   Look for anomalies for the artist, and for each of its albums and tracks. 
+  */
+  @Override
+  protected void compute() {
+    artist.analyze(collection, analysis, anomalies);
+  }
+  
+  public TunesArtist getArtist() {
+    return artist;
+  }
+  
+  /**
+   Return the anomalies found. 
+  
+   @return The anomalies, in the sequence in which they belong in the tree. 
+  */
+  public List<TunesAnomaly> getAnomalies() {
+    return anomalies.getAnomalies();
+  }
+  
+}
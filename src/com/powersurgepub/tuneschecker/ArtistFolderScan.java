@@ -0,0 +1,250 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import com.powersurgepub.psutils.*;
+  import java.io.*;
+  import java.nio.file.*;
+  import java.nio.file.attribute.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+
+/**
+ The results of scanning one artist folder within a Media Music folder.
+ The scan builds new artist, album and track objects, but does not touch
+ any shared collection, so that many artist folders may be scanned at once.
+ The results are later stored into the collection, one artist at a time.
+
+ @author Herb Bowie
+ */
+public class ArtistFolderScan
+    extends RecursiveAction {
+
+  private static final long       serialVersionUID = 1L;
+
+  private     Path                mediaMusicFolder;
+  private     String              artistFolderName;
+  private     int                 libIndex;
+
+  private     boolean             compilations = false;
+  private     boolean             artistFolder = false;
+  private     long                lastModified = 0;
+  private     TunesArtist         artist = null;
+
+  private     ArrayList<AlbumFolderScan> albums
+      = new ArrayList<AlbumFolderScan>();
+
+  private     TunesProgress       progress = null;
+
+  /**
+   Prepare to scan one artist folder.
+
+   @param mediaMusicFolder The Media Music folder containing the artist folder.
+   @param artistFolderName The name of the artist folder.
+   @param libIndex         The index of the library being scanned.
+  */
+  public ArtistFolderScan(
+      Path mediaMusicFolder,
+      String artistFolderName,
+      int libIndex) {
+
+    this.mediaMusicFolder = mediaMusicFolder;
+    this.artistFolderName = artistFolderName;
+    this.libIndex = libIndex;
+    compilations = artistFolderName.equals(TunesParser.COMPILATIONS);
+  }
+
+  /**
+   Scan all of the artist folders within a Media Music folder, using the
+   given number of threads. The scans are returned in the sequence in which
+   the folders were listed, no matter how many threads are used.
+
+   @param mediaMusicFolder The Media Music folder containing the artist folders.
+   @param libIndex         The index of the library being scanned.
+   @param parallelism      The number of threads to use; one or less means
+                           the scans will all be done on the calling thread.
+   @param progress         The object to which progress is to be reported.
+
+   @return The completed scans, in the sequence in which they were listed.
+
+   @throws IOException If the Media Music folder could not be listed.
+  */
+  public static List<ArtistFolderScan> scanAll(
+      Path mediaMusicFolder,
+      int libIndex,
+      int parallelism,
+      TunesProgress progress)
+        throws IOException {
+
+    ArrayList<ArtistFolderScan> scans = new ArrayList<ArtistFolderScan>();
+    try (DirectoryStream<Path> entries
+        = Files.newDirectoryStream(mediaMusicFolder)) {
+      for (Path entry: entries) {
+        String artistFolderName = entry.getFileName().toString();
+        if (! artistFolderName.startsWith(".")) {
+          scans.add(new ArtistFolderScan
+              (mediaMusicFolder, artistFolderName, libIndex));
+        }
+      }
+    }
+    scanEach(scans, parallelism, progress);
+    return scans;
+  }
+
+  /**
+   Perform each of the passed scans, using the given number of threads.
+
+   @param scans       The artist folder scans to be performed.
+   @param parallelism The number of threads to use; one or less means
+                      the scans will all be done on the calling thread.
+   @param progress    The object to which progress is to be reported; any
+                      scans not yet started once it is cancelled are skipped.
+  */
+  public static void scanEach(
+      List<ArtistFolderScan> scans,
+      int parallelism,
+      TunesProgress progress) {
+
+    for (ArtistFolderScan scan: scans) {
+      scan.progress = progress;
+    }
+
+    if (parallelism <= 1 || scans.size() <= 1) {
+      for (ArtistFolderScan scan: scans) {
+        scan.compute();
+      }
+    } else {
+      final List<ArtistFolderScan> tasks = scans;
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        pool.invoke(new RecursiveAction() {
+          @Override
+          protected void compute() {
+            invokeAll(tasks);
+          }
+        });
+      } finally {
+        pool.shutdown();
+      }
+    }
+  }
+
+  /**
+   Scan the artist folder and each of its album folders. The attributes of
+   each entry are read just once, and stray files are ignored.
+  */
+  @Override
+  protected void compute() {
+
+    if (progress.isCancelled()) {
+      return;
+    }
+    if (! compilations) {
+      artist = new TunesArtist();
+      artist.setArtist(artistFolderName);
+      if (! artist.hasKey()) {
+        return;
+      }
+    }
+
+    Path artistPath = mediaMusicFolder.resolve(artistFolderName);
+    try {
+      BasicFileAttributes attrs
+          = Files.readAttributes(artistPath, BasicFileAttributes.class);
+      artistFolder = attrs.isDirectory();
+      lastModified = attrs.lastModifiedTime().toMillis();
+      if (artistFolder) {
+        try (DirectoryStream<Path> entries
+            = Files.newDirectoryStream(artistPath)) {
+          for (Path entry: entries) {
+            String albumFolderName = entry.getFileName().toString();
+            if (! albumFolderName.startsWith(".")) {
+              AlbumFolderScan albumScan
+                  = new AlbumFolderScan(entry, albumFolderName, libIndex);
+              if (albumScan.scan()) {
+                albums.add(albumScan);
+              }
+            } // end if we have a normal album folder
+          } // end for each album for this artist
+        }
+      }
+    } catch (IOException e) {
+      lastModified = 0;
+      Logger.getShared().recordEvent(LogEvent.MINOR,
+          "Artist folder could not be read: " + artistPath.toString(),
+          false);
+    }
+    catch (DirectoryIteratorException e) {
+      lastModified = 0;
+      Logger.getShared().recordEvent(LogEvent.MINOR,
+          "Artist folder could not be read: " + artistPath.toString(),
+          false);
+    }
+    progress.addFoldersScanned(1 + albums.size());
+  }
+
+  /**
+   Did the scan find a folder for this artist?
+
+   @return True if the artist entry is a folder, false if it is a stray
+           file or could not be read.
+  */
+  public boolean isArtistFolder() {
+    return artistFolder;
+  }
+
+  /**
+   Is this the folder holding compilations from various artists?
+
+   @return True if this is the Compilations folder.
+  */
+  public boolean isCompilations() {
+    return compilations;
+  }
+
+  /**
+   Return the artist built from the folder name.
+
+   @return The new artist, or null if this is the Compilations folder.
+  */
+  public TunesArtist getArtist() {
+    return artist;
+  }
+
+  /**
+   Return the last modified time of the artist folder, as read before
+   its contents were listed.
+
+   @return The last modified time, in milliseconds.
+  */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  public String getArtistFolderName() {
+    return artistFolderName;
+  }
+
+  /**
+   Return the albums found within this artist folder.
+
+   @return The album scans, in the sequence in which the folders were listed.
+  */
+  public List<AlbumFolderScan> getAlbums() {
+    return albums;
+  }
+
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.nio.charset.*;
+  import java.util.*;
+
+/**
+ Exports a tunes collection to a compact columnar file, for loading into 
+ analytics tools without parsing text. There is one row for each file of 
+ each track, or a single row for a track with no files, with columns for 
+ the artist, album, track and file. 
+
+ Rows are gathered into groups of up to 64K, and each group is written 
+ one column at a time. Within a group, the artist, album, genre and kind 
+ columns are dictionary-encoded: each distinct value is written once, 
+ followed by the index of each row's value, packed into as few bits as 
+ the size of the dictionary allows. Numeric columns are packed the same 
+ way, as the difference between each value and the smallest value in the 
+ group. Track names and file locations, which seldom repeat, are written 
+ as plain strings. 
+
+ The file starts and ends with "TCOL". Just before the closing marker is 
+ a footer, naming each column and giving the offset and length of each 
+ column within each row group, so that a reader may pick out just the 
+ columns it needs. Lengths and offsets in the footer, and string lengths, 
+ are written as variable-length integers, as in a snapshot. 
+ 
+ See ColumnarReader for reading the file back. 
+
+ @author Herb Bowie
+ */
+public class ColumnarExporter {
+  
+  public static final String      SUFFIX          = ".tcol";
+  
+  /** Identifies a columnar file: "TCOL" in ASCII. */
+  public static final int         MAGIC           = 0x54434F4C;
+  
+  /** Bump this whenever the layout of the file changes. */
+  public static final int         VERSION         = 1;
+  
+  public static final int         ROWS_PER_GROUP  = 64 * 1024;
+  public static final int         BUFFER_SIZE     = 256 * 1024;
+  
+  /** Column types. */
+  public static final int         DICTIONARY      = 1;
+  public static final int         PLAIN           = 2;
+  public static final int         PACKED          = 3;
+  
+  /** Column positions. */
+  public static final int         ARTIST          = 0;
+  public static final int         ALBUM           = 1;
+  public static final int         TRACK_NUMBER    = 2;
+  public static final int         TRACK_NAME      = 3;
+  public static final int         GENRE           = 4;
+  public static final int         YEAR            = 5;
+  public static final int         RATING          = 6;
+  public static final int         PLAYING_TIME    = 7;
+  public static final int         KIND            = 8;
+  public static final int         LOCATION        = 9;
+  public static final int         SIZE            = 10;
+  public static final int         BIT_RATE        = 11;
+  
+  public static final String[]    COLUMN_NAMES    = {
+    TunesArtist.ARTIST,
+    TunesAlbum.ALBUM,
+    TunesTrack.TRACK_NUMBER,
+    TunesTrack.TRACK_NAME,
+    TunesTrack.GENRE,
+    TunesTrack.YEAR,
+    TunesTrack.RATING,
+    TunesTrack.PLAYING_TIME,
+    TunesFile.KIND,
+    TunesFile.LOCATION,
+    TunesFile.SIZE,
+    TunesFile.BIT_RATE
+  };
+  
+  public static final int[]       COLUMN_TYPES    = {
+    DICTIONARY,
+    DICTIONARY,
+    PACKED,
+    PLAIN,
+    DICTIONARY,
+    PACKED,
+    PACKED,
+    PACKED,
+    DICTIONARY,
+    PLAIN,
+    PACKED,
+    PACKED
+  };
+  
+  private static final Charset    UTF8            = Charset.forName("UTF-8");
+  
+  private     OutputStream        out;
+  private     long                position = 0;
+  
+  /** The value of each column for the next row, kept until set again. */
+  private     String[]            stringFields;
+  private     long[]              numberFields;
+  
+  /** The rows of the current group, by column. */
+  private     String[][]          stringRows;
+  private     long[][]            numberRows;
+  private     int                 rows = 0;
+  private     long                totalRows = 0;
+  
+  /** Offset and length of each column chunk, for each group written. */
+  private     ArrayList<long[]>   groupChunks = new ArrayList<long[]>();
+  private     ArrayList<Integer>  groupRows   = new ArrayList<Integer>();
+  
+  /** Reused for each dictionary-encoded column. */
+  private     HashMap<String, Integer> dictionary 
+      = new HashMap<String, Integer>();
+  private     ArrayList<String>   dictionaryValues = new ArrayList<String>();
+  private     long[]              indexes = new long[ROWS_PER_GROUP];
+  
+  /** Bits not yet written, while packing. */
+  private     int                 bitBuffer = 0;
+  private     int                 bitCount = 0;
+  
+  /**
+   Prepare to export to a file. 
+  
+   @param file The file to be written. 
+  */
+  public ColumnarExporter(File file) 
+      throws IOException {
+    this(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+  }
+  
+  /**
+   Prepare to export to an output stream, which will be closed along with 
+   the exporter. 
+  
+   @param out The stream to be written. 
+  */
+  public ColumnarExporter(OutputStream out) 
+      throws IOException {
+    this.out = out;
+    int columns = COLUMN_NAMES.length;
+    stringFields = new String[columns];
+    numberFields = new long[columns];
+    stringRows = new String[columns][];
+    numberRows = new long[columns][];
+    for (int i = 0; i < columns; i++) {
+      if (COLUMN_TYPES[i] == PACKED) {
+        numberRows[i] = new long[ROWS_PER_GROUP];
+      } else {
+        stringRows[i] = new String[ROWS_PER_GROUP];
+        stringFields[i] = "";
+      }
+    }
+    writeFixedInt(MAGIC);
+  }
+  
+  /**
+   Set the value of a string column for this row and those that follow, 
+   until it is set again. 
+  
+   @param column The position of the column, such as ARTIST. 
+   @param value  The value of the field, or null for an empty field. 
+  */
+  public void setField(int column, String value) {
+    if (value == null) {
+      stringFields[column] = "";
+    } else {
+      stringFields[column] = value;
+    }
+  }
+  
+  /**
+   Set the value of a numeric column for this row and those that follow, 
+   until it is set again. 
+  
+   @param column The position of the column, such as YEAR. 
+   @param value  The value of the field. 
+  */
+  public void setField(int column, long value) {
+    numberFields[column] = value;
+  }
+  
+  /**
+   Add a row with the current value of every column, writing out the 
+   current group if it is full. 
+  */
+  public void endRow() 
+      throws IOException {
+    for (int i = 0; i < COLUMN_TYPES.length; i++) {
+      if (COLUMN_TYPES[i] == PACKED) {
+        numberRows[i][rows] = numberFields[i];
+      } else {
+        stringRows[i][rows] = stringFields[i];
+      }
+    }
+    rows++;
+    totalRows++;
+    if (rows >= ROWS_PER_GROUP) {
+      writeGroup();
+    }
+  }
+  
+  /**
+   Return the number of rows added so far. 
+  
+   @return The number of rows. 
+  */
+  public long getRows() {
+    return totalRows;
+  }
+  
+  /**
+   Return the number of bytes written so far. 
+  
+   @return The number of bytes written. 
+  */
+  public long getBytesWritten() {
+    return position;
+  }
+  
+  /**
+   Write out the last group and the footer, once every row has been added. 
+   The output must still be closed. 
+  */
+  public void finish() 
+      throws IOException {
+    if (rows > 0) {
+      writeGroup();
+    }
+    writeFooter();
+    out.flush();
+  }
+  
+  /**
+   Close the output. Unless finish has been called first, the output will 
+   have no footer, and so cannot be read as a columnar file. 
+  */
+  public void close() 
+      throws IOException {
+    out.close();
+  }
+  
+  /**
+   Write out the rows gathered so far, one column at a time. 
+  */
+  private void writeGroup() 
+      throws IOException {
+    long[] chunks = new long[COLUMN_TYPES.length * 2];
+    for (int i = 0; i < COLUMN_TYPES.length; i++) {
+      long start = position;
+      if (COLUMN_TYPES[i] == DICTIONARY) {
+        writeDictionaryColumn(stringRows[i]);
+      }
+      else
+      if (COLUMN_TYPES[i] == PLAIN) {
+        for (int row = 0; row < rows; row++) {
+          writeString(stringRows[i][row]);
+        }
+      } else {
+        writePackedColumn(numberRows[i], rows);
+      }
+      chunks[i * 2] = start;
+      chunks[(i * 2) + 1] = position - start;
+      if (stringRows[i] != null) {
+        Arrays.fill(stringRows[i], 0, rows, null);
+      }
+    }
+    groupChunks.add(chunks);
+    groupRows.add(rows);
+    rows = 0;
+  }
+  
+  /**
+   Write each distinct value once, followed by the packed index of the 
+   value for each row. 
+  */
+  private void writeDictionaryColumn(String[] values) 
+      throws IOException {
+    dictionary.clear();
+    dictionaryValues.clear();
+    for (int row = 0; row < rows; row++) {
+      Integer index = dictionary.get(values[row]);
+      if (index == null) {
+        index = dictionaryValues.size();
+        dictionary.put(values[row], index);
+        dictionaryValues.add(values[row]);
+      }
+      indexes[row] = index.intValue();
+    }
+    writeVarLong(dictionaryValues.size());
+    for (String value: dictionaryValues) {
+      writeString(value);
+    }
+    writePackedColumn(indexes, rows);
+  }
+  
+  /**
+   Write the smallest value, and the number of bits needed for the 
+   difference between it and the largest, followed by the difference for 
+   each row, packed into that many bits, lowest bits first. 
+  */
+  private void writePackedColumn(long[] values, int count) 
+      throws IOException {
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (int row = 0; row < count; row++) {
+      min = Math.min(min, values[row]);
+      max = Math.max(max, values[row]);
+    }
+    int bitWidth = 64 - Long.numberOfLeadingZeros(max - min);
+    writeVarLong(min);
+    writeByte(bitWidth);
+    if (bitWidth > 0) {
+      for (int row = 0; row < count; row++) {
+        writeBits(values[row] - min, bitWidth);
+      }
+      if (bitCount > 0) {
+        writeByte(bitBuffer);
+        bitBuffer = 0;
+        bitCount = 0;
+      }
+    }
+  }
+  
+  private void writeBits(long value, int bitWidth) 
+      throws IOException {
+    int remaining = bitWidth;
+    while (remaining > 0) {
+      int take = Math.min(remaining, 8 - bitCount);
+      bitBuffer = bitBuffer | (int)((value & ((1L << take) - 1)) << bitCount);
+      value = value >>> take;
+      remaining = remaining - take;
+      bitCount = bitCount + take;
+      if (bitCount == 8) {
+        writeByte(bitBuffer);
+        bitBuffer = 0;
+        bitCount = 0;
+      }
+    }
+  }
+  
+  /**
+   Write the column names and types, and the location of each column in 
+   each group, followed by the length of the footer and the closing 
+   marker. 
+  */
+  private void writeFooter() 
+      throws IOException {
+    long start = position;
+    writeVarLong(VERSION);
+    writeVarLong(COLUMN_NAMES.length);
+    for (int i = 0; i < COLUMN_NAMES.length; i++) {
+      writeString(COLUMN_NAMES[i]);
+      writeByte(COLUMN_TYPES[i]);
+    }
+    writeVarLong(groupChunks.size());
+    for (int group = 0; group < groupChunks.size(); group++) {
+      writeVarLong(groupRows.get(group));
+      long[] chunks = groupChunks.get(group);
+      for (int i = 0; i < chunks.length; i++) {
+        writeVarLong(chunks[i]);
+      }
+    }
+    writeFixedInt((int)(position - start));
+    writeFixedInt(MAGIC);
+  }
+  
+  private void writeString(String s) 
+      throws IOException {
+    byte[] bytes = s.getBytes(UTF8);
+    writeVarLong(bytes.length);
+    out.write(bytes);
+    position = position + bytes.length;
+  }
+  
+  /**
+   Write a number in as few bytes as its magnitude allows, using the same 
+   zigzag encoding as a snapshot. 
+  */
+  private void writeVarLong(long l) 
+      throws IOException {
+    long zigzag = (l << 1) ^ (l >> 63);
+    while ((zigzag & ~0x7FL) != 0) {
+      writeByte((int)((zigzag & 0x7F) | 0x80));
+      zigzag = zigzag >>> 7;
+    }
+    writeByte((int)zigzag);
+  }
+  
+  private void writeFixedInt(int i) 
+      throws IOException {
+    writeByte(i >>> 24);
+    writeByte(i >>> 16);
+    writeByte(i >>> 8);
+    writeByte(i);
+  }
+  
+  private void writeByte(int b) 
+      throws IOException {
+    out.write(b);
+    position++;
+  }
+  
+}
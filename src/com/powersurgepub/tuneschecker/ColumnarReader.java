@@ -0,0 +1,319 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.nio.charset.*;
+
+/**
+ Reads a columnar file written by ColumnarExporter. The footer is read 
+ when the file is opened; after that, any column of any row group may be 
+ read on its own, without reading the others. 
+
+ @author Herb Bowie
+ */
+public class ColumnarReader 
+    implements Closeable {
+  
+  private static final Charset    UTF8          = Charset.forName("UTF-8");
+  
+  private     RandomAccessFile    file;
+  
+  private     String[]            columnNames;
+  private     int[]               columnTypes;
+  
+  /** Number of rows, and offset and length of each column, by group. */
+  private     int[]               groupRows;
+  private     long[][]            groupChunks;
+  private     long                totalRows = 0;
+  
+  /** The chunk being decoded, and the position within it. */
+  private     byte[]              chunk;
+  private     int                 chunkLength = 0;
+  private     int                 next = 0;
+  
+  /**
+   Open a columnar file and read its footer. 
+  
+   @param columnarFile The file to be read. 
+  */
+  public ColumnarReader(File columnarFile) 
+      throws IOException {
+    file = new RandomAccessFile(columnarFile, "r");
+    try {
+      readFooter();
+    } catch (IOException e) {
+      file.close();
+      throw e;
+    }
+  }
+  
+  private void readFooter() 
+      throws IOException {
+    long length = file.length();
+    if (length < 12) {
+      throw new IOException("File is too short to be a columnar file");
+    }
+    file.seek(0);
+    int startMagic = file.readInt();
+    file.seek(length - 8);
+    int footerLength = file.readInt();
+    int endMagic = file.readInt();
+    if (startMagic != ColumnarExporter.MAGIC
+        || endMagic != ColumnarExporter.MAGIC
+        || footerLength < 0
+        || footerLength > length - 12) {
+      throw new IOException("Not a columnar file");
+    }
+    readChunk(length - 8 - footerLength, footerLength);
+    if (readVarLong() != ColumnarExporter.VERSION) {
+      throw new IOException("Unsupported columnar file version");
+    }
+    int columns = readCount();
+    columnNames = new String[columns];
+    columnTypes = new int[columns];
+    for (int i = 0; i < columns; i++) {
+      columnNames[i] = readString();
+      columnTypes[i] = readByte();
+    }
+    int groups = readCount();
+    groupRows = new int[groups];
+    groupChunks = new long[groups][];
+    for (int group = 0; group < groups; group++) {
+      groupRows[group] = readCount();
+      totalRows = totalRows + groupRows[group];
+      long[] chunks = new long[columns * 2];
+      for (int i = 0; i < chunks.length; i++) {
+        chunks[i] = readVarLong();
+      }
+      groupChunks[group] = chunks;
+    }
+  }
+  
+  public int getNumberOfColumns() {
+    return columnNames.length;
+  }
+  
+  public String getColumnName(int column) {
+    return columnNames[column];
+  }
+  
+  /**
+   Return the type of a column. 
+  
+   @param column The position of the column. 
+  
+   @return ColumnarExporter.DICTIONARY, PLAIN or PACKED. 
+  */
+  public int getColumnType(int column) {
+    return columnTypes[column];
+  }
+  
+  /**
+   Find a column by name. 
+  
+   @param name The name of the column. 
+  
+   @return The position of the column, or -1 if there is none by that name. 
+  */
+  public int getColumnNumber(String name) {
+    for (int i = 0; i < columnNames.length; i++) {
+      if (columnNames[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+  
+  public long getNumberOfRows() {
+    return totalRows;
+  }
+  
+  public int getNumberOfGroups() {
+    return groupRows.length;
+  }
+  
+  public int getGroupRows(int group) {
+    return groupRows[group];
+  }
+  
+  /**
+   Read the values of a string column within one row group. 
+  
+   @param group  The row group. 
+   @param column The position of a DICTIONARY or PLAIN column. 
+  
+   @return The value of the column for each row in the group. 
+  */
+  public String[] readStrings(int group, int column) 
+      throws IOException {
+    int rows = groupRows[group];
+    String[] values = new String[rows];
+    seekChunk(group, column);
+    if (columnTypes[column] == ColumnarExporter.DICTIONARY) {
+      String[] dictionary = new String[readCount()];
+      for (int i = 0; i < dictionary.length; i++) {
+        dictionary[i] = readString();
+      }
+      long[] indexes = readPacked(rows);
+      for (int row = 0; row < rows; row++) {
+        if (indexes[row] < 0 || indexes[row] >= dictionary.length) {
+          throw new IOException("Invalid dictionary index in columnar file");
+        }
+        values[row] = dictionary[(int)indexes[row]];
+      }
+    }
+    else
+    if (columnTypes[column] == ColumnarExporter.PLAIN) {
+      for (int row = 0; row < rows; row++) {
+        values[row] = readString();
+      }
+    } else {
+      throw new IOException("Column " + columnNames[column] 
+          + " does not hold strings");
+    }
+    return values;
+  }
+  
+  /**
+   Read the values of a numeric column within one row group. 
+  
+   @param group  The row group. 
+   @param column The position of a PACKED column. 
+  
+   @return The value of the column for each row in the group. 
+  */
+  public long[] readNumbers(int group, int column) 
+      throws IOException {
+    if (columnTypes[column] != ColumnarExporter.PACKED) {
+      throw new IOException("Column " + columnNames[column] 
+          + " does not hold numbers");
+    }
+    seekChunk(group, column);
+    return readPacked(groupRows[group]);
+  }
+  
+  public void close() 
+      throws IOException {
+    file.close();
+  }
+  
+  private void seekChunk(int group, int column) 
+      throws IOException {
+    long[] chunks = groupChunks[group];
+    long length = chunks[(column * 2) + 1];
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Column is too large in columnar file");
+    }
+    readChunk(chunks[column * 2], (int)length);
+  }
+  
+  private void readChunk(long offset, int length) 
+      throws IOException {
+    if (offset < 0 || offset + length > file.length()) {
+      throw new IOException("Invalid offset in columnar file");
+    }
+    if (chunk == null || chunk.length < length) {
+      chunk = new byte[length];
+    }
+    file.seek(offset);
+    file.readFully(chunk, 0, length);
+    chunkLength = length;
+    next = 0;
+  }
+  
+  /**
+   Read the smallest value and the bit width, followed by the packed 
+   difference for each row. 
+  */
+  private long[] readPacked(int rows) 
+      throws IOException {
+    long min = readVarLong();
+    int bitWidth = readByte();
+    if (bitWidth > 64) {
+      throw new IOException("Invalid bit width in columnar file");
+    }
+    long[] values = new long[rows];
+    int bitBuffer = 0;
+    int bitCount = 0;
+    for (int row = 0; row < rows; row++) {
+      long value = 0;
+      int filled = 0;
+      while (filled < bitWidth) {
+        if (bitCount == 0) {
+          bitBuffer = readByte();
+          bitCount = 8;
+        }
+        int take = Math.min(bitWidth - filled, bitCount);
+        long bits = bitBuffer & ((1 << take) - 1);
+        value = value | (bits << filled);
+        bitBuffer = bitBuffer >>> take;
+        bitCount = bitCount - take;
+        filled = filled + take;
+      }
+      values[row] = min + value;
+    }
+    return values;
+  }
+  
+  private String readString() 
+      throws IOException {
+    int length = readCount();
+    if (length > chunkLength - next) {
+      throw new IOException("Invalid string length in columnar file");
+    }
+    String s = new String(chunk, next, length, UTF8);
+    next = next + length;
+    return s;
+  }
+  
+  /**
+   Read a number that must fit in an int and may not be negative. 
+  */
+  private int readCount() 
+      throws IOException {
+    long count = readVarLong();
+    if (count < 0 || count > Integer.MAX_VALUE) {
+      throw new IOException("Invalid count in columnar file");
+    }
+    return (int)count;
+  }
+  
+  private long readVarLong() 
+      throws IOException {
+    long zigzag = 0;
+    int shift = 0;
+    int b;
+    do {
+      if (shift > 63) {
+        throw new IOException("Invalid number in columnar file");
+      }
+      b = readByte();
+      zigzag = zigzag | ((long)(b & 0x7F) << shift);
+      shift = shift + 7;
+    } while ((b & 0x80) != 0);
+    return (zigzag >>> 1) ^ (0 - (zigzag & 1));
+  }
+  
+  private int readByte() 
+      throws IOException {
+    if (next >= chunkLength) {
+      throw new EOFException("Unexpected end of columnar data");
+    }
+    return chunk[next++] & 0xFF;
+  }
+  
+}
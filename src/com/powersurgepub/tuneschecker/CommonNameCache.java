@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.util.*;
+  import java.util.concurrent.atomic.*;
+
+/**
+ A bounded cache of the keys computed for common names, by raw name and type
+ of name, so that an artist or album named on hundreds of tracks need only
+ be reduced to its common form once. Each distinct key is held just once,
+ and shared by every common name built from the same raw name.
+
+ The cache is split into segments, each locked separately, so that folders
+ may be scanned on many threads at once. Each segment discards its least
+ recently used entries once it is full.
+
+ @author Herb Bowie
+ */
+public class CommonNameCache {
+
+  public static final int         DEFAULT_CAPACITY  = 64 * 1024;
+
+  private static final int        SEGMENTS          = 16;
+
+  private     Segment[]           segments = new Segment[SEGMENTS];
+
+  private     AtomicLong          hits = new AtomicLong();
+  private     AtomicLong          misses = new AtomicLong();
+
+  public CommonNameCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   Create a cache holding no more than the given number of entries.
+
+   @param capacity The maximum number of entries to hold.
+  */
+  public CommonNameCache(int capacity) {
+    int segmentCapacity = Math.max(1, capacity / SEGMENTS);
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(segmentCapacity);
+    }
+  }
+
+  /**
+   Look for the key computed earlier for a name.
+
+   @param raw      The name as supplied.
+   @param nameType The type of name.
+
+   @return The key computed earlier, or null if the name is not in the cache.
+  */
+  public String get(String raw, int nameType) {
+    CacheKey cacheKey = new CacheKey(raw, nameType);
+    Segment segment = segmentFor(cacheKey);
+    String key;
+    synchronized (segment) {
+      key = segment.get(cacheKey);
+    }
+    if (key == null) {
+      misses.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+    }
+    return key;
+  }
+
+  /**
+   Add the key computed for a name.
+
+   @param raw      The name as supplied.
+   @param nameType The type of name.
+   @param key      The key computed for the name.
+
+   @return The key to be used, which will be the one already in the cache,
+           if another thread got there first.
+  */
+  public String put(String raw, int nameType, String key) {
+    CacheKey cacheKey = new CacheKey(raw, nameType);
+    Segment segment = segmentFor(cacheKey);
+    synchronized (segment) {
+      String existing = segment.get(cacheKey);
+      if (existing == null) {
+        segment.put(cacheKey, key);
+        return key;
+      } else {
+        return existing;
+      }
+    }
+  }
+
+  /**
+   Empty the cache, and start counting hits and misses again.
+  */
+  public void clear() {
+    for (int i = 0; i < SEGMENTS; i++) {
+      synchronized (segments[i]) {
+        segments[i].clear();
+      }
+    }
+    hits.set(0);
+    misses.set(0);
+  }
+
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < SEGMENTS; i++) {
+      synchronized (segments[i]) {
+        size = size + segments[i].size();
+      }
+    }
+    return size;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   Return the share of lookups found in the cache.
+
+   @return The hit rate, from 0.0 to 1.0, or zero if nothing has been
+           looked up yet.
+  */
+  public double getHitRate() {
+    long hitCount = hits.get();
+    long lookups = hitCount + misses.get();
+    if (lookups == 0) {
+      return 0.0;
+    } else {
+      return (double)hitCount / (double)lookups;
+    }
+  }
+
+  public String toString() {
+    return String.valueOf(getHits()) + " hits, "
+        + String.valueOf(getMisses()) + " misses ("
+        + String.format("%.1f", getHitRate() * 100.0) + "% hit rate), "
+        + String.valueOf(size()) + " cached";
+  }
+
+  private Segment segmentFor(CacheKey cacheKey) {
+    int h = cacheKey.hashCode();
+    h = h ^ (h >>> 16);
+    return segments[h & (SEGMENTS - 1)];
+  }
+
+  /**
+   A raw name paired with its type.
+  */
+  private static class CacheKey {
+
+    private String  raw;
+    private int     nameType;
+    private int     hash;
+
+    private CacheKey(String raw, int nameType) {
+      this.raw = raw;
+      this.nameType = nameType;
+      hash = (raw.hashCode() * 31) + nameType;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof CacheKey) {
+        CacheKey key2 = (CacheKey)obj;
+        return (hash == key2.hash
+            && nameType == key2.nameType
+            && raw.equals(key2.raw));
+      } else {
+        return false;
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   One segment of the cache, kept in order of use.
+  */
+  private static class Segment
+      extends LinkedHashMap<CacheKey, String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private int capacity;
+
+    private Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<CacheKey, String> eldest) {
+      return (size() > capacity);
+    }
+  }
+
+}
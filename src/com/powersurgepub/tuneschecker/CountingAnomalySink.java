@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+/**
+ Counts the anomalies passed to it, in total and by type of anomaly, 
+ without keeping the anomalies themselves. 
+
+ @author Herb Bowie
+ */
+public class CountingAnomalySink
+    implements AnomalySink {
+  
+  private     int                 count = 0;
+  private     int                 selectedCount = 0;
+  
+  /** The number of anomalies of each type, indexed by anomaly type ID. */
+  private     int[]               countByType = new int[8];
+  
+  public CountingAnomalySink() {
+    
+  }
+  
+  @Override
+  public void add(TunesAnomaly anomaly) {
+    AnomalyType anomalyType = anomaly.getAnomalyType();
+    int id = anomalyType.getID().intValue();
+    if (id >= countByType.length) {
+      int[] larger = new int[Math.max(id + 1, countByType.length * 2)];
+      System.arraycopy(countByType, 0, larger, 0, countByType.length);
+      countByType = larger;
+    }
+    countByType[id]++;
+    count++;
+    if (anomalyType.isSelected()) {
+      selectedCount++;
+    }
+  }
+  
+  @Override
+  public void close() {
+    
+  }
+  
+  /**
+   Return the number of anomalies passed, of all types. 
+  
+   @return The total number of anomalies. 
+  */
+  public int getCount() {
+    return count;
+  }
+  
+  /**
+   Return the number of anomalies passed of a type that has been selected, 
+   and so would have been shown in the anomaly tree. 
+  
+   @return The number of selected anomalies. 
+  */
+  public int getSelectedCount() {
+    return selectedCount;
+  }
+  
+  /**
+   Return the number of anomalies of one type. 
+  
+   @param anomalyType The type of anomaly. 
+  
+   @return The number of anomalies of that type. 
+  */
+  public int getCount(AnomalyType anomalyType) {
+    int id = anomalyType.getID().intValue();
+    if (id < countByType.length) {
+      return countByType[id];
+    } else {
+      return 0;
+    }
+  }
+  
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.nio.charset.*;
+  import java.util.*;
+
+/**
+ Writes the anomalies passed to it to a text file, as they arrive, laid 
+ out as they would be in the anomaly tree: each artist, album and track 
+ with an anomaly on its own line, and each anomaly on a line below the 
+ object that has it, indented to show where each sits. Only anomalies of 
+ the types selected are written. Attributes are not written. 
+
+ Any error writing the file stops the writing, and is kept to be 
+ returned by getException. 
+
+ @author Herb Bowie
+ */
+public class FileAnomalySink
+    implements AnomalySink {
+  
+  public static final String      INDENT = "  ";
+  
+  private     File                file;
+  private     BufferedWriter      writer;
+  private     IOException         exception = null;
+  private     int                 linesWritten = 0;
+  
+  /** The objects on the lines most recently written, from the artist down. */
+  private     ArrayList<TunesObject> path = new ArrayList<TunesObject>();
+  
+  /** The objects above the next anomaly, from the artist down. */
+  private     ArrayList<TunesObject> owners = new ArrayList<TunesObject>();
+  
+  /**
+   Open the file to be written. 
+  
+   @param file The file to which anomalies are to be written. 
+  
+   @throws IOException If the file could not be opened. 
+  */
+  public FileAnomalySink(File file) 
+      throws IOException {
+    this.file = file;
+    writer = new BufferedWriter(new OutputStreamWriter(
+        new FileOutputStream(file), Charset.forName("UTF-8")));
+  }
+  
+  /**
+   Write an anomaly, along with any of the objects above it that have not 
+   just been written. 
+  
+   @param anomaly The anomaly found. 
+  */
+  @Override
+  public void add(TunesAnomaly anomaly) {
+    if (exception != null
+        || (! anomaly.getAnomalyType().isSelected())) {
+      return;
+    }
+    owners.clear();
+    addOwners(anomaly.getObject());
+    int depth = 0;
+    while (depth < path.size()
+        && depth < owners.size()
+        && path.get(depth) == owners.get(depth)) {
+      depth++;
+    }
+    while (path.size() > depth) {
+      path.remove(path.size() - 1);
+    }
+    try {
+      while (depth < owners.size()) {
+        TunesObject owner = owners.get(depth);
+        writeLine(depth, owner);
+        path.add(owner);
+        depth++;
+      }
+      writeLine(depth, anomaly);
+    } catch (IOException e) {
+      exception = e;
+    }
+  } // end method add
+  
+  /**
+   Add the passed object to the list of owners, after any objects above it. 
+  */
+  private void addOwners(TunesObject object) {
+    TunesObject parent = null;
+    if (object instanceof TunesFile) {
+      parent = ((TunesFile)object).getTunesTrack();
+    }
+    else
+    if (object instanceof TunesTrack) {
+      parent = ((TunesTrack)object).getTunesAlbum();
+    }
+    else
+    if (object instanceof TunesAlbum) {
+      parent = ((TunesAlbum)object).getTunesArtist();
+    }
+    if (parent != null) {
+      addOwners(parent);
+    }
+    owners.add(object);
+  }
+  
+  private void writeLine(int depth, Object payload) 
+      throws IOException {
+    for (int i = 0; i < depth; i++) {
+      writer.write(INDENT);
+    }
+    writer.write(payload.toString());
+    writer.newLine();
+    linesWritten++;
+  }
+  
+  /**
+   Close the file. 
+  */
+  @Override
+  public void close() {
+    try {
+      writer.close();
+    } catch (IOException e) {
+      if (exception == null) {
+        exception = e;
+      }
+    }
+  }
+  
+  public File getFile() {
+    return file;
+  }
+  
+  public int getLinesWritten() {
+    return linesWritten;
+  }
+  
+  /**
+   Return the first error encountered while writing the file. 
+  
+   @return The error, or null if the file was written successfully. 
+  */
+  public IOException getException() {
+    return exception;
+  }
+  
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.net.*;
+  import java.nio.charset.*;
+
+/**
+ Converts the file URLs found in an iTunes library, such as
+ "file:///Users/me/Music/iTunes/iTunes%20Media/Music/...", to file paths.
+
+ Simple file URLs are decoded directly, in a single pass, without building
+ URL or URI objects along the way; a URL with no percent escapes needs
+ nothing more than one substring. Anything unusual is passed to URL and URI,
+ as before, so that the results are always the same.
+
+ @author Herb Bowie
+ */
+public class FileURLDecoder {
+
+  public static final String      FILE_SCHEME   = "file:";
+  public static final String      LOCALHOST     = "localhost";
+
+  private static final Charset    UTF8          = Charset.forName("UTF-8");
+
+  /**
+   Convert a location to a file. If the location is a URL, then its
+   decoded path is used; otherwise the location is taken as a path.
+
+   @param location A URL or path.
+
+   @return The file identified.
+  */
+  public static File toFile(String location) {
+    String path = null;
+    if (isFileURL(location)) {
+      path = decode(location);
+    } else {
+      path = decodeURL(location);
+    }
+    if (path == null) {
+      return new File(location);
+    } else {
+      return new File(path);
+    }
+  }
+
+  /**
+   Does this string start with the file scheme?
+
+   @param location A URL or path.
+
+   @return True if this looks like a file URL.
+  */
+  public static boolean isFileURL(String location) {
+    return location.regionMatches(true, 0, FILE_SCHEME, 0, FILE_SCHEME.length());
+  }
+
+  /**
+   Decode a file URL, returning the part following the scheme, with any
+   percent escapes decoded. The result, like the scheme specific part of a
+   URI, may still start with two or three slashes, and so should be passed
+   through a File to obtain a normal path.
+
+   @param url The file URL to be decoded.
+
+   @return The decoded path, or null if the URL is not valid.
+  */
+  public static String decode(String url) {
+
+    // First see if this is a simple URL, and find the first escape
+    int length = url.length();
+    int start = FILE_SCHEME.length();
+    int firstEscape = -1;
+    int i = start;
+    if (length <= start) {
+      return decodeURL(url);
+    }
+
+    // Leave any authority other than the local host to URL and URI
+    if (url.startsWith("//", start)) {
+      int authorityEnd = url.indexOf('/', start + 2);
+      if (authorityEnd < 0) {
+        return decodeURL(url);
+      }
+      int authorityLength = authorityEnd - (start + 2);
+      if (authorityLength > 0
+          && (authorityLength != LOCALHOST.length()
+            || (! url.regionMatches
+              (true, start + 2, LOCALHOST, 0, authorityLength)))) {
+        return decodeURL(url);
+      }
+    }
+
+    while (i < length) {
+      char c = url.charAt(i);
+      if (c == '%') {
+        if (i + 2 >= length
+            || hexValue(url.charAt(i + 1)) < 0
+            || hexValue(url.charAt(i + 2)) < 0) {
+          return decodeURL(url);
+        }
+        if (firstEscape < 0) {
+          firstEscape = i;
+        }
+        i = i + 3;
+      }
+      else
+      if (isPathCharacter(c)) {
+        i++;
+      } else {
+        return decodeURL(url);
+      }
+    } // end while checking each character
+
+    if (firstEscape < 0) {
+      return url.substring(start);
+    }
+
+    // Decode each run of escapes as a sequence of UTF-8 bytes
+    StringBuilder path = new StringBuilder(length - start);
+    path.append(url, start, firstEscape);
+    byte[] bytes = new byte[(length - firstEscape) / 3];
+    i = firstEscape;
+    while (i < length) {
+      char c = url.charAt(i);
+      if (c == '%') {
+        int numberOfBytes = 0;
+        while (i < length && url.charAt(i) == '%') {
+          bytes[numberOfBytes] = (byte)((hexValue(url.charAt(i + 1)) << 4)
+              + hexValue(url.charAt(i + 2)));
+          numberOfBytes++;
+          i = i + 3;
+        }
+        path.append(new String(bytes, 0, numberOfBytes, UTF8));
+      } else {
+        path.append(c);
+        i++;
+      }
+    } // end while decoding
+    return path.toString();
+  } // end method decode
+
+  /**
+   Decode a URL the long way round, through URL and URI objects.
+
+   @param url The URL to be decoded.
+
+   @return The decoded scheme specific part, or null if the URL is not valid.
+  */
+  private static String decodeURL(String url) {
+    try {
+      URL workURL = new URL(url);
+      URI workURI = workURL.toURI();
+      return workURI.getSchemeSpecificPart();
+    } catch (MalformedURLException e) {
+      return null;
+    }
+    catch (URISyntaxException e) {
+      return null;
+    }
+  }
+
+  /**
+   Can this character appear as is in the path of a simple file URL? Any
+   character that would need special handling in a URI, such as a question
+   mark or a space, sends the URL down the long way round.
+  */
+  private static boolean isPathCharacter(char c) {
+    if (c >= 'a' && c <= 'z') {
+      return true;
+    }
+    else
+    if (c >= 'A' && c <= 'Z') {
+      return true;
+    }
+    else
+    if (c >= '0' && c <= '9') {
+      return true;
+    }
+    else
+    if (c < 0x80) {
+      return ("/-_.!~*'();:@&=+$,".indexOf(c) >= 0);
+    } else {
+      return (! Character.isSpaceChar(c))
+          && (! Character.isISOControl(c));
+    }
+  }
+
+  private static int hexValue(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    else
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    else
+    if (c >= 'A' && c <= 'F') {
+      return c - 'A' + 10;
+    } else {
+      return -1;
+    }
+  }
+
+}
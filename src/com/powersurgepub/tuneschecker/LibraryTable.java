@@ -32,14 +32,24 @@ public class LibraryTable
   
   public static final int[] COLUMN_WIDTH = { 70, 250, 30 };
   
+  /** The number of libraries for which rows are shown before any are opened. */
+  public static final int      DEFAULT_LIBS = 2;
+  
   public static final String[] ROW_NAMES = {
     "Library File 1", "Media Music Folder 1", "Library File "
   };
   
   private ArrayList<TunesLibrary> libraries; 
   
+  /** 
+   What is shown for each library, copied on the Event Dispatch Thread, 
+   since the libraries themselves are filled in on a background thread. 
+  */
+  private ArrayList<ShownLibrary> shown;
+  
   public LibraryTable() {
     libraries = new ArrayList<TunesLibrary>();
+    shown = new ArrayList<ShownLibrary>();
   }
   
   /**
@@ -47,16 +57,11 @@ public class LibraryTable
   
    @param library The library to be added. 
   
-   @return The index at which the library was added, or -1 if the library could
-           not be added. 
+   @return The index at which the library was added. 
   */
   public int add(TunesLibrary library) {
-    if (libraries.size() < TunesSources.MAX_LIBS) {
-      libraries.add(library);
-      return (libraries.size() - 1);
-    } else {
-      return -1;
-    }
+    libraries.add(library);
+    return (libraries.size() - 1);
   }
   
   /**
@@ -81,6 +86,19 @@ public class LibraryTable
     return libraries.get(libIndex);
   }
   
+  /**
+   Copy what is to be shown from each library, and let the table know that 
+   it has changed. This must be called on the Event Dispatch Thread, at a 
+   time when no background task is changing the libraries. 
+  */
+  public void refresh() {
+    shown = new ArrayList<ShownLibrary>();
+    for (TunesLibrary library: libraries) {
+      shown.add(new ShownLibrary(library));
+    }
+    fireTableDataChanged();
+  }
+  
   /**
    Get the name of the column, to go at the top of each column. 
   
@@ -99,13 +117,14 @@ public class LibraryTable
   
   /**
    Get the number of rows in the table. Note that each library has two rows,
-   one for the library file, and one for the media music folder. 
+   one for the library file, and one for the media music folder, and that 
+   rows are shown for the next library to be opened. 
   
-   @return The maximum number of libraries times 2.
+   @return The number of libraries to be shown times 2.
   */
   @Override
   public int getRowCount() { 
-    return TunesSources.MAX_LIBS * 2; 
+    return Math.max(shown.size() + 1, DEFAULT_LIBS) * 2; 
   }
   
   /**
@@ -150,23 +169,41 @@ public class LibraryTable
       }
     }
     else
-    if (row < 0 || libIndex >= libraries.size()) {
+    if (row < 0 || libIndex >= shown.size()) {
       return "";
     } else {
       switch (col) {
         case 1:
-          if (libOrMedia == 0) {
-            return libraries.get(libIndex).getLibraryFile().toString();
-          } else {
-            return libraries.get(libIndex).getMusicFolder().toString();
-          }
+          return shown.get(libIndex).names[libOrMedia];
         case 2:
-          return libraries.get(libIndex).getCountAsInteger
-              (libOrMedia, TunesLibrary.TRACKS);
+          return shown.get(libIndex).tracks[libOrMedia];
         default:
           return "";
       } // end column index switch
     } // end if we have a valid row count
   } // end method getValueAt
+  
+  /**
+   What is shown for one library: the name of its library file and music 
+   folder, and the number of tracks in each. 
+  */
+  private static class ShownLibrary {
+    
+    private String[]  names = new String[2];
+    private Integer[] tracks = new Integer[2];
+    
+    private ShownLibrary(TunesLibrary library) {
+      names[TunesLibrary.LIB] = String.valueOf(library.getLibraryFile());
+      if (library.getMusicFolder() == null) {
+        names[TunesLibrary.MEDIA] = "";
+      } else {
+        names[TunesLibrary.MEDIA] = library.getMusicFolder().toString();
+      }
+      for (int libOrMedia = 0; libOrMedia < 2; libOrMedia++) {
+        tracks[libOrMedia] = library.getCountAsInteger
+            (libOrMedia, TunesLibrary.TRACKS);
+      }
+    }
+  }
 
 }
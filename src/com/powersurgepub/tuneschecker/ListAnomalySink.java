@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.util.*;
+
+/**
+ Holds the anomalies passed to it in memory, in the sequence in which they 
+ were found. 
+
+ @author Herb Bowie
+ */
+public class ListAnomalySink
+    implements AnomalySink {
+  
+  private     ArrayList<TunesAnomaly> anomalies 
+      = new ArrayList<TunesAnomaly>();
+  
+  public ListAnomalySink() {
+    
+  }
+  
+  @Override
+  public void add(TunesAnomaly anomaly) {
+    anomalies.add(anomaly);
+  }
+  
+  @Override
+  public void close() {
+    
+  }
+  
+  /**
+   Return the anomalies passed so far. 
+  
+   @return The anomalies, in the sequence in which they were found. 
+  */
+  public List<TunesAnomaly> getAnomalies() {
+    return anomalies;
+  }
+  
+  public int size() {
+    return anomalies.size();
+  }
+  
+  /**
+   Forget the anomalies passed so far. 
+  */
+  public void clear() {
+    anomalies.clear();
+  }
+  
+}
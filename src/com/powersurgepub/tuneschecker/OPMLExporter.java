@@ -0,0 +1,393 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.nio.charset.*;
+
+/**
+ Writes a tunes collection to an OPML file, streaming each artist as it 
+ is walked, through a single reusable buffer that is written out whenever 
+ it fills. Attribute names are encoded once, numbers are formatted by hand, 
+ and text is escaped and encoded as UTF-8 directly into the buffer, so that 
+ nothing need be allocated for each outline, and memory use stays the same 
+ however large the collection. 
+
+ @author Herb Bowie
+ */
+public class OPMLExporter {
+  
+  public static final int         DEFAULT_BUFFER_SIZE = 256 * 1024;
+  
+  /** Pre-encoded attribute names, each with its leading space and quote. */
+  public static final byte[]      TEXT        = attributeName("text");
+  public static final byte[]      ARTIST      = attributeName("Artist");
+  public static final byte[]      YEAR        = attributeName("Year");
+  public static final byte[]      NUMBER      = attributeName("Number");
+  public static final byte[]      GENRE       = attributeName("Genre");
+  public static final byte[]      RATING      = attributeName("Rating");
+  
+  private static final byte[]     HEADER      = ascii(
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<opml version=\"2.0\">\n"
+      + "  <head>\n"
+      + "    <title>Tunes</title>\n"
+      + "  </head>\n"
+      + "  <body>\n");
+  private static final byte[]     FOOTER      = ascii(
+        "  </body>\n"
+      + "</opml>\n");
+  private static final byte[]     OUTLINE_OPEN    = ascii("<outline");
+  private static final byte[]     OUTLINE_END     = ascii("</outline>\n");
+  private static final byte[]     AMP             = ascii("&amp;");
+  private static final byte[]     LT              = ascii("&lt;");
+  private static final byte[]     GT              = ascii("&gt;");
+  private static final byte[]     QUOT            = ascii("&quot;");
+  
+  /** Outlines start at this depth, within the opml and body elements. */
+  private static final int        BODY_DEPTH      = 2;
+  private static final int        INDENT          = 2;
+  
+  private     OutputStream        out;
+  private     byte[]              buffer;
+  private     int                 count = 0;
+  private     long                bytesWritten = 0;
+  private     int                 depth = BODY_DEPTH;
+  
+  /** An error met while writing a full buffer, held until the next flush. */
+  private     IOException         pending = null;
+  
+  /**
+   Prepare to export to a file. 
+  
+   @param file The file to be written. 
+  */
+  public OPMLExporter(File file) 
+      throws IOException {
+    this(new FileOutputStream(file), DEFAULT_BUFFER_SIZE);
+  }
+  
+  /**
+   Prepare to export to an output stream, which will be closed along with 
+   the exporter. 
+  
+   @param out        The stream to be written. 
+   @param bufferSize The size of the buffer to fill before each write. 
+  */
+  public OPMLExporter(OutputStream out, int bufferSize) {
+    this.out = out;
+    buffer = new byte[Math.max(bufferSize, 1024)];
+  }
+  
+  /**
+   Write the OPML header, through the opening of the body. 
+  */
+  public void startDocument() {
+    write(HEADER);
+    depth = BODY_DEPTH;
+  }
+  
+  /**
+   Write the end of the body and the OPML footer. 
+  */
+  public void endDocument() {
+    write(FOOTER);
+  }
+  
+  /**
+   Start an outline, ready for its attributes. 
+  */
+  public void startOutlineOpen() {
+    indent();
+    write(OUTLINE_OPEN);
+  }
+  
+  /**
+   Write a text attribute, escaping it as needed. 
+  
+   @param name  The pre-encoded attribute name, such as TEXT. 
+   @param value The value of the attribute. 
+  */
+  public void writeOutlineAttribute(byte[] name, String value) {
+    write(name);
+    writeEscaped(value);
+    writeByte('"');
+  }
+  
+  /**
+   Write a numeric attribute, padded with leading zeroes to a minimum 
+   number of digits. 
+  
+   @param name      The pre-encoded attribute name, such as NUMBER. 
+   @param value     The value of the attribute. 
+   @param minDigits The minimum number of digits to write. 
+  */
+  public void writeOutlineAttribute(byte[] name, int value, int minDigits) {
+    write(name);
+    writeInt(value, minDigits);
+    writeByte('"');
+  }
+  
+  /**
+   Write an iTunes rating, of zero to 100, as a number of stars, of zero 
+   to five, in the same form as String.valueOf(rating / 20.0). 
+  
+   @param name   The pre-encoded attribute name, such as RATING. 
+   @param rating The iTunes rating. 
+  */
+  public void writeRatingAttribute(byte[] name, int rating) {
+    write(name);
+    if (rating < 0) {
+      writeEscaped(String.valueOf(rating / 20.0));
+    } else {
+      writeInt(rating / 20, 1);
+      writeByte('.');
+      int hundredths = (rating % 20) * 5;
+      if (hundredths % 10 == 0) {
+        writeByte('0' + (hundredths / 10));
+      } else {
+        writeInt(hundredths, 2);
+      }
+    }
+    writeByte('"');
+  }
+  
+  /**
+   Finish the attributes of an outline that will contain others. 
+  */
+  public void startOutlineClose() {
+    writeByte('>');
+    writeByte('\n');
+    depth++;
+  }
+  
+  /**
+   Finish an outline that contains no others. 
+  */
+  public void closeEmptyOutline() {
+    writeByte('/');
+    writeByte('>');
+    writeByte('\n');
+  }
+  
+  /**
+   Start an outline with just a text attribute, that will contain others. 
+  
+   @param text The text of the outline. 
+  */
+  public void startOutline(String text) {
+    startOutlineOpen();
+    writeOutlineAttribute(TEXT, text);
+    startOutlineClose();
+  }
+  
+  /**
+   End an outline that contains others. 
+  */
+  public void endOutline() {
+    depth--;
+    indent();
+    write(OUTLINE_END);
+  }
+  
+  /**
+   Write out whatever remains in the buffer. 
+  */
+  public void flush() 
+      throws IOException {
+    if (pending != null) {
+      IOException e = pending;
+      pending = null;
+      throw e;
+    }
+    if (count > 0) {
+      out.write(buffer, 0, count);
+      bytesWritten = bytesWritten + count;
+      count = 0;
+    }
+    out.flush();
+  }
+  
+  /**
+   Write out whatever remains in the buffer, and close the output. 
+  */
+  public void close() 
+      throws IOException {
+    try {
+      flush();
+    } finally {
+      out.close();
+    }
+  }
+  
+  /**
+   Return the number of bytes written so far, not counting any still in 
+   the buffer. 
+  
+   @return The number of bytes written. 
+  */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+  
+  private void indent() {
+    int spaces = depth * INDENT;
+    ensure(spaces);
+    for (int i = 0; i < spaces; i++) {
+      buffer[count++] = ' ';
+    }
+  }
+  
+  private void write(byte[] bytes) {
+    ensure(bytes.length);
+    System.arraycopy(bytes, 0, buffer, count, bytes.length);
+    count = count + bytes.length;
+  }
+  
+  private void writeByte(int b) {
+    ensure(1);
+    buffer[count++] = (byte)b;
+  }
+  
+  /**
+   Write an integer in decimal, padded with leading zeroes. 
+  */
+  private void writeInt(int value, int minDigits) {
+    if (value < 0) {
+      writeByte('-');
+      writeEscaped(String.valueOf(value).substring(1));
+      return;
+    }
+    int digits = 1;
+    for (int rest = value / 10; rest > 0; rest = rest / 10) {
+      digits++;
+    }
+    digits = Math.max(digits, minDigits);
+    ensure(digits);
+    int end = count + digits;
+    for (int i = end - 1; i >= count; i--) {
+      buffer[i] = (byte)('0' + (value % 10));
+      value = value / 10;
+    }
+    count = end;
+  }
+  
+  /**
+   Write text as UTF-8, escaping the characters that need it within an 
+   attribute value. 
+  */
+  private void writeEscaped(String text) {
+    if (text == null) {
+      return;
+    }
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        if (c == '&') {
+          write(AMP);
+        }
+        else
+        if (c == '<') {
+          write(LT);
+        }
+        else
+        if (c == '>') {
+          write(GT);
+        }
+        else
+        if (c == '"') {
+          write(QUOT);
+        }
+        else
+        if (c < ' ') {
+          writeCharacterReference(c);
+        } else {
+          writeByte(c);
+        }
+      }
+      else
+      if (c < 0x800) {
+        ensure(2);
+        buffer[count++] = (byte)(0xc0 | (c >> 6));
+        buffer[count++] = (byte)(0x80 | (c & 0x3f));
+      }
+      else
+      if (Character.isHighSurrogate(c)
+          && i + 1 < length
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+        i++;
+        ensure(4);
+        buffer[count++] = (byte)(0xf0 | (codePoint >> 18));
+        buffer[count++] = (byte)(0x80 | ((codePoint >> 12) & 0x3f));
+        buffer[count++] = (byte)(0x80 | ((codePoint >> 6) & 0x3f));
+        buffer[count++] = (byte)(0x80 | (codePoint & 0x3f));
+      }
+      else
+      if (Character.isSurrogate(c)) {
+        writeByte('?');
+      } else {
+        ensure(3);
+        buffer[count++] = (byte)(0xe0 | (c >> 12));
+        buffer[count++] = (byte)(0x80 | ((c >> 6) & 0x3f));
+        buffer[count++] = (byte)(0x80 | (c & 0x3f));
+      }
+    } // end for each character
+  }
+  
+  /**
+   Write a control character as a numeric character reference, so that 
+   tabs and line breaks survive within attribute values. Other control 
+   characters are not allowed in XML, and are dropped. 
+  */
+  private void writeCharacterReference(char c) {
+    if (c == '\t' || c == '\n' || c == '\r') {
+      writeByte('&');
+      writeByte('#');
+      writeInt(c, 1);
+      writeByte(';');
+    }
+  }
+  
+  /**
+   Make sure there is room in the buffer for the given number of bytes, 
+   writing out what it holds if there is not. Since the exporter's own 
+   methods cannot throw, any I/O error is held until the next flush. 
+  */
+  private void ensure(int needed) {
+    if (count + needed > buffer.length) {
+      try {
+        out.write(buffer, 0, count);
+        bytesWritten = bytesWritten + count;
+      } catch (IOException e) {
+        if (pending == null) {
+          pending = e;
+        }
+      }
+      count = 0;
+    }
+  }
+  
+  private static byte[] attributeName(String name) {
+    return ascii(" " + name + "=\"");
+  }
+  
+  private static byte[] ascii(String str) {
+    return str.getBytes(StandardCharsets.US_ASCII);
+  }
+  
+}
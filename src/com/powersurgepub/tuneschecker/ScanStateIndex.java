@@ -0,0 +1,278 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.util.*;
+
+/**
+ What we found the last time we scanned a library's Media Music folder: the
+ last modified time of the folder itself, and of each artist and album
+ folder within it, along with the keys of the artists, albums and tracks
+ that each folder contributed to the collection. This allows a later scan
+ to list only those folders that have changed since.
+
+ @author Herb Bowie
+ */
+public class ScanStateIndex {
+
+  private     long                musicFolderModified = -1;
+
+  /** Artist folders, keyed by folder name, in the sequence listed. */
+  private     LinkedHashMap<String, ArtistEntry> artists
+      = new LinkedHashMap<String, ArtistEntry>();
+
+  public ScanStateIndex() {
+
+  }
+
+  /**
+   Forget everything from any prior scan.
+  */
+  public void clear() {
+    musicFolderModified = -1;
+    artists = new LinkedHashMap<String, ArtistEntry>();
+  }
+
+  /**
+   Has a complete scan been recorded?
+
+   @return True if there is nothing in the index.
+  */
+  public boolean isEmpty() {
+    return (musicFolderModified < 0);
+  }
+
+  public void setMusicFolderModified(long musicFolderModified) {
+    this.musicFolderModified = musicFolderModified;
+  }
+
+  public long getMusicFolderModified() {
+    return musicFolderModified;
+  }
+
+  /**
+   Record an artist folder, replacing anything recorded earlier for it.
+
+   @param artistFolderName The name of the artist folder.
+   @param artistKey        The common name of the artist stored.
+   @param modified         The last modified time of the folder.
+
+   @return The new entry, to which albums may be added.
+  */
+  ArtistEntry putArtist(
+      String artistFolderName,
+      String artistKey,
+      long modified) {
+
+    ArtistEntry entry = new ArtistEntry(artistKey, modified);
+    artists.put(artistFolderName, entry);
+    return entry;
+  }
+
+  ArtistEntry getArtist(String artistFolderName) {
+    return artists.get(artistFolderName);
+  }
+
+  void removeArtist(String artistFolderName) {
+    artists.remove(artistFolderName);
+  }
+
+  /**
+   Return the names of the artist folders recorded, as a new list, so that
+   the index may be changed while the list is being processed.
+
+   @return The artist folder names, in the sequence in which they were listed.
+  */
+  List<String> getArtistFolderNames() {
+    return new ArrayList<String>(artists.keySet());
+  }
+
+  /**
+   Return the number of track entries found in all of the album folders,
+   as counted by a complete scan.
+
+   @return The number of tracks found in the Media Music folder.
+  */
+  public int getTrackCount() {
+    int trackCount = 0;
+    for (ArtistEntry artistEntry: artists.values()) {
+      for (AlbumEntry albumEntry: artistEntry.albums.values()) {
+        trackCount = trackCount + albumEntry.trackKeys.size();
+      }
+    }
+    return trackCount;
+  }
+
+  /**
+   Write the index to a snapshot.
+
+   @param snapshot The snapshot being written.
+  */
+  void writeSnapshot(TunesSnapshot snapshot)
+      throws IOException {
+    snapshot.writeLong(musicFolderModified);
+    snapshot.writeInt(artists.size());
+    for (Map.Entry<String, ArtistEntry> artist: artists.entrySet()) {
+      ArtistEntry artistEntry = artist.getValue();
+      snapshot.writeString(artist.getKey());
+      snapshot.writeString(artistEntry.artistKey);
+      snapshot.writeLong(artistEntry.modified);
+      snapshot.writeInt(artistEntry.albums.size());
+      for (Map.Entry<String, AlbumEntry> album:
+          artistEntry.albums.entrySet()) {
+        AlbumEntry albumEntry = album.getValue();
+        snapshot.writeString(album.getKey());
+        snapshot.writeString(albumEntry.albumKey);
+        snapshot.writeLong(albumEntry.modified);
+        snapshot.writeInt(albumEntry.trackKeys.size());
+        for (int k = 0; k < albumEntry.trackKeys.size(); k++) {
+          snapshot.writeString(albumEntry.trackKeys.get(k));
+          snapshot.writeString(albumEntry.filePaths.get(k));
+        }
+      }
+    }
+  }
+
+  /**
+   Read the index from a snapshot.
+
+   @param snapshot The snapshot being read.
+  */
+  void readSnapshot(TunesSnapshot snapshot)
+      throws IOException {
+    clear();
+    musicFolderModified = snapshot.readLong();
+    int numberOfArtists = snapshot.readInt();
+    for (int i = 0; i < numberOfArtists; i++) {
+      String artistFolderName = snapshot.readString();
+      String artistKey = snapshot.readString();
+      long artistModified = snapshot.readLong();
+      ArtistEntry artistEntry
+          = putArtist(artistFolderName, artistKey, artistModified);
+      int numberOfAlbums = snapshot.readInt();
+      for (int j = 0; j < numberOfAlbums; j++) {
+        String albumFolderName = snapshot.readString();
+        String albumKey = snapshot.readString();
+        long albumModified = snapshot.readLong();
+        AlbumEntry albumEntry
+            = artistEntry.putAlbum(albumFolderName, albumKey, albumModified);
+        int numberOfTracks = snapshot.readInt();
+        for (int k = 0; k < numberOfTracks; k++) {
+          String trackKey = snapshot.readString();
+          albumEntry.addTrack(trackKey, snapshot.readString());
+        }
+      }
+    }
+  }
+
+  /**
+   What we know about one artist folder.
+  */
+  static class ArtistEntry {
+
+    private String  artistKey;
+    private long    modified;
+
+    /** Album folders, keyed by folder name, in the sequence listed. */
+    private LinkedHashMap<String, AlbumEntry> albums
+        = new LinkedHashMap<String, AlbumEntry>();
+
+    private ArtistEntry(String artistKey, long modified) {
+      this.artistKey = artistKey;
+      this.modified = modified;
+    }
+
+    String getArtistKey() {
+      return artistKey;
+    }
+
+    void setModified(long modified) {
+      this.modified = modified;
+    }
+
+    long getModified() {
+      return modified;
+    }
+
+    /**
+     Record an album folder, replacing anything recorded earlier for it.
+    */
+    AlbumEntry putAlbum(String albumFolderName, String albumKey, long modified) {
+      AlbumEntry entry = new AlbumEntry(albumKey, modified);
+      albums.put(albumFolderName, entry);
+      return entry;
+    }
+
+    AlbumEntry getAlbum(String albumFolderName) {
+      return albums.get(albumFolderName);
+    }
+
+    void removeAlbum(String albumFolderName) {
+      albums.remove(albumFolderName);
+    }
+
+    List<String> getAlbumFolderNames() {
+      return new ArrayList<String>(albums.keySet());
+    }
+  }
+
+  /**
+   What we know about one album folder: the album it was stored in, and
+   the track, and file path, for each track entry found.
+  */
+  static class AlbumEntry {
+
+    private String  albumKey;
+    private long    modified;
+
+    private ArrayList<String> trackKeys = new ArrayList<String>();
+
+    /** The path to each track file, or an empty string if not a file. */
+    private ArrayList<String> filePaths = new ArrayList<String>();
+
+    private AlbumEntry(String albumKey, long modified) {
+      this.albumKey = albumKey;
+      this.modified = modified;
+    }
+
+    String getAlbumKey() {
+      return albumKey;
+    }
+
+    long getModified() {
+      return modified;
+    }
+
+    void addTrack(String trackKey, String filePath) {
+      trackKeys.add(trackKey);
+      filePaths.add(filePath);
+    }
+
+    int getNumberOfTracks() {
+      return trackKeys.size();
+    }
+
+    String getTrackKey(int trackIndex) {
+      return trackKeys.get(trackIndex);
+    }
+
+    String getFilePath(int trackIndex) {
+      return filePaths.get(trackIndex);
+    }
+  }
+
+}
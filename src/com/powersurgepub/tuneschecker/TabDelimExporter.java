@@ -0,0 +1,402 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import com.powersurgepub.psdatalib.psdata.*;
+  import java.io.*;
+  import java.util.zip.*;
+
+/**
+ Exports a tunes collection to a tab-delimited file, one line per track, 
+ with the columns named by a record definition. The position of each 
+ column is looked up once, when the exporter is created, rather than by 
+ name for every field of every track. Each field is encoded as UTF-8 into 
+ a slot kept for its column, and reused from one record to the next, so 
+ that the artist and album fields need only be encoded once for all of 
+ their tracks. Each record is then copied into a single large buffer, 
+ which is written out whenever it fills. If the file name ends with ".gz", 
+ the output is compressed as it is written. 
+
+ @author Herb Bowie
+ */
+public class TabDelimExporter {
+  
+  public static final int         DEFAULT_BUFFER_SIZE = 256 * 1024;
+  public static final String      GZIP_SUFFIX         = ".gz";
+  
+  private static final int        INITIAL_FIELD_SIZE  = 64;
+  
+  /** Positions of the columns, or -1 for any not in the record definition. */
+  public  final int               artistColumn;
+  public  final int               sortArtistColumn;
+  public  final int               artistFolderNameColumn;
+  public  final int               artistCommonNameColumn;
+  public  final int               albumArtistColumn;
+  public  final int               albumColumn;
+  public  final int               sortAlbumColumn;
+  public  final int               albumFolderNameColumn;
+  public  final int               albumCommonNameColumn;
+  public  final int               trackNumberColumn;
+  public  final int               trackNameColumn;
+  public  final int               trackSortNameColumn;
+  public  final int               trackFileNameColumn;
+  public  final int               trackCommonNameColumn;
+  public  final int               trackArtistColumn;
+  public  final int               composerColumn;
+  public  final int               genreColumn;
+  public  final int               yearColumn;
+  public  final int               ratingColumn;
+  public  final int               playingTimeColumn;
+  
+  private     RecordDefinition    recDef;
+  private     OutputStream        out;
+  
+  /** The encoded value of each column, and the length of each value. */
+  private     byte[][]            fields;
+  private     int[]               fieldLengths;
+  
+  private     byte[]              buffer;
+  private     int                 count = 0;
+  private     long                bytesWritten = 0;
+  
+  /**
+   Prepare to export to a file, compressing it if its name ends with ".gz". 
+  
+   @param file   The file to be written. 
+   @param recDef The columns to be written. 
+  */
+  public TabDelimExporter(File file, RecordDefinition recDef) 
+      throws IOException {
+    this(openForOutput(file), recDef, DEFAULT_BUFFER_SIZE);
+  }
+  
+  /**
+   Prepare to export to an output stream, which will be closed along with 
+   the exporter. 
+  
+   @param out        The stream to be written. 
+   @param recDef     The columns to be written. 
+   @param bufferSize The size of the buffer to fill before each write. 
+  */
+  public TabDelimExporter(
+      OutputStream out, 
+      RecordDefinition recDef, 
+      int bufferSize) {
+    
+    this.out = out;
+    this.recDef = recDef;
+    buffer = new byte[Math.max(bufferSize, 1024)];
+    int columns = recDef.getNumberOfFields();
+    fields = new byte[columns][];
+    fieldLengths = new int[columns];
+    for (int i = 0; i < columns; i++) {
+      fields[i] = new byte[INITIAL_FIELD_SIZE];
+    }
+    
+    artistColumn            = recDef.getColumnNumber(TunesArtist.ARTIST);
+    sortArtistColumn        = recDef.getColumnNumber(TunesArtist.SORT_ARTIST);
+    artistFolderNameColumn  
+        = recDef.getColumnNumber(TunesArtist.ARTIST_FOLDER_NAME);
+    artistCommonNameColumn  
+        = recDef.getColumnNumber(TunesArtist.ARTIST_COMMON_NAME);
+    albumArtistColumn       = recDef.getColumnNumber(TunesAlbum.ALBUM_ARTIST);
+    albumColumn             = recDef.getColumnNumber(TunesAlbum.ALBUM);
+    sortAlbumColumn         = recDef.getColumnNumber(TunesAlbum.SORT_ALBUM);
+    albumFolderNameColumn   
+        = recDef.getColumnNumber(TunesAlbum.ALBUM_FOLDER_NAME);
+    albumCommonNameColumn   
+        = recDef.getColumnNumber(TunesAlbum.ALBUM_COMMON_NAME);
+    trackNumberColumn       = recDef.getColumnNumber(TunesTrack.TRACK_NUMBER);
+    trackNameColumn         = recDef.getColumnNumber(TunesTrack.TRACK_NAME);
+    trackSortNameColumn     
+        = recDef.getColumnNumber(TunesTrack.TRACK_SORT_NAME);
+    trackFileNameColumn     
+        = recDef.getColumnNumber(TunesTrack.TRACK_FILE_NAME);
+    trackCommonNameColumn   
+        = recDef.getColumnNumber(TunesTrack.TRACK_COMMON_NAME);
+    trackArtistColumn       = recDef.getColumnNumber(TunesTrack.TRACK_ARTIST);
+    composerColumn          = recDef.getColumnNumber(TunesTrack.COMPOSER);
+    genreColumn             = recDef.getColumnNumber(TunesTrack.GENRE);
+    yearColumn              = recDef.getColumnNumber(TunesTrack.YEAR);
+    ratingColumn            = recDef.getColumnNumber(TunesTrack.RATING);
+    playingTimeColumn       = recDef.getColumnNumber(TunesTrack.PLAYING_TIME);
+  }
+  
+  /**
+   Open a file for output, compressing it if its name ends with ".gz". 
+  
+   @param file The file to be written. 
+  
+   @return The stream to which the file may be written. 
+  */
+  private static OutputStream openForOutput(File file) 
+      throws IOException {
+    OutputStream fileOut = new FileOutputStream(file);
+    if (isCompressed(file)) {
+      try {
+        return new GZIPOutputStream(fileOut, DEFAULT_BUFFER_SIZE);
+      } catch (IOException e) {
+        fileOut.close();
+        throw e;
+      }
+    } else {
+      return fileOut;
+    }
+  }
+  
+  /**
+   Should the passed file be compressed as it is written? 
+  
+   @param file The file to be written. 
+  
+   @return True if its name ends with ".gz". 
+  */
+  public static boolean isCompressed(File file) {
+    return file.getName().toLowerCase().endsWith(GZIP_SUFFIX);
+  }
+  
+  /**
+   Write the heading line, naming each column. 
+  */
+  public void writeHeadings() 
+      throws IOException {
+    for (int i = 0; i < fields.length; i++) {
+      setField(i, recDef.getDef(i).getProperName());
+    }
+    endRecord();
+    clearFields();
+  }
+  
+  /**
+   Set the value of a column for this record and those that follow, until 
+   it is set again. 
+  
+   @param column The position of the column, or -1 if it is not exported. 
+   @param value  The value of the field, or null for an empty field. 
+  */
+  public void setField(int column, String value) {
+    if (column < 0) {
+      return;
+    }
+    fieldLengths[column] = 0;
+    if (value == null) {
+      return;
+    }
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        if (c == '\t' || c == '\n' || c == '\r') {
+          c = ' ';
+        }
+        append(column, c);
+      }
+      else
+      if (c < 0x800) {
+        append(column, 0xc0 | (c >> 6));
+        append(column, 0x80 | (c & 0x3f));
+      }
+      else
+      if (Character.isHighSurrogate(c)
+          && i + 1 < length
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+        i++;
+        append(column, 0xf0 | (codePoint >> 18));
+        append(column, 0x80 | ((codePoint >> 12) & 0x3f));
+        append(column, 0x80 | ((codePoint >> 6) & 0x3f));
+        append(column, 0x80 | (codePoint & 0x3f));
+      }
+      else
+      if (Character.isSurrogate(c)) {
+        append(column, '?');
+      } else {
+        append(column, 0xe0 | (c >> 12));
+        append(column, 0x80 | ((c >> 6) & 0x3f));
+        append(column, 0x80 | (c & 0x3f));
+      }
+    } // end for each character
+  }
+  
+  /**
+   Set the value of a column to an integer, padded with leading zeroes to 
+   a minimum number of digits. 
+  
+   @param column    The position of the column, or -1 if it is not exported. 
+   @param value     The value of the field. 
+   @param minDigits The minimum number of digits to write. 
+  */
+  public void setField(int column, int value, int minDigits) {
+    if (column < 0) {
+      return;
+    }
+    fieldLengths[column] = 0;
+    appendInt(column, value, minDigits);
+  }
+  
+  /**
+   Set the value of a column to an iTunes rating, of zero to 100, as a 
+   number of stars, of zero to five, in the same form as 
+   String.valueOf(rating / 20.0). 
+  
+   @param column The position of the column, or -1 if it is not exported. 
+   @param rating The iTunes rating. 
+  */
+  public void setRatingField(int column, int rating) {
+    if (column < 0) {
+      return;
+    }
+    if (rating < 0) {
+      setField(column, String.valueOf(rating / 20.0));
+    } else {
+      fieldLengths[column] = 0;
+      appendInt(column, rating / 20, 1);
+      append(column, '.');
+      int hundredths = (rating % 20) * 5;
+      if (hundredths % 10 == 0) {
+        append(column, '0' + (hundredths / 10));
+      } else {
+        appendInt(column, hundredths, 2);
+      }
+    }
+  }
+  
+  /**
+   Write a line with the current value of every column. 
+  */
+  public void endRecord() 
+      throws IOException {
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0) {
+        writeByte('\t');
+      }
+      write(fields[i], fieldLengths[i]);
+    }
+    writeByte('\n');
+  }
+  
+  /**
+   Empty every column. 
+  */
+  public void clearFields() {
+    for (int i = 0; i < fieldLengths.length; i++) {
+      fieldLengths[i] = 0;
+    }
+  }
+  
+  /**
+   Write out whatever remains in the buffer. 
+  */
+  public void flush() 
+      throws IOException {
+    if (count > 0) {
+      out.write(buffer, 0, count);
+      bytesWritten = bytesWritten + count;
+      count = 0;
+    }
+    out.flush();
+  }
+  
+  /**
+   Write out whatever remains in the buffer, and close the output, 
+   finishing the compressed data if the output is compressed. 
+  */
+  public void close() 
+      throws IOException {
+    try {
+      flush();
+    } finally {
+      out.close();
+    }
+  }
+  
+  /**
+   Return the number of bytes of text written so far, before any 
+   compression, not counting any still in the buffer. 
+  
+   @return The number of bytes written. 
+  */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+  
+  private void appendInt(int column, int value, int minDigits) {
+    if (value < 0) {
+      append(column, '-');
+      value = -value;
+    }
+    int digits = 1;
+    for (int rest = value / 10; rest > 0; rest = rest / 10) {
+      digits++;
+    }
+    digits = Math.max(digits, minDigits);
+    ensureField(column, digits);
+    byte[] field = fields[column];
+    int end = fieldLengths[column] + digits;
+    for (int i = end - 1; i >= fieldLengths[column]; i--) {
+      field[i] = (byte)('0' + (value % 10));
+      value = value / 10;
+    }
+    fieldLengths[column] = end;
+  }
+  
+  private void append(int column, int b) {
+    ensureField(column, 1);
+    fields[column][fieldLengths[column]++] = (byte)b;
+  }
+  
+  /**
+   Make sure a column's slot has room for the given number of bytes more, 
+   enlarging it if not. Once each slot has grown to fit the longest value 
+   of its column, no more space is needed. 
+  */
+  private void ensureField(int column, int needed) {
+    byte[] field = fields[column];
+    if (fieldLengths[column] + needed > field.length) {
+      byte[] larger = new byte[Math.max(field.length * 2, 
+          fieldLengths[column] + needed)];
+      System.arraycopy(field, 0, larger, 0, fieldLengths[column]);
+      fields[column] = larger;
+    }
+  }
+  
+  private void write(byte[] bytes, int length) 
+      throws IOException {
+    if (count + length > buffer.length) {
+      out.write(buffer, 0, count);
+      bytesWritten = bytesWritten + count;
+      count = 0;
+      if (length > buffer.length) {
+        out.write(bytes, 0, length);
+        bytesWritten = bytesWritten + length;
+        return;
+      }
+    }
+    System.arraycopy(bytes, 0, buffer, count, length);
+    count = count + length;
+  }
+  
+  private void writeByte(int b) 
+      throws IOException {
+    if (count >= buffer.length) {
+      out.write(buffer, 0, count);
+      bytesWritten = bytesWritten + count;
+      count = 0;
+    }
+    buffer[count++] = (byte)b;
+  }
+  
+}
@@ -16,23 +16,40 @@
 package com.powersurgepub.tuneschecker;
 
   import java.io.*;
-  import java.net.*;
 
 /**
  A string containing a file trackName for a track, with get methods to 
  pull out various pieces of the track name. 
 
+ The string is examined just once, when constructed, recording where each 
+ piece starts and ends. Each piece is only copied out of the string the 
+ first time it is requested. 
+
  @author Herb Bowie
  */
 public class TrackFileName {
   
-  private     String              artistName = "";
-  private     String              albumName = "";
+  /** The path to the track file, after decoding any URL. */
+  private     String              path = "";
+  
+  private     int                 artistNameStart = 0;
+  private     int                 artistNameEnd = 0;
+  private     int                 albumNameStart = 0;
+  private     int                 albumNameEnd = 0;
   private     int                 trackNumber = 0;
-  private     String              trackName = "";
-  private     String              sortName = "";
-  private     String              fileName = "";
-  private     String              extension = "";
+  private     int                 trackNameStart = 0;
+  private     int                 trackNameEnd = 0;
+  private     int                 sortNameStart = 0;
+  private     int                 fileNameStart = 0;
+  private     int                 fileNameEnd = 0;
+  private     int                 extensionStart = 0;
+  
+  private     String              artistName = null;
+  private     String              albumName = null;
+  private     String              trackName = null;
+  private     String              sortName = null;
+  private     String              fileName = null;
+  private     String              extension = null;
   
   /**
    Constructor with a track file trackName. 
@@ -44,25 +61,20 @@ public class TrackFileName {
     
     // If it's a URL, convert it to a file path
     String trackFileName = inString;
-    if (inString.startsWith("file:")) {
-      try {
-        URL fileURL = new URL(inString);
-        URI fileURI = fileURL.toURI();
-        File workFile = new File(fileURI.getSchemeSpecificPart());
-        trackFileName = workFile.toString();
-      } catch (MalformedURLException e) {
-        // Leave it alone
-      }
-      catch (URISyntaxException e) {
-        // Leave it alone
+    if (inString.startsWith(FileURLDecoder.FILE_SCHEME)) {
+      String decoded = FileURLDecoder.decode(inString);
+      if (decoded != null) {
+        trackFileName = new File(decoded).toString();
       }
     }
+    path = trackFileName;
+    int length = trackFileName.length();
     
     // Find the start of the actual name of the file (following any path info)
     char slash = '/';
-    int slashIndex = trackFileName.lastIndexOf("/");
+    int slashIndex = trackFileName.lastIndexOf('/');
     if (slashIndex < 0) {
-      slashIndex = trackFileName.lastIndexOf("\\");
+      slashIndex = trackFileName.lastIndexOf('\\');
     }
     if (slashIndex >= 0) {
       slash = trackFileName.charAt(slashIndex);
@@ -72,9 +84,9 @@ public class TrackFileName {
       start = slashIndex + 1;
     }
     
-    int periodIndex = trackFileName.length() - 1;
-    int trackNameEnd = trackFileName.length();
-    int trackNameStart = start;
+    int periodIndex = length - 1;
+    int nameEnd = length;
+    int nameStart = start;
     int dashIndex = start;
     int trackNumberStart = start;
     int trackNumberEnd = -1;
@@ -85,23 +97,24 @@ public class TrackFileName {
       periodIndex--;
     }
     if (periodIndex > 0) {
-      trackNameEnd = periodIndex;
+      nameEnd = periodIndex;
     } else {
-      periodIndex = trackFileName.length();
+      periodIndex = length;
     }
     
-    // Capture the file name
-    fileName = trackFileName.substring(start, trackNameEnd);
+    // Note the file name
+    fileNameStart = start;
+    fileNameEnd = nameEnd;
 
     // Find end of disc number, if it's there
-    while (dashIndex < trackFileName.length()
+    while (dashIndex < length
         && Character.isDigit(trackFileName.charAt(dashIndex))) {
       dashIndex++;
     }
-    if (dashIndex < trackFileName.length()
+    if (dashIndex < length
         && dashIndex < 4
         && trackFileName.charAt(dashIndex) == '-') {
-      trackNameStart = dashIndex + 1;
+      nameStart = dashIndex + 1;
       trackNumberStart = dashIndex + 1;
     } else {
       dashIndex = -1;
@@ -109,16 +122,16 @@ public class TrackFileName {
 
     // Find end of track number, if it's there
     trackNumberEnd = trackNumberStart;
-    while (trackNumberEnd < trackFileName.length()
+    while (trackNumberEnd < length
         && Character.isDigit(trackFileName.charAt(trackNumberEnd))) {
       trackNumberEnd++;
     }
 
     // Find start of track number, if it's there
-    if (trackNumberEnd < trackFileName.length()
+    if (trackNumberEnd < length
         && trackFileName.charAt(trackNumberEnd) == ' '
         && trackNumberEnd == (trackNumberStart + 2)) {
-      trackNameStart = trackNumberEnd + 1;
+      nameStart = trackNumberEnd + 1;
     } else {
       trackNumberStart = -1;
       trackNumberEnd = -1;
@@ -126,43 +139,79 @@ public class TrackFileName {
 
     if (trackNumberStart >= 0
         && trackNumberEnd > 0) {
-      setTrackNumber
-          (trackFileName.substring(trackNumberStart, trackNumberEnd));
+      setTrackNumber(trackFileName, trackNumberStart, trackNumberEnd);
     }
 
-    if (trackNameStart >= 0
-        && trackNameEnd > trackNameStart) {
-      trackName = trackFileName.substring(trackNameStart, trackNameEnd);
+    if (nameStart >= 0
+        && nameEnd > nameStart) {
+      trackNameStart = nameStart;
+      trackNameEnd = nameEnd;
     }
     
-    sortName = TunesCollection.makeSortName(trackName);
+    sortNameStart = trackNameStart + findSortNameStart();
     
-    if (periodIndex > 0 && periodIndex < trackFileName.length()) {
-      extension = trackFileName.substring(periodIndex + 1);
+    if (periodIndex > 0 && periodIndex < length) {
+      extensionStart = periodIndex + 1;
+    } else {
+      extensionStart = length;
     }
     
     if (slashIndex > 0) {
       int albumSlashIndex = trackFileName.lastIndexOf(slash, slashIndex - 1);
       if (albumSlashIndex > 0) {
-        albumName = trackFileName.substring(albumSlashIndex + 1, slashIndex);
+        albumNameStart = albumSlashIndex + 1;
+        albumNameEnd = slashIndex;
         int artistSlashIndex = trackFileName.lastIndexOf(slash, albumSlashIndex - 1);
         if (artistSlashIndex >= 0) {
-          artistName = trackFileName.substring(artistSlashIndex + 1, albumSlashIndex);
+          artistNameStart = artistSlashIndex + 1;
+          artistNameEnd = albumSlashIndex;
         }
       }
     }
   }
   
-  private void setTrackNumber(String trackNumber) {
-    try {
-      this.trackNumber = Integer.parseInt(trackNumber);
-    } catch (NumberFormatException e) {
-      System.out.println("Trouble converting track number to an integer");
+  /**
+   Convert the digits found in the file name to a track number. Only the 
+   two digits preceding a space are ever passed. 
+  */
+  private void setTrackNumber(String trackFileName, int start, int end) {
+    int number = 0;
+    for (int i = start; i < end; i++) {
+      number = (number * 10) + Character.digit(trackFileName.charAt(i), 10);
     }
+    this.trackNumber = number;
+  }
+  
+  /**
+   Find the start of the sort name within the track name, skipping past 
+   any leading article, just as TunesCollection.findSortNameStart does. 
+  
+   @return The offset of the sort name from the start of the track name. 
+  */
+  private int findSortNameStart() {
+    int spaceIndex = trackNameStart;
+    while (spaceIndex < trackNameEnd
+        && path.charAt(spaceIndex) != ' ') {
+      spaceIndex++;
+    }
+    int articleLength = spaceIndex - trackNameStart;
+    if (spaceIndex < trackNameEnd
+        && (isArticle("The", articleLength)
+          || isArticle("A", articleLength)
+          || isArticle("An", articleLength))) {
+      return articleLength + 1;
+    } else {
+      return 0;
+    }
+  }
+  
+  private boolean isArticle(String article, int articleLength) {
+    return (articleLength == article.length()
+        && path.regionMatches(true, trackNameStart, article, 0, articleLength));
   }
   
   public boolean hasFileName() {
-    return (fileName != null && fileName.length() > 0);
+    return (fileNameEnd > fileNameStart);
   }
   
   /**
@@ -171,6 +220,9 @@ public class TrackFileName {
    @return The name of the file. 
   */
   public String getFileName() {
+    if (fileName == null) {
+      fileName = path.substring(fileNameStart, fileNameEnd);
+    }
     return fileName;
   }
   
@@ -183,42 +235,57 @@ public class TrackFileName {
   }
   
   public boolean hasTrackName() {
-    return (trackName != null && trackName.length() > 0);
+    return (trackNameEnd > trackNameStart);
   }
   
   public String getTrackName() {
+    if (trackName == null) {
+      trackName = path.substring(trackNameStart, trackNameEnd);
+    }
     return trackName;
   }
   
   public boolean hasSortName() {
-    return (sortName != null && sortName.length() > 0);
+    return (trackNameEnd > sortNameStart);
   }
   
   public String getSortName() {
+    if (sortName == null) {
+      sortName = path.substring(sortNameStart, trackNameEnd);
+    }
     return sortName;
   }
   
   public boolean hasExtension() {
-    return (extension != null && extension.length() > 0);
+    return (path.length() > extensionStart);
   }
   
   public String getExtension() {
+    if (extension == null) {
+      extension = path.substring(extensionStart);
+    }
     return extension;
   }
   
   public boolean hasAlbumName() {
-    return (albumName != null && albumName.length() > 0);
+    return (albumNameEnd > albumNameStart);
   }
   
   public String getAlbumName() {
+    if (albumName == null) {
+      albumName = path.substring(albumNameStart, albumNameEnd);
+    }
     return albumName;
   }
   
   public boolean hasArtistName() {
-    return (artistName != null && artistName.length() > 0);
+    return (artistNameEnd > artistNameStart);
   }
   
   public String getArtistName() {
+    if (artistName == null) {
+      artistName = path.substring(artistNameStart, artistNameEnd);
+    }
     return artistName;
   }
 
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import javax.swing.tree.*;
+
+/**
+ Adds the anomalies passed to it to the collection's anomaly tree, each 
+ under a node for the object that has it, if the type of anomaly is one 
+ that has been selected. 
+
+ @author Herb Bowie
+ */
+public class TreeAnomalySink
+    implements AnomalySink {
+  
+  private     TunesCollection     collection;
+  private     TunesAnalysis       analysis;
+  
+  /**
+   Prepare to add anomalies to the tree. 
+  
+   @param collection The collection whose anomaly tree is to be built. 
+   @param analysis   The options for this analysis. 
+  */
+  public TreeAnomalySink(
+      TunesCollection collection, 
+      TunesAnalysis analysis) {
+    
+    this.collection = collection;
+    this.analysis = analysis;
+  }
+  
+  /**
+   Add an anomaly to the tree, along with the object that has it, if the 
+   type of anomaly is one that has been selected. 
+  
+   @param anomaly The anomaly found. 
+  */
+  @Override
+  public void add(TunesAnomaly anomaly) {
+    if (anomaly.getAnomalyType().isSelected()) {
+      // If the object is not already in the tree, then add it
+      TunesObject object = anomaly.getObject();
+      if (object.getAnomalyNode() == null) {
+        object.addToAnomalyTree(analysis);
+      }
+      TunesCollection.addToTree(object.getAnomalyNode(), anomaly);
+    }
+  }
+  
+  /**
+   Let the tree model know that the tree has been rebuilt. 
+  */
+  @Override
+  public void close() {
+    collection.anomalyTreeChanged();
+  }
+  
+}
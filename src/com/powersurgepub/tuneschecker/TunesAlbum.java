@@ -16,9 +16,6 @@
 package com.powersurgepub.tuneschecker;
 
   import com.powersurgepub.psdatalib.psdata.*;
-  import com.powersurgepub.psdatalib.tabdelim.*;
-  import com.powersurgepub.psdatalib.txbio.*;
-  import com.powersurgepub.psdatalib.txbmodel.*;
   import java.io.*;
   import java.util.*;
   import javax.swing.tree.*;
@@ -53,10 +50,21 @@ public class TunesAlbum
   private     int                 discCount = 0;
   private     boolean             compilation = false;
   
-  private ArrayList<TunesTrack>   tracks = new ArrayList<TunesTrack>();
+  /** Tracks keyed by common name, in the order in which they were stored. */
+  private LinkedHashMap<String, TunesTrack> tracks 
+      = new LinkedHashMap<String, TunesTrack>();
+  
+  /** Tracks sorted by common name, built on demand and discarded on change. */
+  private ArrayList<TunesTrack>   tracksByName = null;
   private ArrayList<TunesTrack>   tracksByNumber = new ArrayList<TunesTrack>();
-  private TunesTrack              track = new TunesTrack();
-  private int                     index = -1;
+  private TunesTrack              track = null;
+  
+  private static final TunesMetrics.Counter storeHits 
+      = TunesMetrics.getShared().getCounter
+        ("store.track.hits", "Tracks stored the same as the last one");
+  private static final TunesMetrics.Counter storeMisses 
+      = TunesMetrics.getShared().getCounter
+        ("store.track.misses", "Tracks stored that had to be looked up");
   
   private DefaultMutableTreeNode  anomalyNode = null;
   
@@ -238,8 +246,10 @@ public class TunesAlbum
   }
   
   /**
-   Store the passed trackToDisplay info, either in a new list entry, 
+   Store the passed trackToDisplay info, either in a new entry, 
    or by merging with an existing entry for the same trackToDisplay. 
+   The name sequence is not maintained here, but rebuilt the next time 
+   it is requested. 
   
    @param trackToStore The trackToDisplay to be stored. 
   
@@ -247,35 +257,24 @@ public class TunesAlbum
   */
   public TunesTrack storeTrack(TunesTrack trackToStore) {
     
-    // Store in trackToDisplay name sequence
-    if (tracks.isEmpty()) {
-      tracks.add(trackToStore);
-      index = 0;
-      track = trackToStore;
-    }
-    else
-    if (index >= 0 && index < tracks.size() && track != null
+    // Store by common name
+    if (track != null
         && track.equals(trackToStore)) {
+      storeHits.increment();
       track.merge(trackToStore);
-    }
-    else {
-      index = 0;
-      int comparison = 1;
-      while (index < tracks.size() && comparison > 0) {
-        comparison = trackToStore.compareTo(tracks.get(index));
-        if (comparison > 0) {
-          index++;
-        } // end if still looking for the right insertion point
-      } // end while looking for the right insertion point
-      if (index == tracks.size() || comparison < 0) {
-        tracks.add(index, trackToStore);
-        track = tracks.get(index);
-      } 
-      else {
-        tracks.get(index).merge(trackToStore);
-        track = tracks.get(index);
+    } else {
+      storeMisses.increment();
+      String key = trackToStore.getCommonName().getName();
+      TunesTrack existing = tracks.get(key);
+      if (existing == null) {
+        tracks.put(key, trackToStore);
+        tracksByName = null;
+        track = trackToStore;
+      } else {
+        existing.merge(trackToStore);
+        track = existing;
       }
-    } // end if we had to go looking for an insertion point
+    } // end if we had to go looking for a matching entry
     
     // Store in trackToDisplay number sequence
     while (tracksByNumber.size() < track.getTrackNumber()) {
@@ -292,6 +291,48 @@ public class TunesAlbum
     return track;
   }
   
+  /**
+   Return the track stored under a common name. 
+  
+   @param key The common name of the track. 
+  
+   @return The track, or null if no such track has been stored. 
+  */
+  public TunesTrack getTrack(String key) {
+    return tracks.get(key);
+  }
+  
+  /**
+   Remove a track from this album, and from the track number sequence. 
+   Any slot in the sequence held by the removed track is given to the last 
+   remaining track with the same number, if there is one, and empty slots 
+   left at the end of the sequence are dropped. 
+  
+   @param trackToRemove The track to be removed. 
+  */
+  public void removeTrack(TunesTrack trackToRemove) {
+    tracks.remove(trackToRemove.getCommonName().getName());
+    for (int i = 0; i < tracksByNumber.size(); i++) {
+      if (tracksByNumber.get(i) == trackToRemove) {
+        TunesTrack sameNumber = null;
+        for (TunesTrack nextTrack: tracks.values()) {
+          if (nextTrack.getTrackNumber() == i) {
+            sameNumber = nextTrack;
+          }
+        }
+        tracksByNumber.set(i, sameNumber);
+      }
+    }
+    while (tracksByNumber.size() > 0
+        && tracksByNumber.get(tracksByNumber.size() - 1) == null) {
+      tracksByNumber.remove(tracksByNumber.size() - 1);
+    }
+    tracksByName = null;
+    if (track == trackToRemove) {
+      track = null;
+    }
+  }
+  
   /**
    Return the actual number of track objects stored in this album object. 
   
@@ -301,6 +342,102 @@ public class TunesAlbum
     return tracks.size();
   }
   
+  /**
+   Return this album's tracks, sorted by common name. 
+  
+   @return The tracks in common name sequence. 
+  */
+  public List<TunesTrack> getTracksByName() {
+    if (tracksByName == null) {
+      tracksByName = new ArrayList<TunesTrack>(tracks.values());
+      Collections.sort(tracksByName);
+    }
+    return tracksByName;
+  }
+  
+  /**
+   Write this album, and all of its tracks, to a snapshot. The track 
+   number sequence is written as positions within the list of tracks, 
+   so that it can be restored exactly as it was. 
+  
+   @param snapshot The snapshot being written. 
+  */
+  void writeSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    snapshot.writeString(album);
+    snapshot.writeString(sortAlbum);
+    snapshot.writeString(albumFolderName);
+    commonName.writeSnapshot(snapshot);
+    snapshot.writeString(artist);
+    snapshot.writeInt(trackCount);
+    snapshot.writeInt(year);
+    snapshot.writeInt(discNumber);
+    snapshot.writeInt(discCount);
+    snapshot.writeBoolean(compilation);
+    sources.writeSnapshot(snapshot);
+    
+    HashMap<TunesTrack, Integer> positions 
+        = new HashMap<TunesTrack, Integer>();
+    snapshot.writeInt(tracks.size());
+    for (TunesTrack nextTrack: tracks.values()) {
+      positions.put(nextTrack, positions.size());
+      nextTrack.writeSnapshot(snapshot);
+    }
+    snapshot.writeInt(tracksByNumber.size());
+    for (TunesTrack nextTrack: tracksByNumber) {
+      Integer position = null;
+      if (nextTrack != null) {
+        position = positions.get(nextTrack);
+      }
+      if (position == null) {
+        snapshot.writeInt(-1);
+      } else {
+        snapshot.writeInt(position.intValue());
+      }
+    }
+  }
+  
+  /**
+   Read this album, and all of its tracks, from a snapshot. 
+  
+   @param snapshot The snapshot being read. 
+  */
+  void readSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    album = snapshot.readString();
+    sortAlbum = snapshot.readString();
+    albumFolderName = snapshot.readString();
+    commonName.readSnapshot(snapshot);
+    artist = snapshot.readString();
+    trackCount = snapshot.readInt();
+    year = snapshot.readInt();
+    discNumber = snapshot.readInt();
+    discCount = snapshot.readInt();
+    compilation = snapshot.readBoolean();
+    sources.readSnapshot(snapshot);
+    
+    int numberOfTracks = snapshot.readInt();
+    ArrayList<TunesTrack> positions = new ArrayList<TunesTrack>();
+    for (int i = 0; i < numberOfTracks; i++) {
+      TunesTrack nextTrack = new TunesTrack();
+      nextTrack.readSnapshot(snapshot);
+      tracks.put(nextTrack.getCommonName().getName(), nextTrack);
+      nextTrack.setTunesAlbum(this);
+      positions.add(nextTrack);
+    }
+    int numberOfPositions = snapshot.readInt();
+    for (int i = 0; i < numberOfPositions; i++) {
+      int position = snapshot.readInt();
+      if (position >= 0 && position < positions.size()) {
+        tracksByNumber.add(positions.get(position));
+      } else {
+        tracksByNumber.add(null);
+      }
+    }
+    tracksByName = null;
+    track = null;
+  }
+  
   public void display() {
     System.out.print("    " + sortAlbum);
     if (! album.equals(sortAlbum)) {
@@ -321,50 +458,49 @@ public class TunesAlbum
     }
     System.out.println(" ");
     
-    TunesTrack trackToDisplay = null;
-    for (int i = 0; i < tracks.size(); i++) {
-      trackToDisplay = tracks.get(i);
-      if (trackToDisplay == null) {
-        if (i > 0) {
-          System.out.println("      " + String.valueOf(i) + ". ");
-        }
-      } else {
-        trackToDisplay.display();
-      }
+    for (TunesTrack trackToDisplay: getTracksByName()) {
+      trackToDisplay.display();
     }
   }
   
   /**
-   Analyze this object and identify any anomalies. 
+   Analyze this object and identify any anomalies. Nothing outside this 
+   object and those below it is changed, so that many objects may be 
+   analyzed at once. 
+  
+   @param collection The collection containing this object. 
+   @param analysis   The options for this analysis. 
+   @param found      The sink to which any anomalies are to be passed, in 
+                     the sequence in which they are to appear. 
   */
-  public void analyze(TunesCollection collection, TunesAnalysis analysis) {
+  public void analyze(
+      TunesCollection collection, 
+      TunesAnalysis analysis, 
+      AnomalySink found) {
     
     // Analyze this album
-    for (int libIndex = 0; libIndex < collection.getNumberOfLibraries(); libIndex++) {
-      if (sources.isFromBoth(libIndex)) {
-        // Everything is cool
-      }
-      else
+    // Only libraries missing either the library entry or the folder matter
+    int numberOfLibraries = collection.getNumberOfLibraries();
+    for (int libIndex = sources.nextIncomplete(0, numberOfLibraries); 
+        libIndex >= 0; 
+        libIndex = sources.nextIncomplete(libIndex + 1, numberOfLibraries)) {
       if (sources.isFromFolder(libIndex)) {
-        collection.addAnomaly(libIndex, this,  
-            analysis.getAnomalyType(AnomalyTypeTable.ON_DISK_NOT_IN_LIB), 
-            analysis);
+        found.add(new TunesAnomaly(libIndex, this, 
+            analysis.getAnomalyType(AnomalyTypeTable.ON_DISK_NOT_IN_LIB)));
       } 
       else
       if (sources.isFromLibrary(libIndex)) {
-        collection.addAnomaly(libIndex, this,  
-            analysis.getAnomalyType(AnomalyTypeTable.IN_LIB_NOT_ON_DISK), 
-            analysis);
+        found.add(new TunesAnomaly(libIndex, this, 
+            analysis.getAnomalyType(AnomalyTypeTable.IN_LIB_NOT_ON_DISK)));
       } else {
-        collection.addAnomaly(libIndex, this, 
-            analysis.getAnomalyType(AnomalyTypeTable.MISSING_FROM_LIBRARY), 
-            analysis);
+        found.add(new TunesAnomaly(libIndex, this, 
+            analysis.getAnomalyType(AnomalyTypeTable.MISSING_FROM_LIBRARY)));
       }
     } // end for each library
     
     // Now perform analysis for each track
-    for (TunesTrack nextTrack: tracks) {
-      nextTrack.analyze(collection, analysis);
+    for (TunesTrack nextTrack: getTracksByName()) {
+      nextTrack.analyze(collection, analysis, found);
     }
     
     if (tracks.size() > analysis.getMinTracks()
@@ -377,9 +513,9 @@ public class TunesAlbum
           nextTrack = tracksByNumber.get(trackNumber);
         }
         if (nextTrack == null) {
-          collection.addAnomaly(-1, this, 
+          found.add(new TunesAnomaly(-1, this, 
               analysis.getAnomalyType(AnomalyTypeTable.MISSING_TRACK_NUMBER), 
-              trackNumber, analysis);
+              trackNumber));
         }
       }
     }
@@ -389,26 +525,30 @@ public class TunesAlbum
   /**
    Export this object to an OPML file. 
   
-   @param writer The OPML writer. 
+   @param exporter The OPML exporter. 
+  
+   @return The number of tracks exported. 
   */
-  public void exportToOPML(MarkupWriter writer) {
+  public int exportToOPML(OPMLExporter exporter) {
     
-    String yyyy = "    ";
+    int tracksExported = 0;
+    exporter.startOutlineOpen();
+    exporter.writeOutlineAttribute(OPMLExporter.TEXT, album);
+    exporter.writeOutlineAttribute(OPMLExporter.ARTIST, artist);
     if (year > 0) {
-      yyyy = String.valueOf(year);
+      exporter.writeOutlineAttribute(OPMLExporter.YEAR, year, 4);
+    } else {
+      exporter.writeOutlineAttribute(OPMLExporter.YEAR, "    ");
     }
-    
-    writer.startOutlineOpen();
-    writer.writeOutlineAttribute(TextType.TEXT, album);
-    writer.writeOutlineAttribute("Artist", artist);
-    writer.writeOutlineAttribute("Year", yyyy);
-    writer.startOutlineClose();
+    exporter.startOutlineClose();
     for (TunesTrack nextTrack: tracksByNumber) {
       if (nextTrack != null) {
-        nextTrack.exportToOPML(writer);
+        nextTrack.exportToOPML(exporter);
+        tracksExported++;
       }
     }
-    writer.endOutline();
+    exporter.endOutline();
+    return tracksExported;
   }
   
   
@@ -423,24 +563,47 @@ public class TunesAlbum
     TunesTrack.addRecDefColumns(recDef);
   }
   
-  public void exportToTabDelim(
-      TabDelimFile tdf, 
-      RecordDefinition recDef, 
-      DataRecord rec) 
-        throws IOException {
+  /**
+   Export this object to a tab-delimited file. 
+  
+   @return The number of tracks exported. 
+  */
+  public int exportToTabDelim(TabDelimExporter exporter) 
+      throws IOException {
     
-    rec.storeField(recDef, ALBUM_ARTIST, artist);
-    rec.storeField(recDef, ALBUM, album);
-    rec.storeField(recDef, SORT_ALBUM, sortAlbum);
-    rec.storeField(recDef, ALBUM_FOLDER_NAME, albumFolderName);
-    rec.storeField(recDef, ALBUM_COMMON_NAME, commonName.toString());
+    int tracksExported = 0;
+    exporter.setField(exporter.albumArtistColumn, artist);
+    exporter.setField(exporter.albumColumn, album);
+    exporter.setField(exporter.sortAlbumColumn, sortAlbum);
+    exporter.setField(exporter.albumFolderNameColumn, albumFolderName);
+    exporter.setField(exporter.albumCommonNameColumn, commonName.toString());
     
     for (TunesTrack nextTrack: tracksByNumber) {
       if (nextTrack != null) {
-        nextTrack.exportToTabDelim(tdf, recDef, rec);
+        nextTrack.exportToTabDelim(exporter);
+        tracksExported++;
       }
     }
+    return tracksExported;
+  }
+  
+  /**
+   Export this object to a columnar file. 
+  
+   @return The number of tracks exported. 
+  */
+  public int exportToColumnar(ColumnarExporter exporter) 
+      throws IOException {
     
+    int tracksExported = 0;
+    exporter.setField(ColumnarExporter.ALBUM, album);
+    for (TunesTrack nextTrack: tracksByNumber) {
+      if (nextTrack != null) {
+        nextTrack.exportToColumnar(exporter);
+        tracksExported++;
+      }
+    }
+    return tracksExported;
   }
   
   /**
@@ -483,5 +646,15 @@ public class TunesAlbum
   public DefaultMutableTreeNode getAnomalyNode() {
     return anomalyNode;
   }
+  
+  /**
+   Forget the results of any earlier analysis of this album and its tracks. 
+  */
+  public void clearAnomalies() {
+    anomalyNode = null;
+    for (TunesTrack nextTrack: tracks.values()) {
+      nextTrack.clearAnomalies();
+    }
+  }
 
 }
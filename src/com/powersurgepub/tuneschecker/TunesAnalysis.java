@@ -26,6 +26,12 @@ public class TunesAnalysis {
   private int     minTracks = 2;
   private AnomalyTypeTable anomalyTypes = AnomalyTypeTable.getShared();
   
+  /** Number of threads to use when looking for anomalies. */
+  private int     parallelism = Runtime.getRuntime().availableProcessors();
+  
+  /** Progress made, and whether the analysis has been cancelled. */
+  private TunesProgress progress = new TunesProgress();
+  
   public TunesAnalysis() {
     
   }
@@ -46,6 +52,38 @@ public class TunesAnalysis {
     return minTracks;
   }
   
+  /**
+   Set the number of threads to be used when looking for anomalies. 
+  
+   @param parallelism The number of threads to use; one means the artists 
+                      will be analyzed one at a time on the calling thread. 
+  */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      this.parallelism = 1;
+    } else {
+      this.parallelism = parallelism;
+    }
+  }
+  
+  public int getParallelism() {
+    return parallelism;
+  }
+  
+  /**
+   Report progress to the passed object, and stop the analysis early if 
+   it is cancelled. 
+  
+   @param progress The object to which progress is to be reported. 
+  */
+  public void setProgress(TunesProgress progress) {
+    this.progress = progress;
+  }
+  
+  public TunesProgress getProgress() {
+    return progress;
+  }
+  
   public AnomalyType getAnomalyType(int index) {
     return anomalyTypes.get(index);
   }
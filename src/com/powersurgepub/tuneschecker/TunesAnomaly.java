@@ -18,16 +18,19 @@ package com.powersurgepub.tuneschecker;
   import javax.swing.tree.*;
 
 /**
+ One anomaly found by an analysis. Anomalies cannot be changed once 
+ created, so that they may be found on many threads at once, and only 
+ later added to the anomaly tree. 
  
  @author Herb Bowie
  */
 public class TunesAnomaly
     implements TunesObject {
   
-  private int         libIndex = -1;
-  private TunesObject object = null;
-  private AnomalyType anomalyType = null;
-  private int         trackNumber = -1;
+  private final int         libIndex;
+  private final TunesObject object;
+  private final AnomalyType anomalyType;
+  private final int         trackNumber;
   
   private DefaultMutableTreeNode  anomalyNode = null;
   
@@ -36,9 +39,7 @@ public class TunesAnomaly
       TunesObject object, 
       AnomalyType anomalyType) {
     
-    this.libIndex = libIndex;
-    this.object = object;
-    this.anomalyType = anomalyType;
+    this(libIndex, object, anomalyType, -1);
   }
   
   public TunesAnomaly(
@@ -53,6 +54,27 @@ public class TunesAnomaly
     this.trackNumber = trackNumber;
   }
   
+  public int getLibIndex() {
+    return libIndex;
+  }
+  
+  /**
+   Return the object with the anomaly. 
+  
+   @return The artist, album, track or file with the anomaly. 
+  */
+  public TunesObject getObject() {
+    return object;
+  }
+  
+  public AnomalyType getAnomalyType() {
+    return anomalyType;
+  }
+  
+  public int getTrackNumber() {
+    return trackNumber;
+  }
+  
   /**
    Return a string to be used to identify the node in the anomaly tree. 
   
@@ -16,8 +16,6 @@
 package com.powersurgepub.tuneschecker;
 
   import com.powersurgepub.psdatalib.psdata.*;
-  import com.powersurgepub.psdatalib.tabdelim.*;
-  import com.powersurgepub.psdatalib.txbio.*;
   import java.io.*;
   import java.util.*;
   import javax.swing.tree.*;
@@ -45,13 +43,28 @@ public class TunesArtist
   private     String              artistFolderName = "";
   private     TunesCommonName     commonName = new TunesCommonName();
   
-  private ArrayList<TunesAlbum>   albums = new ArrayList<TunesAlbum>();
-  private ArrayList<TunesAlbum>   albumsByYear = new ArrayList<TunesAlbum>();
-  private TunesAlbum              album = new TunesAlbum();
-  private int                     index = -1;
+  /** Albums keyed by common name, in the order in which they were stored. */
+  private LinkedHashMap<String, TunesAlbum> albums 
+      = new LinkedHashMap<String, TunesAlbum>();
+  
+  /** Sorted views of the albums, built on demand and discarded on change. */
+  private ArrayList<TunesAlbum>   albumsByName = null;
+  private ArrayList<TunesAlbum>   albumsByYear = null;
+  
+  private TunesAlbum              album = null;
+  
+  private static final TunesMetrics.Counter storeHits 
+      = TunesMetrics.getShared().getCounter
+        ("store.album.hits", "Albums stored the same as the last one");
+  private static final TunesMetrics.Counter storeMisses 
+      = TunesMetrics.getShared().getCounter
+        ("store.album.misses", "Albums stored that had to be looked up");
   
   private DefaultMutableTreeNode  anomalyNode = null;
   
+  /** The number of anomalies found for this artist, and all its albums. */
+  private int                     anomalyCount = 0;
+  
   public TunesArtist() {
     
   }
@@ -165,8 +178,9 @@ public class TunesArtist
   }
   
   /**
-   Store the passed album info, either in a new list entry, 
-   or by merging with an existing entry for the same album. 
+   Store the passed album info, either in a new entry, or by merging with 
+   an existing entry for the same album. Sorted views of the albums are 
+   not maintained here, but rebuilt the next time they are requested. 
   
    @param albumToStore The album to be stored. 
   
@@ -174,61 +188,146 @@ public class TunesArtist
   */
   public TunesAlbum storeAlbum(TunesAlbum albumToStore) {
     
-    if (albums.size() == 0) {
-      albums.add(albumToStore);
-      albumsByYear.add(albumToStore);
-      index = 0;
-      album = albumToStore;
-    }
-    else
-    if (index >= 0 && index < albums.size() && album != null
+    if (album != null
         && album.equals(albumToStore)) {
+      storeHits.increment();
       album.merge(albumToStore);
-      sortAlbumsByYear();
-    }
-    else {
-      index = 0;
-      int comparison = 1;
-      while (index < albums.size() && comparison > 0) {
-        comparison = albumToStore.compareTo(albums.get(index));
-        if (comparison > 0) {
-          index++;
-        } // end if still looking for the right insertion point
-      } // end while looking for the right insertion point
-      if (index == albums.size() || comparison < 0) {
-        albums.add(index, albumToStore);
-        albumsByYear.add(albumToStore);
-        album = albums.get(index);
-      } 
-      else {
-        albums.get(index).merge(albumToStore);
-        album = albums.get(index);
+    } else {
+      storeMisses.increment();
+      String key = albumToStore.getCommonName().getName();
+      TunesAlbum existing = albums.get(key);
+      if (existing == null) {
+        albums.put(key, albumToStore);
+        album = albumToStore;
+      } else {
+        existing.merge(albumToStore);
+        album = existing;
       }
-      sortAlbumsByYear();
-    } // end if we had to go looking for an insertion point
+    } // end if we had to go looking for a matching entry
+    
+    // A new album, or a merged year, invalidates the sorted views
+    albumsByName = null;
+    albumsByYear = null;
     
     album.setTunesArtist(this);
     
     return album;
   }
   
-  private void sortAlbumsByYear() {
-    boolean sorted = false;
-    TunesAlbum prior;
-    TunesAlbum next;
-    while (! sorted) {
-      sorted = true;
-      for (int i = 1; i < albumsByYear.size(); i++) {
-        prior = albumsByYear.get(i - 1);
-        next  = albumsByYear.get(i);
-        if (next.getYear() < prior.getYear()) {
-          sorted = false;
-          albumsByYear.set(i, prior);
-          albumsByYear.set(i - 1, next);
-        } // end if we need to swap entries
-      } // end one pass through the list
-    } // end while not yet sorted
-  } // end method sortAlbumsByYear
+  /**
+   Return the album stored under a common name. 
+  
+   @param key The common name of the album. 
+  
+   @return The album, or null if no such album has been stored. 
+  */
+  public TunesAlbum getAlbum(String key) {
+    return albums.get(key);
+  }
+  
+  /**
+   Remove an album from this artist. 
+  
+   @param albumToRemove The album to be removed. 
+  */
+  public void removeAlbum(TunesAlbum albumToRemove) {
+    albums.remove(albumToRemove.getCommonName().getName());
+    if (album == albumToRemove) {
+      album = null;
+    }
+    albumsByName = null;
+    albumsByYear = null;
+  }
+  
+  /**
+   Return the number of albums stored for this artist. 
+  
+   @return The number of albums stored. 
+  */
+  public int getNumberOfAlbums() {
+    return albums.size();
+  }
+  
+  /**
+   Return this artist's albums, sorted by common name. 
+  
+   @return The albums in common name sequence. 
+  */
+  public List<TunesAlbum> getAlbumsByName() {
+    if (albumsByName == null) {
+      albumsByName = new ArrayList<TunesAlbum>(albums.values());
+      Collections.sort(albumsByName);
+    }
+    return albumsByName;
+  }
+  
+  /**
+   Return this artist's albums, sorted by year. Albums from the same year
+   remain in the order in which they were first stored. 
+  
+   @return The albums in year sequence. 
+  */
+  public List<TunesAlbum> getAlbumsByYear() {
+    if (albumsByYear == null) {
+      albumsByYear = new ArrayList<TunesAlbum>(albums.values());
+      Collections.sort(albumsByYear, new Comparator<TunesAlbum>() {
+        public int compare(TunesAlbum album1, TunesAlbum album2) {
+          if (album1.getYear() < album2.getYear()) {
+            return -1;
+          }
+          else
+          if (album1.getYear() > album2.getYear()) {
+            return 1;
+          } else {
+            return 0;
+          }
+        }
+      });
+    }
+    return albumsByYear;
+  } // end method getAlbumsByYear
+  
+  /**
+   Write this artist, and all of its albums, to a snapshot. 
+  
+   @param snapshot The snapshot being written. 
+  */
+  void writeSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    snapshot.writeString(artist);
+    snapshot.writeString(sortArtist);
+    snapshot.writeString(artistFolderName);
+    commonName.writeSnapshot(snapshot);
+    sources.writeSnapshot(snapshot);
+    snapshot.writeInt(albums.size());
+    for (TunesAlbum nextAlbum: albums.values()) {
+      nextAlbum.writeSnapshot(snapshot);
+    }
+  }
+  
+  /**
+   Read this artist, and all of its albums, from a snapshot. 
+  
+   @param snapshot The snapshot being read. 
+  */
+  void readSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    artist = snapshot.readString();
+    sortArtist = snapshot.readString();
+    artistFolderName = snapshot.readString();
+    commonName.readSnapshot(snapshot);
+    sources.readSnapshot(snapshot);
+    int numberOfAlbums = snapshot.readInt();
+    for (int i = 0; i < numberOfAlbums; i++) {
+      TunesAlbum nextAlbum = new TunesAlbum();
+      nextAlbum.readSnapshot(snapshot);
+      albums.put(nextAlbum.getCommonName().getName(), nextAlbum);
+      nextAlbum.setTunesArtist(this);
+    }
+    albumsByName = null;
+    albumsByYear = null;
+    album = null;
+  }
   
   public void display() {
     
@@ -238,9 +337,9 @@ public class TunesArtist
     }
     System.out.println("");
     
-    for (index = 0; index < albums.size(); index++) {
-      albums.get(index).display();
-    }    
+    for (TunesAlbum nextAlbum: getAlbumsByName()) {
+      nextAlbum.display();
+    }
   }
   
   public void displayString(String label, String str) {
@@ -253,51 +352,62 @@ public class TunesArtist
   }
   
   /**
-   Analyze this object and identify any anomalies. 
+   Analyze this object and identify any anomalies. Nothing outside this 
+   object and those below it is changed, so that many objects may be 
+   analyzed at once. 
+  
+   @param collection The collection containing this object. 
+   @param analysis   The options for this analysis. 
+   @param found      The sink to which any anomalies are to be passed, in 
+                     the sequence in which they are to appear. 
   */
-  public void analyze(TunesCollection collection, TunesAnalysis analysis) {
+  public void analyze(
+      TunesCollection collection, 
+      TunesAnalysis analysis, 
+      AnomalySink found) {
     
     // Analyze this artist
-    for (int libIndex = 0; libIndex < collection.getNumberOfLibraries(); libIndex++) {
-      if (sources.isFromBoth(libIndex)) {
-        // Everything is cool
-      }
-      else
+    // Only libraries missing either the library entry or the folder matter
+    int numberOfLibraries = collection.getNumberOfLibraries();
+    for (int libIndex = sources.nextIncomplete(0, numberOfLibraries); 
+        libIndex >= 0; 
+        libIndex = sources.nextIncomplete(libIndex + 1, numberOfLibraries)) {
       if (sources.isFromFolder(libIndex)) {
-        collection.addAnomaly(libIndex, this,  
-            analysis.getAnomalyType(AnomalyTypeTable.ON_DISK_NOT_IN_LIB), 
-            analysis);
+        found.add(new TunesAnomaly(libIndex, this, 
+            analysis.getAnomalyType(AnomalyTypeTable.ON_DISK_NOT_IN_LIB)));
       } 
       else
       if (sources.isFromLibrary(libIndex)) {
-        collection.addAnomaly(libIndex, this,  
-            analysis.getAnomalyType(AnomalyTypeTable.IN_LIB_NOT_ON_DISK), 
-            analysis);
+        found.add(new TunesAnomaly(libIndex, this, 
+            analysis.getAnomalyType(AnomalyTypeTable.IN_LIB_NOT_ON_DISK)));
       }
       else {
-        collection.addAnomaly(libIndex, this, 
-            analysis.getAnomalyType(AnomalyTypeTable.MISSING_FROM_LIBRARY), 
-            analysis);
+        found.add(new TunesAnomaly(libIndex, this, 
+            analysis.getAnomalyType(AnomalyTypeTable.MISSING_FROM_LIBRARY)));
       }
     } // end for each library
     
     // Now perform analysis for each album
-    for (TunesAlbum album: albums) {
-      album.analyze(collection, analysis);
+    for (TunesAlbum nextAlbum: getAlbumsByName()) {
+      nextAlbum.analyze(collection, analysis, found);
     }
   }
   
   /**
    Export this object to an OPML file. 
   
-   @param writer The OPML writer. 
+   @param exporter The OPML exporter. 
+  
+   @return The number of tracks exported. 
   */
-  public void exportToOPML(MarkupWriter writer) {
-    writer.startOutline(artist);
-    for (TunesAlbum album: albumsByYear) {
-      album.exportToOPML(writer);
+  public int exportToOPML(OPMLExporter exporter) {
+    int tracksExported = 0;
+    exporter.startOutline(artist);
+    for (TunesAlbum nextAlbum: getAlbumsByYear()) {
+      tracksExported = tracksExported + nextAlbum.exportToOPML(exporter);
     }
-    writer.endOutline();
+    exporter.endOutline();
+    return tracksExported;
   }
   
   public static void addRecDefColumns(RecordDefinition recDef) {
@@ -309,23 +419,42 @@ public class TunesArtist
     TunesAlbum.addRecDefColumns(recDef);
   }
   
-  public void exportToTabDelim(
-      TabDelimFile tdf, 
-      RecordDefinition recDef, 
-      DataRecord rec) 
-        throws IOException {
+  /**
+   Export this object to a tab-delimited file. 
+  
+   @return The number of tracks exported. 
+  */
+  public int exportToTabDelim(TabDelimExporter exporter) 
+      throws IOException {
     
-    rec.storeField(recDef, ARTIST, artist);
-    rec.storeField(recDef, SORT_ARTIST, sortArtist);
-    rec.storeField(recDef, ARTIST_FOLDER_NAME, artistFolderName);
-    rec.storeField(recDef, ARTIST_COMMON_NAME, commonName.toString());
+    int tracksExported = 0;
+    exporter.setField(exporter.artistColumn, artist);
+    exporter.setField(exporter.sortArtistColumn, sortArtist);
+    exporter.setField(exporter.artistFolderNameColumn, artistFolderName);
+    exporter.setField(exporter.artistCommonNameColumn, commonName.toString());
     
-    for (TunesAlbum album: albumsByYear) {
-      album.exportToTabDelim(tdf, recDef, rec);
+    for (TunesAlbum nextAlbum: getAlbumsByYear()) {
+      tracksExported = tracksExported + nextAlbum.exportToTabDelim(exporter);
     }
-    
+    return tracksExported;
   }
 
+  /**
+   Export this object to a columnar file. 
+  
+   @return The number of tracks exported. 
+  */
+  public int exportToColumnar(ColumnarExporter exporter) 
+      throws IOException {
+    
+    int tracksExported = 0;
+    exporter.setField(ColumnarExporter.ARTIST, artist);
+    for (TunesAlbum nextAlbum: getAlbumsByYear()) {
+      tracksExported = tracksExported + nextAlbum.exportToColumnar(exporter);
+    }
+    return tracksExported;
+  }
+  
   /**
    Return a string to be used to identify the node in the anomaly tree. 
   
@@ -361,4 +490,24 @@ public class TunesArtist
   public DefaultMutableTreeNode getAnomalyNode() {
     return anomalyNode;
   }
+  
+  public void setAnomalyCount(int anomalyCount) {
+    this.anomalyCount = anomalyCount;
+  }
+  
+  public int getAnomalyCount() {
+    return anomalyCount;
+  }
+  
+  /**
+   Forget the results of any earlier analysis of this artist, and of all 
+   its albums and tracks, so that it may be analyzed again. 
+  */
+  public void clearAnomalies() {
+    anomalyNode = null;
+    anomalyCount = 0;
+    for (TunesAlbum nextAlbum: albums.values()) {
+      nextAlbum.clearAnomalies();
+    }
+  }
 }
@@ -16,9 +16,6 @@
 
 package com.powersurgepub.tuneschecker;
 
-  import com.powersurgepub.psdatalib.psdata.*;
-  import com.powersurgepub.psdatalib.tabdelim.*;
-  import com.powersurgepub.psdatalib.txbio.*;
   import com.powersurgepub.psdatalib.ui.*;
   import com.powersurgepub.psfiles.*;
   import com.powersurgepub.psutils.*;
@@ -27,6 +24,8 @@ package com.powersurgepub.tuneschecker;
   import java.awt.event.*;
   import java.io.*;
   import java.net.*;
+  import java.util.*;
+  import java.util.concurrent.*;
   import javax.swing.*;
   import javax.swing.table.*;
 
@@ -42,6 +41,7 @@ public class TunesChecker
     implements
       AppToBackup,
       FileSpecOpener,
+      TunesWatchListener,
       XHandler {
   
   public static final String PREFS_LEFT    = "left";
@@ -67,6 +67,9 @@ public class TunesChecker
   public static final        int    ONE_MINUTE    = ONE_SECOND * 60;
   public static final        int    ONE_HOUR      = ONE_MINUTE * 60;
   
+  /** How often the status bar shows the progress of a load or analysis. */
+  public static final        int    PROGRESS_INTERVAL = ONE_SECOND / 4;
+  
   public static final        String MUSIC         = "Music";
 
   private             Appster appster;
@@ -106,6 +109,28 @@ public class TunesChecker
   private             TunesParser         tunesParser;
   
   private             int                 currTrackCount = 0;
+  
+  /** The options used for the last analysis, or null if none yet. */
+  private             TunesAnalysis       lastAnalysis = null;
+  
+  private             ArrayList<TunesWatcher> watchers 
+      = new ArrayList<TunesWatcher>();
+  
+  /** 
+   Artist folders reported changed while a task was running, by library 
+   index, to be rescanned once it ends. A null set means the entire music 
+   folder is to be checked. 
+  */
+  private             HashMap<Integer, Set<String>> pendingFolderChanges
+      = new HashMap<Integer, Set<String>>();
+  
+  /** Was a library file changed while a task was running? */
+  private             boolean             pendingReload = false;
+  
+  /** The progress of the load or analysis now running, or null if none. */
+  private             TunesProgress       progress = null;
+  
+  private             javax.swing.Timer   progressTimer;
 
   /**
    Creates new form TunesChecker
@@ -120,7 +145,15 @@ public class TunesChecker
     programVersion = ProgramVersion.getShared ();
     
     initComponents();
-    // getContentPane().add(statusBar, java.awt.BorderLayout.SOUTH);
+    getContentPane().add(statusBar, java.awt.BorderLayout.PAGE_END);
+    cancelMenuItem.setEnabled(false);
+    progressTimer = new javax.swing.Timer(PROGRESS_INTERVAL, 
+        new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent evt) {
+        showProgress();
+      }
+    });
     
     clear();
     
@@ -213,9 +246,13 @@ public class TunesChecker
       fileChooser.setCurrentDirectory(musicFolder);
     }
     
+    stopWatching();
+    pendingFolderChanges.clear();
+    pendingReload = false;
     tunes = new TunesCollection();
     tunesParser = new TunesParser();
     libIndex = 0;
+    lastAnalysis = null;
     
     libsTable.setModel(tunes.getLibraries());
     TableColumn column;
@@ -264,11 +301,23 @@ public class TunesChecker
     }
   }  
   
+  /**
+   User is asking for another library to be opened, following those 
+   already opened, to compare any number of library copies. 
+  */
+  private void openNextLibrary() {
+    libIndex = tunes.getNumberOfLibraries();
+    openFile();
+  }
+  
   /**
    Ask the user to select a file or a folder.
   */
   private void openFile() {
 
+    if (isBusy()) {
+      return;
+    }
     fileToOpen = null;
     fileChooser.setDialogTitle ("Select iTunes Library " 
         + String.valueOf(libIndex + 1));
@@ -305,6 +354,9 @@ public class TunesChecker
    */
   @Override
   public void handleOpenFile (File inFile) {
+    if (isBusy()) {
+      return;
+    }
     if (inFile.isFile()) {
       openLibraryFile(inFile);
     } else {
@@ -335,47 +387,212 @@ public class TunesChecker
    @param libraryFile The file to open. 
   */
   private void openLibraryFile(File libraryFile) {
-    logger.recordEvent(LogEvent.NORMAL, 
-        "Opening library file at " + libraryFile.toString(), false);
-    if (libraryFile.exists()
-        && libraryFile.canRead()) {
-      TunesLibrary library = new TunesLibrary();
-      library.setLibraryFile(libraryFile);
-      tunes.addLibrary(library);
-      if (libIndex < 0) {
-        // problem here
-      } else {
-        int tracksLoaded = tunesParser.parse(
-            tunes, 
-            libIndex, 
-            libraryFile.toString());
-        setTrackCount(tracksLoaded);
-        tunes.getLibraries().fireTableDataChanged();
-        Logger.getShared().recordEvent(LogEvent.NORMAL, 
-            "Loaded " + String.valueOf(tracksLoaded) + " tracks", false);
-        // tunes.display();
-        recentFiles.addRecentFile ("library", libraryFile.toString(), "xml");
-        File folder = library.getMusicFolder();
-        if (folder == null) {
-          Logger.getShared().recordEvent(LogEvent.MINOR, 
-              "Music Folder not Identified", false);
-        }
-        else
-        if (! folder.exists()) {
-          Logger.getShared().recordEvent(LogEvent.MINOR, 
-              "Music Folder cannot be found: " + folder.toString(), false);
+    openLibraryFiles(Collections.singletonList(libraryFile), false);
+  }
+  
+  /**
+   Open one or more XML Library files, one after another, on a background 
+   thread, and then analyze the collection, if requested. 
+  
+   @param libraryFiles The files to open. 
+   @param analyzeAfter True if the collection is to be analyzed once the 
+                       libraries have all been loaded. 
+  */
+  private void openLibraryFiles(
+      final java.util.List<File> libraryFiles, 
+      final boolean analyzeAfter) {
+    
+    final TunesProgress loadProgress = startTask();
+    final ArrayList<Integer> loaded = new ArrayList<Integer>();
+    new SwingWorker<Void, Void>() {
+      
+      @Override
+      protected Void doInBackground() {
+        for (File libraryFile: libraryFiles) {
+          if (loadProgress.isCancelled()) {
+            break;
+          }
+          int loadedIndex = loadLibraryFile(libraryFile);
+          if (loadedIndex >= 0) {
+            loaded.add(loadedIndex);
+          }
         }
-        else
-        if (! folder.canRead()) {
-          Logger.getShared().recordEvent(LogEvent.MINOR, 
-              "Music Folder cannot be read: " + folder.toString(), false);
+        return null;
+      }
+      
+      @Override
+      protected void done() {
+        boolean ok = endTask(this);
+        if (loadProgress.isCancelled()) {
+          logger.recordEvent(LogEvent.NORMAL, 
+              "Loading cancelled; all libraries cleared", false);
+          clear();
         } else {
-          // fileChooser.setCurrentDirectory(folder);
-          openMediaMusicFolder(folder);
+          for (int loadedIndex: loaded) {
+            TunesLibrary library = tunes.getLibrary(loadedIndex);
+            setTrackCount(library.getCount
+                (TunesLibrary.LIB, TunesLibrary.TRACKS));
+            setTrackCount(library.getCount
+                (TunesLibrary.MEDIA, TunesLibrary.TRACKS));
+            recentFiles.addRecentFile 
+                ("library", library.getLibraryFile().toString(), "xml");
+            if (watchMenuItem.isSelected()) {
+              startWatching(library, loadedIndex);
+            }
+          }
+          tunes.getLibraries().refresh();
+          if (ok && analyzeAfter) {
+            analyze();
+          }
         }
       }
-      tunes.getLibraries().fireTableDataChanged();
+    }.execute();
+  }
+  
+  /**
+   Load an XML Library file, along with its music folder. This is done on 
+   a background thread, and so nothing is done here to the user interface, 
+   other than to add the library to the collection on the Event Dispatch 
+   Thread, since the library table shows the collection's libraries. 
+  
+   @param libraryFile The file to open. 
+  
+   @return The index of the library loaded, or -1 if it could not be 
+           loaded, or loading was cancelled. 
+  */
+  private int loadLibraryFile(File libraryFile) {
+    logger.recordEvent(LogEvent.NORMAL, 
+        "Opening library file at " + libraryFile.toString(), false);
+    if ((! libraryFile.exists())
+        || (! libraryFile.canRead())) {
+      return -1;
+    }
+    int loadIndex = addLibraryAndWait(libraryFile);
+    if (loadIndex < 0) {
+      return -1;
     }
+    TunesLibrary library = tunes.getLibrary(loadIndex);
+    TunesProgress loadProgress = tunesParser.getProgress();
+    loadProgress.startPhase("Loading library " 
+        + String.valueOf(loadIndex + 1));
+    boolean fromSnapshot = TunesSnapshot.load(tunes);
+    boolean changed = false;
+    int tracksLoaded;
+    if (fromSnapshot) {
+      tracksLoaded = library.getCount
+          (TunesLibrary.LIB, TunesLibrary.TRACKS);
+      // The snapshot replaced the libraries loaded before this one as well, 
+      // so their Music folders must be checked again too. 
+      for (int i = 0; i < loadIndex && (! loadProgress.isCancelled()); i++) {
+        File earlierFolder = tunes.getLibrary(i).getMusicFolder();
+        if (earlierFolder != null
+            && earlierFolder.isDirectory()
+            && earlierFolder.canRead()
+            && rescanMediaMusicFolder(earlierFolder, i)) {
+          changed = true;
+        }
+      }
+    } else {
+      tracksLoaded = tunesParser.parseStream(
+          tunes, 
+          loadIndex, 
+          libraryFile.toString());
+    }
+    if (loadProgress.isCancelled()) {
+      return -1;
+    }
+    Logger.getShared().recordEvent(LogEvent.NORMAL, 
+        "Loaded " + String.valueOf(tracksLoaded) + " tracks", false);
+    // tunes.display();
+    File folder = library.getMusicFolder();
+    if (folder == null) {
+      Logger.getShared().recordEvent(LogEvent.MINOR, 
+          "Music Folder not Identified", false);
+    }
+    else
+    if (! folder.exists()) {
+      Logger.getShared().recordEvent(LogEvent.MINOR, 
+          "Music Folder cannot be found: " + folder.toString(), false);
+    }
+    else
+    if (! folder.canRead()) {
+      Logger.getShared().recordEvent(LogEvent.MINOR, 
+          "Music Folder cannot be read: " + folder.toString(), false);
+    } 
+    else
+    if (fromSnapshot) {
+      if (rescanMediaMusicFolder(folder, loadIndex)) {
+        changed = true;
+      }
+    } else {
+      // fileChooser.setCurrentDirectory(folder);
+      scanMediaMusicFolder(folder, loadIndex);
+    }
+    if (loadProgress.isCancelled()) {
+      return -1;
+    }
+    Logger.getShared().recordEvent(LogEvent.NORMAL, 
+        "Common names: " + TunesCommonName.getCache().toString(), false);
+    if ((! fromSnapshot) || changed) {
+      TunesSnapshot.save(tunes);
+    }
+    return loadIndex;
+  }
+  
+  /**
+   Add a library to the collection, on the Event Dispatch Thread, and wait 
+   for it to be added. This is called from a background task, which is then 
+   free to fill in the library, since the library table only shows what it 
+   copies from the libraries when it is refreshed, once the task is done. 
+  
+   @param libraryFile The library file. 
+  
+   @return The index of the library added, or -1 if it could not be added. 
+  */
+  private int addLibraryAndWait(final File libraryFile) {
+    final int[] added = { -1 };
+    try {
+      SwingUtilities.invokeAndWait(new Runnable() {
+        @Override
+        public void run() {
+          TunesLibrary library = new TunesLibrary();
+          library.setLibraryFile(libraryFile);
+          added[0] = tunes.addLibrary(library);
+          tunes.getLibraries().refresh();
+        }
+      });
+    } catch (InterruptedException e) {
+      return -1;
+    }
+    catch (java.lang.reflect.InvocationTargetException e) {
+      logger.recordEvent(LogEvent.MEDIUM, 
+          "Could not add library " + libraryFile.toString() 
+          + ": " + e.getCause().toString(), false);
+      return -1;
+    }
+    return added[0];
+  }
+  
+  /**
+   Check a music folder for changes made since it was last scanned. 
+  
+   @param inFolder       The music folder to be checked. 
+   @param folderLibIndex The index of the library owning the folder. 
+  
+   @return True if any changes were found. 
+  */
+  private boolean rescanMediaMusicFolder(File inFolder, int folderLibIndex) {
+    logger.recordEvent(LogEvent.NORMAL, 
+        "Checking Music folder at " + inFolder.toString(), false);
+    tunesParser.getProgress().startPhase("Checking Music folder for library " 
+        + String.valueOf(folderLibIndex + 1));
+    int trackCount = tunesParser.rescanMediaMusicFolder
+        (tunes, folderLibIndex, inFolder);
+    Logger.getShared().recordEvent(LogEvent.NORMAL, 
+        String.valueOf(tunesParser.getFoldersScanned()) 
+        + " changed folders listed, "
+        + String.valueOf(trackCount) + " tracks in folder", false);
+    return (tunesParser.getFoldersScanned() > 0);
   }
   
   private void setTrackCount(int trackCount) {
@@ -386,24 +603,158 @@ public class TunesChecker
     }
   }
   
-  private void openMediaMusicFolder(File inFolder) {
+  /**
+   Scan a music folder chosen by the user, on a background thread. 
+  
+   @param inFolder The music folder to be scanned. 
+  */
+  private void openMediaMusicFolder(final File inFolder) {
+    final int folderLibIndex = libIndex;
+    final TunesProgress scanProgress = startTask();
+    new SwingWorker<Void, Void>() {
+      
+      private int tracksLoaded = 0;
+      
+      @Override
+      protected Void doInBackground() {
+        tracksLoaded = scanMediaMusicFolder(inFolder, folderLibIndex);
+        return null;
+      }
+      
+      @Override
+      protected void done() {
+        endTask(this);
+        if (scanProgress.isCancelled()) {
+          logger.recordEvent(LogEvent.NORMAL, 
+              "Scan cancelled; all libraries cleared", false);
+          clear();
+        } else {
+          setTrackCount(tracksLoaded);
+          tunes.getLibraries().refresh();
+        }
+      }
+    }.execute();
+  }
+  
+  /**
+   Scan a music folder, on a background thread. 
+  
+   @param inFolder       The music folder to be scanned. 
+   @param folderLibIndex The index of the library owning the folder. 
+  
+   @return The number of tracks found. 
+  */
+  private int scanMediaMusicFolder(File inFolder, int folderLibIndex) {
     String folderName = inFolder.getName();
     if (! folderName.equalsIgnoreCase(MUSIC)) {
       // No can do
     }
     logger.recordEvent(LogEvent.NORMAL, 
         "Opening Music folder at " + inFolder.toString(), false);
+    int tracksLoaded = 0;
     if (inFolder != null
         && inFolder.exists()
         && inFolder.isDirectory()) {
-      int tracksLoaded = tunesParser.scanMediaMusicFolder(tunes, libIndex, inFolder);
+      tunesParser.getProgress().startPhase("Scanning Music folder for library " 
+          + String.valueOf(folderLibIndex + 1));
+      tracksLoaded = tunesParser.scanMediaMusicFolder
+          (tunes, folderLibIndex, inFolder);
       Logger.getShared().recordEvent(LogEvent.NORMAL, 
           "Loaded " + String.valueOf(tracksLoaded) + " tracks", false);
-      setTrackCount(tracksLoaded);
+    }
+    return tracksLoaded;
+  }
+  
+  /**
+   Start a load or analysis, to be run in the background, and start 
+   showing its progress in the status bar. 
+  
+   @return The object to which the task is to report its progress. 
+  */
+  private TunesProgress startTask() {
+    progress = new TunesProgress();
+    tunesParser.setProgress(progress);
+    cancelMenuItem.setEnabled(true);
+    showProgress();
+    progressTimer.start();
+    return progress;
+  }
+  
+  /**
+   Show the progress of the task now running. This is called by a timer, 
+   so that the status bar is updated a few times a second, no matter how 
+   quickly the work itself is moving. 
+  */
+  private void showProgress() {
+    if (progress != null) {
+      statusBar.setStatus(progress.toString());
+    }
+  }
+  
+  /**
+   Finish up after a background task has completed, whether or not it was 
+   cancelled, and report any unexpected error that it ran into. 
+  
+   @param worker The worker that ran the task. 
+  
+   @return True if the task ran to its end without an error. 
+  */
+  private boolean endTask(SwingWorker<Void, Void> worker) {
+    progressTimer.stop();
+    progress = null;
+    tunesParser.setProgress(new TunesProgress());
+    cancelMenuItem.setEnabled(false);
+    statusBar.setStatus("");
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        applyPendingChanges();
+      }
+    });
+    try {
+      worker.get();
+      return true;
+    } catch (InterruptedException e) {
+      return false;
+    }
+    catch (ExecutionException e) {
+      logger.recordEvent(LogEvent.MEDIUM, 
+          "Unexpected error: " + e.getCause().toString(), false);
+      return false;
+    }
+  }
+  
+  /**
+   Ask the task now running to stop as soon as it can. 
+  */
+  private void cancelTask() {
+    if (progress != null) {
+      progress.cancel();
+      showProgress();
+    }
+  }
+  
+  /**
+   Is a load or analysis already running? If so, then let the user know. 
+  
+   @return True if a task is running, and so nothing else should be 
+           started yet. 
+  */
+  private boolean isBusy() {
+    if (progress == null) {
+      return false;
+    } else {
+      logger.recordEvent(LogEvent.MINOR, 
+          "Still busy with " + progress.getPhase() 
+          + "; wait for it to finish, or cancel it", false);
+      return true;
     }
   }
   
   private void exportToOPML() {
+    if (isBusy()) {
+      return;
+    }
     File opmlFile = null;
     String exportFolderStr = userPrefs.getPref(EXPORT_FOLDER, "");
     if (exportFolderStr.length() > 0) {
@@ -422,20 +773,23 @@ public class TunesChecker
     // fileChooser.setSelectedFile("tunes.opml");
     opmlFile = fileChooser.showSaveDialog(this);
     if (opmlFile != null) {
-      MarkupWriter writer = new MarkupWriter(opmlFile, MarkupWriter.OPML_FORMAT);
-      writer.openForOutput();
-      writer.startBody();
-      tunes.exportToOPML(writer);
-      writer.endBody();
-      writer.close();
-      userPrefs.setPref(EXPORT_FOLDER, opmlFile.getParent().toString());
-      Logger.getShared().recordEvent(LogEvent.NORMAL, 
-          "Exported Library info to OPML file at " + opmlFile.toString(), 
-          false);
+      try {
+        tunes.exportToOPML(opmlFile);
+        userPrefs.setPref(EXPORT_FOLDER, opmlFile.getParent().toString());
+        Logger.getShared().recordEvent(LogEvent.NORMAL, 
+            "Exported Library info to OPML file at " + opmlFile.toString(), 
+            false);
+      } catch (IOException e) {
+        trouble.report("I/O Error trying to export to OPML", 
+            "I/O Error", JOptionPane.ERROR_MESSAGE);
+      }
     } // end if user approved a file/folder choice
   }
   
   private void exportToTabDelim() {
+    if (isBusy()) {
+      return;
+    }
     File tabDelimFile = null;
     String exportFolderStr = userPrefs.getPref(EXPORT_FOLDER, "");
     if (exportFolderStr.length() > 0) {
@@ -453,14 +807,8 @@ public class TunesChecker
     fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
     tabDelimFile = fileChooser.showSaveDialog(this);
     if (tabDelimFile != null) {
-      TabDelimFile tdf = new TabDelimFile(tabDelimFile);
-      RecordDefinition recDef = new RecordDefinition();
-      TunesCollection.addRecDefColumns(recDef);
-      DataRecord rec = new DataRecord();
       try {
-        tdf.openForOutput(recDef);
-        tunes.exportToTabDelim(tdf, recDef, rec);
-        tdf.close();
+        tunes.exportToTabDelim(tabDelimFile);
       } catch (IOException e) {
         trouble.report("I/O Error trying to export to tab-delimited", 
             "I/O Error", JOptionPane.ERROR_MESSAGE);
@@ -474,22 +822,282 @@ public class TunesChecker
   }
   
   /**
-   Analyze the collection and identify anomalies. 
+   Analyze the collection and identify anomalies. The anomalies are found 
+   on a background thread, and then added to the anomaly tree. 
   */
   private void analyze() {
-    TunesAnalysis analysis = new TunesAnalysis();
+    if (isBusy()) {
+      return;
+    }
+    final TunesAnalysis analysis = new TunesAnalysis();
     analysis.setAttributesOption(attributesOptionCheckBox.isSelected());
     analysis.setMinTracks(minTracksSlider.getValue());
     
     userPrefs.setPref(PREFS_ATTRIBUTES, attributesOptionCheckBox.isSelected());
     userPrefs.setPref(PREFS_MIN_TRACKS, minTracksSlider.getValue());
     
-    tunes.analyze(analysis);
+    final TunesProgress analysisProgress = startTask();
+    analysisProgress.startPhase("Analyzing");
+    analysis.setProgress(analysisProgress);
+    final ListAnomalySink found = new ListAnomalySink();
+    new SwingWorker<Void, Void>() {
+      
+      @Override
+      protected Void doInBackground() {
+        tunes.analyze(analysis, found);
+        return null;
+      }
+      
+      @Override
+      protected void done() {
+        boolean ok = endTask(this);
+        tunes.clearAnomalyTree();
+        if (ok && (! analysisProgress.isCancelled())) {
+          TreeAnomalySink tree = new TreeAnomalySink(tunes, analysis);
+          for (TunesAnomaly anomaly: found.getAnomalies()) {
+            tree.add(anomaly);
+          }
+          tree.close();
+          lastAnalysis = analysis;
+          currAnomalyCountText.setText
+              (String.valueOf(tunes.getAnomalyCount()));
+          userPrefs.setPref(LAST_ANOMALY_COUNT, tunes.getAnomalyCount());
+        } else {
+          if (analysisProgress.isCancelled()) {
+            logger.recordEvent(LogEvent.NORMAL, "Analysis cancelled", false);
+          }
+          lastAnalysis = null;
+          currAnomalyCountText.setText("   ");
+        }
+        // tabs.setSelectedComponent(treePanel);
+      }
+    }.execute();
+  }
+  
+  /**
+   Start or stop watching all of the libraries opened so far. 
+  */
+  private void setWatching(boolean watching) {
+    stopWatching();
+    if (watching) {
+      for (int i = 0; i < tunes.getNumberOfLibraries(); i++) {
+        startWatching(tunes.getLibrary(i), i);
+      }
+    }
+  }
+  
+  /**
+   Start watching one library, and its music folder, for changes. 
+  
+   @param library  The library to be watched. 
+   @param libIndex The index of the library. 
+  */
+  private void startWatching(TunesLibrary library, int libIndex) {
+    File folder = library.getMusicFolder();
+    if (folder != null
+        && folder.isDirectory()) {
+      TunesWatcher watcher = new TunesWatcher
+          (libIndex, folder, library.getLibraryFile(), this);
+      try {
+        watcher.start();
+        watchers.add(watcher);
+      } catch (IOException e) {
+        Logger.getShared().recordEvent(LogEvent.MEDIUM, 
+            "Could not watch Music folder " + folder.toString() 
+            + ": " + e.toString(), false);
+      }
+    }
+  }
+  
+  private void stopWatching() {
+    for (TunesWatcher watcher: watchers) {
+      watcher.stop();
+    }
+    watchers = new ArrayList<TunesWatcher>();
+  }
+  
+  /**
+   Called by a watcher, on its own thread, when entries have been added to,
+   or removed from, a music folder. 
+  */
+  @Override
+  public void musicFoldersChanged(
+      final int watchedLibIndex, 
+      final Set<String> artistFolderNames) {
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        updateMusicFolders(watchedLibIndex, artistFolderNames);
+      }
+    });
+  }
+  
+  /**
+   Called by a watcher, on its own thread, when a library file changes. 
+  */
+  @Override
+  public void libraryChanged(int watchedLibIndex) {
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        reloadLibraries();
+      }
+    });
+  }
+  
+  /**
+   Bring the collection up to date with changes seen in a music folder, 
+   then analyze the affected artists again, if an analysis has been done. 
+   The folders are scanned, and the artists analyzed, on a background 
+   thread, and the snapshot saved again, so that the changes need not be 
+   found again the next time the library is opened; only the anomaly tree 
+   is then changed on the Event Dispatch Thread. 
+  
+   @param watchedLibIndex   The index of the library that changed. 
+   @param artistFolderNames The artist folders that changed, or null 
+                            if the entire music folder should be checked. 
+  */
+  private void updateMusicFolders(
+      final int watchedLibIndex, 
+      final Set<String> artistFolderNames) {
     
-    currAnomalyCountText.setText(String.valueOf(tunes.getAnomalyCount()));
-    userPrefs.setPref(LAST_ANOMALY_COUNT, tunes.getAnomalyCount());
+    if (progress != null) {
+      deferFolderChanges(watchedLibIndex, artistFolderNames);
+      return;
+    }
+    TunesLibrary library = tunes.getLibrary(watchedLibIndex);
+    if (library == null
+        || library.getMusicFolder() == null) {
+      return;
+    }
+    final File musicFolder = library.getMusicFolder();
+    final TunesAnalysis analysis = lastAnalysis;
+    final TunesProgress updateProgress = startTask();
+    updateProgress.startPhase("Checking Music folder for library " 
+        + String.valueOf(watchedLibIndex + 1));
+    new SwingWorker<Void, Void>() {
+      
+      private int trackCount = 0;
+      private int artistsChanged = 0;
+      private java.util.List<ArtistAnalysis> analyses = null;
+      
+      @Override
+      protected Void doInBackground() {
+        if (artistFolderNames == null) {
+          trackCount = tunesParser.rescanMediaMusicFolder
+              (tunes, watchedLibIndex, musicFolder);
+        } else {
+          trackCount = tunesParser.rescanArtistFolders
+              (tunes, watchedLibIndex, musicFolder, artistFolderNames);
+        }
+        if (tunesParser.getFoldersScanned() > 0
+            && (! updateProgress.isCancelled())) {
+          artistsChanged = tunesParser.getArtistsChanged().size();
+          if (analysis != null) {
+            updateProgress.startPhase("Analyzing changed artists");
+            analyses = tunes.findAnomalies
+                (tunesParser.getArtistsChanged(), analysis);
+          }
+          TunesSnapshot.save(tunes);
+        }
+        return null;
+      }
+      
+      @Override
+      protected void done() {
+        boolean ok = endTask(this);
+        if (updateProgress.isCancelled()) {
+          logger.recordEvent(LogEvent.NORMAL, 
+              "Music folder update cancelled", false);
+        }
+        else
+        if (ok && artistsChanged > 0) {
+          Logger.getShared().recordEvent(LogEvent.NORMAL, 
+              String.valueOf(artistsChanged) 
+              + " artists changed in Music folder for library "
+              + String.valueOf(watchedLibIndex + 1), false);
+          setTrackCount(trackCount);
+          tunes.getLibraries().refresh();
+          if (analyses != null
+              && analysis == lastAnalysis) {
+            tunes.replaceAnomalies(analyses, analysis);
+            currAnomalyCountText.setText
+                (String.valueOf(tunes.getAnomalyCount()));
+          }
+        }
+      }
+    }.execute();
+  }
+  
+  /**
+   Start over with the libraries opened so far, after one of them has 
+   been changed, and analyze them again if they had been analyzed before. 
+  */
+  private void reloadLibraries() {
+    if (progress != null) {
+      pendingReload = true;
+      return;
+    }
+    Logger.getShared().recordEvent(LogEvent.NORMAL, 
+        "Library file changed; reloading", false);
+    boolean analyzed = (lastAnalysis != null);
+    ArrayList<File> libraryFiles = new ArrayList<File>();
+    for (int i = 0; i < tunes.getNumberOfLibraries(); i++) {
+      libraryFiles.add(tunes.getLibrary(i).getLibraryFile());
+    }
+    clear();
+    libIndex = libraryFiles.size() - 1;
+    openLibraryFiles(libraryFiles, analyzed);
+  }
+  
+  /**
+   Hold on to changes seen in a music folder while a task is running, 
+   adding them to any already held for the same library. 
+  
+   @param watchedLibIndex   The index of the library that changed. 
+   @param artistFolderNames The artist folders that changed, or null 
+                            if the entire music folder should be checked. 
+  */
+  private void deferFolderChanges(
+      int watchedLibIndex, 
+      Set<String> artistFolderNames) {
     
-    // tabs.setSelectedComponent(treePanel);
+    Integer key = Integer.valueOf(watchedLibIndex);
+    if (artistFolderNames == null) {
+      pendingFolderChanges.put(key, null);
+    }
+    else
+    if (! pendingFolderChanges.containsKey(key)) {
+      pendingFolderChanges.put(key, new HashSet<String>(artistFolderNames));
+    } else {
+      Set<String> pending = pendingFolderChanges.get(key);
+      if (pending != null) {
+        pending.addAll(artistFolderNames);
+      }
+    }
+  }
+  
+  /**
+   Apply any changes seen by the watchers while the last task was running. 
+   A changed library file means that everything is reloaded, which takes 
+   care of any changed music folders as well. If another task has been 
+   started in the meantime, then the changes are held until it ends. 
+  */
+  private void applyPendingChanges() {
+    if (progress != null) {
+      return;
+    }
+    if (pendingReload) {
+      pendingReload = false;
+      pendingFolderChanges.clear();
+      reloadLibraries();
+    } else {
+      HashMap<Integer, Set<String>> changes = pendingFolderChanges;
+      pendingFolderChanges = new HashMap<Integer, Set<String>>();
+      for (Map.Entry<Integer, Set<String>> change: changes.entrySet()) {
+        updateMusicFolders(change.getKey().intValue(), change.getValue());
+      }
+    }
   }
   
   /**
@@ -608,7 +1216,10 @@ public class TunesChecker
     fileMenu = new javax.swing.JMenu();
     openLib1MenuItem = new javax.swing.JMenuItem();
     openLib2MenuItem = new javax.swing.JMenuItem();
+    openNextLibMenuItem = new javax.swing.JMenuItem();
     analyzeMenuItem = new javax.swing.JMenuItem();
+    cancelMenuItem = new javax.swing.JMenuItem();
+    watchMenuItem = new javax.swing.JCheckBoxMenuItem();
     clearMenuItem = new javax.swing.JMenuItem();
     exportMenu = new javax.swing.JMenu();
     exportToOPMLMenuItem = new javax.swing.JMenuItem();
@@ -878,6 +1489,14 @@ public class TunesChecker
     openLib2MenuItem.setText("Open Library 2...");
     fileMenu.add(openLib2MenuItem);
 
+    openNextLibMenuItem.setText("Open Next Library...");
+    openNextLibMenuItem.addActionListener(new java.awt.event.ActionListener() {
+      public void actionPerformed(java.awt.event.ActionEvent evt) {
+        openNextLibMenuItemActionPerformed(evt);
+      }
+    });
+    fileMenu.add(openNextLibMenuItem);
+
     analyzeMenuItem.setText("Analyze...");
     analyzeMenuItem.addActionListener(new java.awt.event.ActionListener() {
       public void actionPerformed(java.awt.event.ActionEvent evt) {
@@ -886,6 +1505,24 @@ public class TunesChecker
     });
     fileMenu.add(analyzeMenuItem);
 
+    cancelMenuItem.setText("Cancel");
+    cancelMenuItem.setToolTipText("Stop the load or analysis now running");
+    cancelMenuItem.addActionListener(new java.awt.event.ActionListener() {
+      public void actionPerformed(java.awt.event.ActionEvent evt) {
+        cancelMenuItemActionPerformed(evt);
+      }
+    });
+    fileMenu.add(cancelMenuItem);
+
+    watchMenuItem.setText("Watch for Changes");
+    watchMenuItem.setToolTipText("Keep the anomalies current as the libraries and Music folders change");
+    watchMenuItem.addActionListener(new java.awt.event.ActionListener() {
+      public void actionPerformed(java.awt.event.ActionEvent evt) {
+        watchMenuItemActionPerformed(evt);
+      }
+    });
+    fileMenu.add(watchMenuItem);
+
     clearMenuItem.setText("Clear");
     clearMenuItem.setToolTipText("Clear all of the iTunes info collected so far");
     clearMenuItem.addActionListener(new java.awt.event.ActionListener() {
@@ -935,24 +1572,40 @@ public class TunesChecker
     openLibrary1();
   }//GEN-LAST:event_openLib1MenuItemActionPerformed
 
+  private void openNextLibMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_openNextLibMenuItemActionPerformed
+    openNextLibrary();
+  }//GEN-LAST:event_openNextLibMenuItemActionPerformed
+
   private void logPanelformComponentShown(java.awt.event.ComponentEvent evt) {//GEN-FIRST:event_logPanelformComponentShown
     logScrollPane.requestFocus();
   }//GEN-LAST:event_logPanelformComponentShown
 
   private void clearMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_clearMenuItemActionPerformed
-    clear();
+    if (! isBusy()) {
+      clear();
+    }
   }//GEN-LAST:event_clearMenuItemActionPerformed
 
   private void analyzeMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_analyzeMenuItemActionPerformed
     analyze();
   }//GEN-LAST:event_analyzeMenuItemActionPerformed
 
+  private void watchMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_watchMenuItemActionPerformed
+    setWatching(watchMenuItem.isSelected());
+  }//GEN-LAST:event_watchMenuItemActionPerformed
+
+  private void cancelMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cancelMenuItemActionPerformed
+    cancelTask();
+  }//GEN-LAST:event_cancelMenuItemActionPerformed
+
   private void openLib1ButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_openLib1ButtonActionPerformed
     openLibrary1();
   }//GEN-LAST:event_openLib1ButtonActionPerformed
 
   private void clearButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_clearButtonActionPerformed
-    clear();
+    if (! isBusy()) {
+      clear();
+    }
   }//GEN-LAST:event_clearButtonActionPerformed
 
   private void analyzeButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_analyzeButtonActionPerformed
@@ -1015,6 +1668,7 @@ public class TunesChecker
   private javax.swing.JTable anomalyTypesTable;
   private javax.swing.JCheckBox attributesOptionCheckBox;
   private javax.swing.JLabel attributesOptionLabel;
+  private javax.swing.JMenuItem cancelMenuItem;
   private javax.swing.JButton clearButton;
   private javax.swing.JMenuItem clearMenuItem;
   private javax.swing.JLabel currAnomalyCountLabel;
@@ -1044,10 +1698,12 @@ public class TunesChecker
   private javax.swing.JMenuItem openLib1MenuItem;
   private javax.swing.JButton openLib2Button;
   private javax.swing.JMenuItem openLib2MenuItem;
+  private javax.swing.JMenuItem openNextLibMenuItem;
   private javax.swing.JPanel optionsPanel;
   private javax.swing.JTabbedPane tabs;
   private javax.swing.JPanel treePanel;
   private javax.swing.JScrollPane treeScrollPane;
+  private javax.swing.JCheckBoxMenuItem watchMenuItem;
   private javax.swing.JMenu windowMenu;
   // End of variables declaration//GEN-END:variables
 }
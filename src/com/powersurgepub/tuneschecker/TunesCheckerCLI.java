@@ -0,0 +1,407 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.util.*;
+
+/**
+ Runs TunesChecker from the command line, without a user interface, so
+ that libraries may be checked on a schedule, on a machine without a
+ display. Each library is loaded and its Music folder scanned, just as in
+ the application, the collection is analyzed, and the anomalies found and
+ any exports requested are written to files. The anomalies are written as
+ they are found, without building the anomaly tree. The time taken by
+ each phase is reported as it completes.
+
+ The exit status is zero if no anomalies were found, one if any were
+ found, and two if the check could not be completed.
+
+ @author Herb Bowie
+ */
+public class TunesCheckerCLI {
+
+  public static final int         EXIT_CLEAN      = 0;
+  public static final int         EXIT_ANOMALIES  = 1;
+  public static final int         EXIT_ERROR      = 2;
+
+  public static final String      USAGE           =
+      "Usage: TunesCheckerCLI [options] library.xml [music-folder] ...\n"
+    + "  library.xml          An iTunes Library XML file; more than one may be named.\n"
+    + "  music-folder         The Media Music folder for the preceding library,\n"
+    + "                       if not the one named within the library file.\n"
+    + "  -anomalies <file>    Write the anomalies found to this file.\n"
+    + "  -opml <file>         Export the collection to this OPML file.\n"
+    + "  -tab <file>          Export the collection to this tab-delimited file,\n"
+    + "                       compressed if its name ends with .gz.\n"
+    + "  -columnar <file>     Export the collection to this columnar file.\n"
+    + "  -mintracks <n>       Check albums with more than this many tracks\n"
+    + "                       for missing track numbers (zero for none).\n"
+    + "  -threads <n>         The number of threads to use.\n"
+    + "  -metrics <file>      Write timings and counts for each phase to this\n"
+    + "                       file, as a JSON report.\n"
+    + "  -nosnapshot          Neither load nor save collection snapshots.\n";
+
+  private     ArrayList<File>     libraryFiles = new ArrayList<File>();
+
+  /** The Music folder for each library, or null to use the one named. */
+  private     ArrayList<File>     musicFolders = new ArrayList<File>();
+
+  private     File                anomaliesFile = null;
+  private     File                opmlFile = null;
+  private     File                tabDelimFile = null;
+  private     File                columnarFile = null;
+  private     File                metricsFile = null;
+  private     boolean             useSnapshots = true;
+
+  private     TunesCollection     tunes = new TunesCollection();
+  private     TunesParser         tunesParser = new TunesParser();
+  private     TunesAnalysis       analysis = new TunesAnalysis();
+
+  private     PrintStream         out = System.out;
+  private     PrintStream         err = System.err;
+
+  private     long                phaseStart = 0;
+
+  public TunesCheckerCLI() {
+
+  }
+
+  public static void main(String args[]) {
+    System.setProperty("java.awt.headless", "true");
+    TunesCheckerCLI cli = new TunesCheckerCLI();
+    System.exit(cli.run(args));
+  }
+
+  /**
+   Perform a complete check, as directed by the passed arguments.
+
+   @param args The command line arguments.
+
+   @return The exit status.
+  */
+  public int run(String[] args) {
+
+    long started = System.nanoTime();
+    if (! setArguments(args)) {
+      err.print(USAGE);
+      return EXIT_ERROR;
+    }
+
+    for (int libIndex = 0; libIndex < libraryFiles.size(); libIndex++) {
+      if (! loadLibrary(libIndex)) {
+        return EXIT_ERROR;
+      }
+    }
+
+    try {
+      startPhase();
+      if (anomaliesFile == null) {
+        tunes.analyze(analysis, new CountingAnomalySink());
+        endPhase("Analyze", tunes.getAnomalyCount(), "anomalies");
+      } else {
+        FileAnomalySink sink = new FileAnomalySink(anomaliesFile);
+        tunes.analyze(analysis, sink);
+        if (sink.getException() != null) {
+          throw sink.getException();
+        }
+        endPhase("Analyze, writing anomalies to " + anomaliesFile.toString(),
+            tunes.getAnomalyCount(), "anomalies");
+      }
+      if (opmlFile != null) {
+        startPhase();
+        exportToOPML(opmlFile);
+        endPhase("Export to OPML file " + opmlFile.toString(),
+            tunes.getNumberOfArtists(), "artists");
+      }
+      if (tabDelimFile != null) {
+        startPhase();
+        exportToTabDelim(tabDelimFile);
+        endPhase("Export to tab-delimited file " + tabDelimFile.toString(),
+            tunes.getNumberOfArtists(), "artists");
+      }
+      if (columnarFile != null) {
+        startPhase();
+        tunes.exportToColumnar(columnarFile);
+        endPhase("Export to columnar file " + columnarFile.toString(),
+            tunes.getNumberOfArtists(), "artists");
+      }
+      if (metricsFile != null) {
+        TunesMetrics.getShared().writeJSON(metricsFile);
+      }
+    } catch (IOException e) {
+      err.println("I/O Error: " + e.getMessage());
+      return EXIT_ERROR;
+    }
+
+    out.println("Total: " + String.valueOf(elapsedMillis(started)) + " ms, "
+        + String.valueOf(tunes.getAnomalyCount()) + " anomalies");
+    if (tunes.getAnomalyCount() > 0) {
+      return EXIT_ANOMALIES;
+    } else {
+      return EXIT_CLEAN;
+    }
+  } // end method run
+
+  /**
+   Make sense of the command line arguments.
+
+   @param args The command line arguments.
+
+   @return True if the arguments were valid, false otherwise.
+  */
+  private boolean setArguments(String[] args) {
+    int i = 0;
+    while (i < args.length) {
+      String arg = args[i];
+      String value = null;
+      if (arg.equals("-anomalies")
+          || arg.equals("-opml")
+          || arg.equals("-tab")
+          || arg.equals("-columnar")
+          || arg.equals("-metrics")
+          || arg.equals("-mintracks")
+          || arg.equals("-threads")) {
+        i++;
+        if (i >= args.length) {
+          err.println("Missing value for " + arg);
+          return false;
+        }
+        value = args[i];
+      }
+
+      if (arg.equals("-anomalies")) {
+        anomaliesFile = new File(value);
+      }
+      else
+      if (arg.equals("-opml")) {
+        opmlFile = new File(value);
+      }
+      else
+      if (arg.equals("-tab")) {
+        tabDelimFile = new File(value);
+      }
+      else
+      if (arg.equals("-columnar")) {
+        columnarFile = new File(value);
+      }
+      else
+      if (arg.equals("-metrics")) {
+        metricsFile = new File(value);
+      }
+      else
+      if (arg.equals("-mintracks")) {
+        int minTracks = parseNumber(arg, value);
+        if (minTracks < 0) {
+          return false;
+        }
+        analysis.setMinTracks(minTracks);
+      }
+      else
+      if (arg.equals("-threads")) {
+        int threads = parseNumber(arg, value);
+        if (threads < 1) {
+          return false;
+        }
+        tunesParser.setScanParallelism(threads);
+        analysis.setParallelism(threads);
+      }
+      else
+      if (arg.equals("-nosnapshot")) {
+        useSnapshots = false;
+      }
+      else
+      if (arg.startsWith("-")) {
+        err.println("Unknown option " + arg);
+        return false;
+      } else {
+        File file = new File(arg);
+        if (file.isDirectory()) {
+          if (libraryFiles.isEmpty()
+              || musicFolders.get(musicFolders.size() - 1) != null) {
+            err.println("Music folder " + arg
+                + " must follow the library to which it belongs");
+            return false;
+          }
+          musicFolders.set(musicFolders.size() - 1, file);
+        }
+        else
+        if (file.isFile() && file.canRead()) {
+          libraryFiles.add(file);
+          musicFolders.add(null);
+        } else {
+          err.println("No readable file or folder at " + arg);
+          return false;
+        }
+      }
+      i++;
+    } // end while more arguments
+
+    if (libraryFiles.isEmpty()) {
+      err.println("No library file named");
+      return false;
+    }
+    return true;
+  } // end method setArguments
+
+  private int parseNumber(String arg, String value) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      err.println("Invalid number for " + arg + ": " + value);
+      return -1;
+    }
+  }
+
+  /**
+   Load one library, from its snapshot if that is still current, or
+   otherwise from the library file, and bring in its Music folder.
+
+   @param libIndex The index of the library to be loaded.
+
+   @return True if the library was loaded, false if it could not be.
+  */
+  private boolean loadLibrary(int libIndex) {
+
+    File libraryFile = libraryFiles.get(libIndex);
+    TunesLibrary library = new TunesLibrary();
+    library.setLibraryFile(libraryFile);
+    tunes.addLibrary(library);
+
+    String libName = "library " + String.valueOf(libIndex + 1);
+    boolean fromSnapshot = false;
+    boolean changed = false;
+    if (useSnapshots) {
+      startPhase();
+      fromSnapshot = TunesSnapshot.load(tunes);
+      if (fromSnapshot) {
+        endPhase("Load snapshot for " + libName,
+            library.getCount(TunesLibrary.LIB, TunesLibrary.TRACKS),
+            "tracks");
+        // The snapshot replaced the libraries loaded before this one as
+        // well, so their Music folders must be checked again too.
+        for (int i = 0; i < libIndex; i++) {
+          File earlierFolder = tunes.getLibrary(i).getMusicFolder();
+          if (earlierFolder != null
+              && earlierFolder.isDirectory()
+              && rescanMusicFolder(i, earlierFolder)) {
+            changed = true;
+          }
+        }
+      }
+    }
+    if (! fromSnapshot) {
+      startPhase();
+      int tracksLoaded = tunesParser.parseStream
+          (tunes, libIndex, libraryFile.toString());
+      endPhase("Parse " + libName + " at " + libraryFile.toString(),
+          tracksLoaded, "tracks");
+    }
+
+    File folder = musicFolders.get(libIndex);
+    if (folder == null) {
+      folder = library.getMusicFolder();
+    } else {
+      library.setMusicFolder(folder);
+    }
+    if (folder == null) {
+      err.println("Music folder not identified for " + libName);
+      return false;
+    }
+    else
+    if (! folder.isDirectory()
+        || ! folder.canRead()) {
+      err.println("Music folder cannot be read: " + folder.toString());
+      return false;
+    }
+
+    if (fromSnapshot) {
+      if (rescanMusicFolder(libIndex, folder)) {
+        changed = true;
+      }
+    } else {
+      startPhase();
+      int tracksFound
+          = tunesParser.scanMediaMusicFolder(tunes, libIndex, folder);
+      endPhase("Scan Music folder at " + folder.toString(),
+          tracksFound, "tracks");
+    }
+
+    if (useSnapshots && ((! fromSnapshot) || changed)) {
+      startPhase();
+      TunesSnapshot.save(tunes);
+      endPhase("Save snapshot for " + libName, -1, "");
+    }
+    return true;
+  } // end method loadLibrary
+
+  /**
+   Check the Music folder of a library loaded from a snapshot for changes
+   made since the snapshot was saved.
+
+   @param libIndex The index of the library owning the folder.
+   @param folder   The Music folder to be checked.
+
+   @return True if any changes were found.
+  */
+  private boolean rescanMusicFolder(int libIndex, File folder) {
+    startPhase();
+    tunesParser.rescanMediaMusicFolder(tunes, libIndex, folder);
+    endPhase("Rescan Music folder at " + folder.toString(),
+        tunesParser.getFoldersScanned(), "changed folders");
+    return (tunesParser.getFoldersScanned() > 0);
+  }
+
+  private void exportToOPML(File file)
+      throws IOException {
+    tunes.exportToOPML(file);
+  }
+
+  private void exportToTabDelim(File file)
+      throws IOException {
+    tunes.exportToTabDelim(file);
+  }
+
+  private void startPhase() {
+    phaseStart = System.nanoTime();
+  }
+
+  /**
+   Report the time taken by the phase just completed.
+
+   @param phase The name of the phase.
+   @param count A count of what was done, or -1 if there is none to report.
+   @param units What was counted.
+  */
+  private void endPhase(String phase, int count, String units) {
+    StringBuilder msg = new StringBuilder(phase);
+    msg.append(": ");
+    msg.append(String.valueOf(elapsedMillis(phaseStart)));
+    msg.append(" ms");
+    if (count >= 0) {
+      msg.append(", ");
+      msg.append(String.valueOf(count));
+      msg.append(" ");
+      msg.append(units);
+    }
+    out.println(msg.toString());
+  }
+
+  private static long elapsedMillis(long start) {
+    return (System.nanoTime() - start) / 1000000;
+  }
+
+}
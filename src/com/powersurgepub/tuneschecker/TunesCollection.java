@@ -16,8 +16,6 @@
 package com.powersurgepub.tuneschecker;
 
   import com.powersurgepub.psdatalib.psdata.*;
-  import com.powersurgepub.psdatalib.tabdelim.*;
-  import com.powersurgepub.psdatalib.txbio.*;
   import com.powersurgepub.psutils.*;
   import java.io.*;
   import java.util.*;
@@ -31,13 +29,34 @@ package com.powersurgepub.tuneschecker;
  */
 public class TunesCollection {
   
+  /** The number of artists analyzed before their anomalies are passed on. */
+  public static final int ARTISTS_PER_BATCH = 1024;
+  
   private TunesSources           sources   = new TunesSources();
   
   private LibraryTable           libraries = new LibraryTable();
   
-  private ArrayList<TunesArtist> artists = new ArrayList<TunesArtist>();
-  private TunesArtist            artist = new TunesArtist();
-  private int                    artistIndex = -1;
+  /** Artists keyed (and sorted) by their common names. */
+  private TreeMap<String, TunesArtist> artists 
+      = new TreeMap<String, TunesArtist>();
+  private TunesArtist            artist = null;
+  
+  private static final TunesMetrics.Counter storeHits 
+      = TunesMetrics.getShared().getCounter
+        ("store.artist.hits", "Artists stored the same as the last one");
+  private static final TunesMetrics.Counter storeMisses 
+      = TunesMetrics.getShared().getCounter
+        ("store.artist.misses", "Artists stored that had to be looked up");
+  private static final TunesMetrics.Timer analyzeTimer 
+      = TunesMetrics.getShared().getTimer
+        ("analyze", "Analysis of the collection");
+  private static final TunesMetrics.Counter artistsAnalyzedCounter 
+      = TunesMetrics.getShared().getCounter
+        ("analyze.artists", "Artists analyzed");
+  
+  /** Counters of anomalies found, indexed by anomaly type ID. */
+  private static TunesMetrics.Counter[] anomalyCounters 
+      = new TunesMetrics.Counter[0];
   
   private TunesArtist            compilations = new TunesArtist();
   
@@ -74,8 +93,22 @@ public class TunesCollection {
     return libraries;
   }
   
-  public ArrayList<TunesArtist> getArtists() {
-    return artists;
+  /**
+   Return all of the artists in the collection. 
+  
+   @return The artists, in common name sequence. 
+  */
+  public Collection<TunesArtist> getArtists() {
+    return artists.values();
+  }
+  
+  /**
+   Return the number of artists in the collection. 
+  
+   @return The number of artists stored. 
+  */
+  public int getNumberOfArtists() {
+    return artists.size();
   }
   
   /**
@@ -144,79 +177,398 @@ public class TunesCollection {
   */
   public TunesArtist storeArtist(TunesArtist artistToStore) {
     
-    if (artists.isEmpty()) {
-      artists.add(artistToStore);
-      artistIndex = 0;
-      artist = artistToStore;
-    }
-    else
-    if (artistIndex >= 0 && artistIndex < artists.size() && artist != null
+    if (artist != null
         && artist.equals(artistToStore)) {
+      storeHits.increment();
       artist.merge(artistToStore);
-    }
-    else {
-      artistIndex = 0;
-      int comparison = 1;
-      while (artistIndex < artists.size() && comparison > 0) {
-        comparison = artistToStore.compareTo(artists.get(artistIndex));
-        if (comparison > 0) {
-          artistIndex++;
-        } // end if still looking for the right insertion point
-      } // end while looking for the right insertion point
-      if (artistIndex == artists.size() || comparison < 0) {
-        artists.add(artistIndex, artistToStore);
-        artist = artists.get(artistIndex);
-      } 
-      else {
-        artists.get(artistIndex).merge(artistToStore);
-        artist = artists.get(artistIndex);
+    } else {
+      storeMisses.increment();
+      String key = artistToStore.getCommonName().getName();
+      TunesArtist existing = artists.get(key);
+      if (existing == null) {
+        artists.put(key, artistToStore);
+        artist = artistToStore;
+      } else {
+        existing.merge(artistToStore);
+        artist = existing;
       }
-    } // end if we had to go looking for an insertion point
+    } // end if we had to go looking for a matching entry
     
     artist.setCollection(this);
     
     return artist;
   }
   
+  /**
+   Write the artists, and all of their albums, tracks and files, to a 
+   snapshot. 
+  
+   @param snapshot The snapshot being written. 
+  */
+  void writeSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    sources.writeSnapshot(snapshot);
+    snapshot.writeInt(artists.size());
+    for (TunesArtist nextArtist: artists.values()) {
+      nextArtist.writeSnapshot(snapshot);
+    }
+  }
+  
+  /**
+   Replace the artists with those read from a snapshot. The collection is 
+   only changed once the entire snapshot has been read successfully. 
+  
+   @param snapshot The snapshot being read. 
+  */
+  void readSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    TunesSources snapshotSources = new TunesSources();
+    snapshotSources.readSnapshot(snapshot);
+    int numberOfArtists = snapshot.readInt();
+    TreeMap<String, TunesArtist> snapshotArtists 
+        = new TreeMap<String, TunesArtist>();
+    for (int i = 0; i < numberOfArtists; i++) {
+      TunesArtist nextArtist = new TunesArtist();
+      nextArtist.readSnapshot(snapshot);
+      snapshotArtists.put(nextArtist.getCommonName().getName(), nextArtist);
+    }
+    
+    sources = snapshotSources;
+    artists = snapshotArtists;
+    artist = null;
+    TunesArtist compilationsToUse = new TunesArtist();
+    compilationsToUse.setArtist("Compilations");
+    TunesArtist storedCompilations 
+        = artists.get(compilationsToUse.getCommonName().getName());
+    if (storedCompilations == null) {
+      compilations = compilationsToUse;
+    } else {
+      compilations = storedCompilations;
+    }
+    for (TunesArtist nextArtist: artists.values()) {
+      nextArtist.setCollection(this);
+    }
+  }
+  
+  /**
+   Return the artist stored under a common name. 
+  
+   @param key The common name of the artist. 
+  
+   @return The artist, or null if no such artist has been stored. 
+  */
+  public TunesArtist getArtist(String key) {
+    return artists.get(key);
+  }
+  
+  /**
+   Remove an artist from the collection. 
+  
+   @param artistToRemove The artist to be removed. 
+  */
+  public void removeArtist(TunesArtist artistToRemove) {
+    artists.remove(artistToRemove.getCommonName().getName());
+    if (artist == artistToRemove) {
+      artist = null;
+    }
+    removeAnomalies(artistToRemove);
+  }
+  
   public void display() {
     System.out.println("TunesCollection.display");
-    for (artistIndex = 0; artistIndex < artists.size(); artistIndex++) {
-      artists.get(artistIndex).display();
+    for (TunesArtist nextArtist: artists.values()) {
+      nextArtist.display();
     }
   }
   
   /**
-   Analyze the collection and identify anomalies. 
+   Analyze the collection and identify anomalies, replacing the anomaly 
+   tree with the anomalies found. 
   */
   public void analyze(TunesAnalysis analysis) {
+    clearAnomalyTree();
+    analyze(analysis, new TreeAnomalySink(this, analysis));
+  }
+  
+  /**
+   Analyze the collection and identify anomalies, passing each one to the 
+   given sink. The artists are analyzed in parallel, a batch at a time, 
+   and the anomalies found for each are then passed to the sink one artist 
+   at a time, in artist sequence. The results of any earlier analysis are 
+   forgotten, although the anomaly tree itself is left alone, so that this 
+   may be done off the Event Dispatch Thread. If the analysis is cancelled 
+   part way through, then nothing is left counted. 
+  
+   @param analysis The options for this analysis. 
+   @param sink     The sink to which the anomalies are to be passed. 
+  */
+  public void analyze(TunesAnalysis analysis, AnomalySink sink) {
 
-    for (TunesArtist nextArtist: artists) {
-      nextArtist.analyze(this, analysis);
+    long start = analyzeTimer.start();
+    TunesEvents.AnalyzeEvent event = new TunesEvents.AnalyzeEvent();
+    event.begin();
+    TunesProgress progress = analysis.getProgress();
+    progress.setArtistsTotal(artists.size());
+    forgetAnomalies();
+    ArrayList<ArtistAnalysis> analyses 
+        = new ArrayList<ArtistAnalysis>
+            (Math.min(artists.size(), ARTISTS_PER_BATCH));
+    for (TunesArtist nextArtist: artists.values()) {
+      if (progress.isCancelled()) {
+        break;
+      }
+      analyses.add(new ArtistAnalysis(this, nextArtist, analysis));
+      if (analyses.size() >= ARTISTS_PER_BATCH) {
+        analyzeBatch(analyses, analysis, sink);
+      }
+    }
+    if (! progress.isCancelled()) {
+      analyzeBatch(analyses, analysis, sink);
+    }
+    sink.close();
+    if (progress.isCancelled()) {
+      forgetAnomalies();
+    }
+    analyzeTimer.stop(start);
+    event.end();
+    if (event.shouldCommit()) {
+      event.libraries = getNumberOfLibraries();
+      event.artists = artists.size();
+      event.anomalies = anomalyCount;
+      event.parallelism = analysis.getParallelism();
+      event.cancelled = progress.isCancelled();
+      event.commit();
     }
-    anomalies.nodeStructureChanged(anomalyRoot);
     
   }
   
-  public void exportToOPML(MarkupWriter writer) {
-    for (TunesArtist nextArtist: artists) {
-      nextArtist.exportToOPML(writer);
+  /**
+   Analyze a batch of artists, pass the anomalies found to the sink, and 
+   empty the batch. 
+  */
+  private void analyzeBatch(
+      List<ArtistAnalysis> analyses, 
+      TunesAnalysis analysis, 
+      AnomalySink sink) {
+    
+    ArtistAnalysis.analyzeEach(analyses, analysis.getParallelism());
+    for (ArtistAnalysis artistAnalysis: analyses) {
+      addAnomalies(artistAnalysis.getArtist(), 
+          artistAnalysis.getAnomalies(), sink);
+    }
+    analysis.getProgress().addArtistsAnalyzed(analyses.size());
+    artistsAnalyzedCounter.add(analyses.size());
+    analyses.clear();
+  }
+  
+  /**
+   Forget the anomalies found by any earlier analysis, so that the 
+   artists, albums and tracks may be analyzed again from scratch. 
+  */
+  private void forgetAnomalies() {
+    for (TunesArtist nextArtist: artists.values()) {
+      nextArtist.clearAnomalies();
     }
+    anomalyCount = 0;
+  }
+  
+  /**
+   Analyze some artists again, after changes to them. Neither the anomaly 
+   tree nor the count of anomalies is touched, so that this may be done off 
+   the Event Dispatch Thread; the results are then passed to 
+   replaceAnomalies, on the Event Dispatch Thread. 
+  
+   @param artistKeys The common names of the artists to be analyzed again. 
+                     Artists no longer in the collection are ignored. 
+   @param analysis   The options used for the earlier analysis. 
+  
+   @return The analysis of each artist still in the collection. 
+  */
+  public List<ArtistAnalysis> findAnomalies(
+      Collection<String> artistKeys, 
+      TunesAnalysis analysis) {
+    
+    ArrayList<ArtistAnalysis> analyses = new ArrayList<ArtistAnalysis>();
+    for (String key: artistKeys) {
+      TunesArtist nextArtist = artists.get(key);
+      if (nextArtist != null) {
+        analyses.add(new ArtistAnalysis(this, nextArtist, analysis));
+      }
+    }
+    ArtistAnalysis.analyzeEach(analyses, analysis.getParallelism());
+    return analyses;
+  }
+  
+  /**
+   Replace whatever an earlier analysis found for some artists with what 
+   findAnomalies has found for them since. The anomaly tree is kept in 
+   artist sequence, and the rest of it is left as it was. 
+  
+   @param analyses The analyses returned by findAnomalies. 
+   @param analysis The options used for the earlier analysis. 
+  */
+  public void replaceAnomalies(
+      List<ArtistAnalysis> analyses, 
+      TunesAnalysis analysis) {
+    
+    TreeAnomalySink tree = new TreeAnomalySink(this, analysis);
+    for (ArtistAnalysis artistAnalysis: analyses) {
+      TunesArtist nextArtist = artistAnalysis.getArtist();
+      removeAnomalies(nextArtist);
+      nextArtist.clearAnomalies();
+      addAnomalies(nextArtist, artistAnalysis.getAnomalies(), tree);
+      DefaultMutableTreeNode artistNode = nextArtist.getAnomalyNode();
+      if (artistNode != null) {
+        // Move the node from the end of the tree to its proper place
+        anomalyRoot.remove(artistNode);
+        int index = 0;
+        while (index < anomalyRoot.getChildCount()
+            && precedes(anomalyRoot.getChildAt(index), nextArtist)) {
+          index++;
+        }
+        anomalies.insertNodeInto(artistNode, anomalyRoot, index);
+      }
+    } // end for each artist analyzed again
+  }
+  
+  /**
+   Does the passed node belong before the given artist in the anomaly tree?
+  */
+  private boolean precedes(TreeNode node, TunesArtist artist) {
+    Object userObject = ((DefaultMutableTreeNode)node).getUserObject();
+    return ((! (userObject instanceof TunesArtist))
+        || ((TunesArtist)userObject).compareTo(artist) < 0);
+  }
+  
+  /**
+   Remove an artist, and everything below it, from the anomaly tree, and 
+   from the anomaly count. 
+  
+   @param artistToRemove The artist whose anomalies are to be removed. 
+  */
+  private void removeAnomalies(TunesArtist artistToRemove) {
+    DefaultMutableTreeNode artistNode = artistToRemove.getAnomalyNode();
+    if (artistNode != null
+        && artistNode.getParent() == anomalyRoot) {
+      anomalies.removeNodeFromParent(artistNode);
+    }
+    anomalyCount = anomalyCount - artistToRemove.getAnomalyCount();
+    artistToRemove.setAnomalyCount(0);
+  }
+  
+  /**
+   Export the entire collection to an OPML file, writing each artist as it 
+   is reached, rather than building the outline in memory first. 
+  
+   @param file The file to be written. 
+  */
+  public void exportToOPML(File file) 
+      throws IOException {
+    TunesEvents.ExportEvent event = new TunesEvents.ExportEvent();
+    event.begin();
+    int tracksExported = 0;
+    OPMLExporter exporter = new OPMLExporter(file);
+    try {
+      exporter.startDocument();
+      for (TunesArtist nextArtist: artists.values()) {
+        tracksExported = tracksExported + nextArtist.exportToOPML(exporter);
+      }
+      exporter.endDocument();
+    } finally {
+      exporter.close();
+    }
+    commitExportEvent(event, TunesEvents.OPML, tracksExported, 
+        exporter.getBytesWritten());
   }
   
   public static void addRecDefColumns(RecordDefinition recDef) {
     TunesArtist.addRecDefColumns(recDef);
   }
   
-  public void exportToTabDelim(
-      TabDelimFile tdf, 
-      RecordDefinition recDef, 
-      DataRecord rec) 
-        throws IOException {
+  /**
+   Export the entire collection to a tab-delimited file, with a heading 
+   line followed by one line per track, compressing the file if its name 
+   ends with ".gz". 
+  
+   @param file The file to be written. 
+  */
+  public void exportToTabDelim(File file) 
+      throws IOException {
     
-    for (TunesArtist nextArtist: artists) {
-      nextArtist.exportToTabDelim(tdf, recDef, rec);
+    TunesEvents.ExportEvent event = new TunesEvents.ExportEvent();
+    event.begin();
+    RecordDefinition recDef = new RecordDefinition();
+    addRecDefColumns(recDef);
+    int tracksExported = 0;
+    TabDelimExporter exporter = new TabDelimExporter(file, recDef);
+    try {
+      exporter.writeHeadings();
+      for (TunesArtist nextArtist: artists.values()) {
+        tracksExported = tracksExported + nextArtist.exportToTabDelim(exporter);
+      }
+    } finally {
+      exporter.close();
     }
+    commitExportEvent(event, TunesEvents.TAB_DELIMITED, tracksExported, 
+        exporter.getBytesWritten());
+  }
+  
+  /**
+   Export the entire collection to a columnar file, for loading into 
+   analytics tools. If the export fails, the partial file is deleted, 
+   rather than being left without its footer. 
+  
+   @param file The file to be written. 
+  */
+  public void exportToColumnar(File file) 
+      throws IOException {
     
+    TunesEvents.ExportEvent event = new TunesEvents.ExportEvent();
+    event.begin();
+    int tracksExported = 0;
+    boolean finished = false;
+    ColumnarExporter exporter = new ColumnarExporter(file);
+    try {
+      for (TunesArtist nextArtist: artists.values()) {
+        tracksExported = tracksExported + nextArtist.exportToColumnar(exporter);
+      }
+      exporter.finish();
+      finished = true;
+    } finally {
+      try {
+        exporter.close();
+      } finally {
+        if (! finished) {
+          file.delete();
+        }
+      }
+    }
+    commitExportEvent(event, TunesEvents.COLUMNAR, tracksExported, 
+        exporter.getBytesWritten());
+  }
+  
+  /**
+   Record the end of an export with Flight Recorder. 
+  
+   @param event  The event begun when the export started. 
+   @param format The format of the export. 
+   @param tracks The number of tracks exported. 
+   @param bytes  The number of bytes written, or zero if not known. 
+  */
+  private void commitExportEvent(
+      TunesEvents.ExportEvent event, 
+      String format, 
+      int tracks, 
+      long bytes) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.format = format;
+      event.libraries = getNumberOfLibraries();
+      event.artists = artists.size();
+      event.tracks = tracks;
+      event.bytes = bytes;
+      event.commit();
+    }
   }
   
   public DefaultMutableTreeNode getAnomalyRoot() {
@@ -224,54 +576,61 @@ public class TunesCollection {
   }
 
   /**
-   Create a new anomaly and add it to the tree. 
+   Remove everything from the anomaly tree. 
+  */
+  public void clearAnomalyTree() {
+    anomalyRoot.removeAllChildren();
+    anomalies.nodeStructureChanged(anomalyRoot);
+  }
   
-   @param libIndex    Identify the library with which the anomaly is associated. 
-   @param object      The tunes object with the anomaly.  
-   @param anomalyType Identifier for the type of anomaly. 
+  /**
+   Let the tree model know that the anomaly tree has been rebuilt. 
+  */
+  public void anomalyTreeChanged() {
+    anomalies.nodeStructureChanged(anomalyRoot);
+  }
+
+  /**
+   Pass the anomalies found for one artist to a sink, in the sequence 
+   in which they were found, and count them. 
   
-   @return The new node that was created. 
+   @param artist The artist analyzed. 
+   @param found  The anomalies found for the artist and its albums. 
+   @param sink   The sink to which the anomalies are to be passed. 
   */
-  public DefaultMutableTreeNode addAnomaly(
-      int libIndex, 
-      TunesObject object, 
-      AnomalyType anomalyType,
-      TunesAnalysis analysis) {
+  private void addAnomalies(
+      TunesArtist artist, 
+      List<TunesAnomaly> found, 
+      AnomalySink sink) {
     
-    DefaultMutableTreeNode anomalyNode = null;
-    if (anomalyType.isSelected()) {
-      // If the object is not already in the tree, then add it
-      if (object.getAnomalyNode() == null) {
-        object.addToAnomalyTree(analysis);
-      }
-      // Now let's create an anomaly object
-      TunesAnomaly anomaly = new TunesAnomaly(libIndex, object, anomalyType);
-      anomalyNode = addToTree(object.getAnomalyNode(), anomaly);
+    for (TunesAnomaly anomaly: found) {
+      sink.add(anomaly);
+      getAnomalyCounter(anomaly.getAnomalyType()).increment();
     }
-    anomalyCount++;
-    return anomalyNode;
+    artist.setAnomalyCount(found.size());
+    anomalyCount = anomalyCount + found.size();
   }
   
-  public DefaultMutableTreeNode addAnomaly(
-      int libIndex, 
-      TunesObject object, 
-      AnomalyType anomalyType,
-      int trackNumber,
-      TunesAnalysis analysis) {
-    
-    DefaultMutableTreeNode anomalyNode = null;
-    if (anomalyType.isSelected()) {
-      // If the object is not already in the tree, then add it
-      if (object.getAnomalyNode() == null) {
-        object.addToAnomalyTree(analysis);
-      }
-      // Now let's create an anomaly object
-      TunesAnomaly anomaly = new TunesAnomaly
-          (libIndex, object, anomalyType, trackNumber);
-      anomalyNode = addToTree(object.getAnomalyNode(), anomaly);
+  /**
+   Return the counter of anomalies of one type, registering it the first 
+   time it is needed. 
+  
+   @param anomalyType The type of anomaly. 
+  
+   @return The counter for that type. 
+  */
+  private static synchronized TunesMetrics.Counter getAnomalyCounter
+      (AnomalyType anomalyType) {
+    int id = anomalyType.getID().intValue();
+    if (id >= anomalyCounters.length) {
+      anomalyCounters = Arrays.copyOf(anomalyCounters, id + 1);
+    }
+    if (anomalyCounters[id] == null) {
+      anomalyCounters[id] = TunesMetrics.getShared().getCounter
+          ("anomalies." + String.valueOf(id), 
+          anomalyType.getMessage().trim());
     }
-    anomalyCount++;
-    return anomalyNode;
+    return anomalyCounters[id];
   }
   
   /**
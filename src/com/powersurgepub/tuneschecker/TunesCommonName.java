@@ -16,19 +16,48 @@
 
 package com.powersurgepub.tuneschecker;
 
+  import java.io.*;
   import java.util.*;
 
 /**
   A Sort Key stored as a lowest common denominator string, without punctuation 
   or spaces, without insignificant words, and in lower case. 
 
+  The key is built once, when the name is set, and then frozen as an 
+  immutable string along with its hash code, so that comparisons and 
+  equality checks need not allocate anything. 
+
+  The name is examined in a single pass, and each word is looked up in place, 
+  in a small dictionary indexed by word length and first letter, so that no 
+  substrings are created along the way. 
+
+  Keys are remembered in a shared cache, by raw name and type of name, so 
+  that a name seen on many tracks is only examined once. 
+
   @author Herb Bowie
  */
 public class TunesCommonName {
   
-  private static final Map <String, String> dict = new HashMap<String, String>();
+  /** Keys already computed, shared by all common names. */
+  private static final CommonNameCache cache = new CommonNameCache();
+  
+  /** The longest word in the dictionary. */
+  private static final int      MAX_WORD_LENGTH = 10;
   
-  private StringBuilder name = new StringBuilder();
+  /** Slots for each word length: one for each letter, and one for others. */
+  private static final int      FIRST_CHAR_SLOTS = 27;
+  
+  /** 
+   Dictionary words, indexed by length and first character, along with the 
+   type of each word, in the same positions. 
+  */
+  private static final String[][] dictWords 
+      = new String[(MAX_WORD_LENGTH + 1) * FIRST_CHAR_SLOTS][];
+  private static final String[][] dictTypes 
+      = new String[(MAX_WORD_LENGTH + 1) * FIRST_CHAR_SLOTS][];
+  
+  private             String  name = "";
+  private             int     hash = 0;
   private             int     nameType = 0;
   public static final int       GENERIC_NAME = 0;
   public static final int       ARTIST_NAME = 1;
@@ -48,58 +77,116 @@ public class TunesCommonName {
    Static Initialization Block. 
   */
   static {
-    dict.put("a", TRIVIAL);
-    dict.put("an", TRIVIAL);
+    addWord("a", TRIVIAL);
+    addWord("an", TRIVIAL);
     
-    dict.put("the", BAND_EXPECTED);
+    addWord("the", BAND_EXPECTED);
     
-    dict.put("and", AND);
-    dict.put("&", AND);
+    addWord("and", AND);
+    addWord("&", AND);
     
-    dict.put("variation", DIGIT_EXPECTED);
+    addWord("variation", DIGIT_EXPECTED);
     
-    dict.put("arcade", FIRST_NAME_OF_BAND);
-    dict.put("box", FIRST_NAME_OF_BAND);
-    dict.put("civil", FIRST_NAME_OF_BAND);
-    dict.put("electric", FIRST_NAME_OF_BAND);
-    dict.put("fairport", FIRST_NAME_OF_BAND);
-    dict.put("grateful", FIRST_NAME_OF_BAND);
-    dict.put("howlin", FIRST_NAME_OF_BAND);
-    dict.put("howling", FIRST_NAME_OF_BAND);
-    dict.put("lovin", FIRST_NAME_OF_BAND);
-    dict.put("muddy", FIRST_NAME_OF_BAND);
-    dict.put("rolling", FIRST_NAME_OF_BAND);
-    dict.put("royal", FIRST_NAME_OF_BAND);
-    dict.put("steps", FIRST_NAME_OF_BAND);
-    dict.put("trigger", FIRST_NAME_OF_BAND);
-    dict.put("trombone", FIRST_NAME_OF_BAND);
-    dict.put("unknown", FIRST_NAME_OF_BAND);
-    dict.put("various", FIRST_NAME_OF_BAND);
-    dict.put("velvet", FIRST_NAME_OF_BAND);
-    dict.put("we", FIRST_NAME_OF_BAND);
+    addWord("arcade", FIRST_NAME_OF_BAND);
+    addWord("box", FIRST_NAME_OF_BAND);
+    addWord("civil", FIRST_NAME_OF_BAND);
+    addWord("electric", FIRST_NAME_OF_BAND);
+    addWord("fairport", FIRST_NAME_OF_BAND);
+    addWord("grateful", FIRST_NAME_OF_BAND);
+    addWord("howlin", FIRST_NAME_OF_BAND);
+    addWord("howling", FIRST_NAME_OF_BAND);
+    addWord("lovin", FIRST_NAME_OF_BAND);
+    addWord("muddy", FIRST_NAME_OF_BAND);
+    addWord("rolling", FIRST_NAME_OF_BAND);
+    addWord("royal", FIRST_NAME_OF_BAND);
+    addWord("steps", FIRST_NAME_OF_BAND);
+    addWord("trigger", FIRST_NAME_OF_BAND);
+    addWord("trombone", FIRST_NAME_OF_BAND);
+    addWord("unknown", FIRST_NAME_OF_BAND);
+    addWord("various", FIRST_NAME_OF_BAND);
+    addWord("velvet", FIRST_NAME_OF_BAND);
+    addWord("we", FIRST_NAME_OF_BAND);
     
-    dict.put("airplane", SECOND_NAME_OF_BAND);
-    dict.put("boys", SECOND_NAME_OF_BAND);
-    dict.put("brothers", SECOND_NAME_OF_BAND);
-    dict.put("chicks", SECOND_NAME_OF_BAND);
-    dict.put("creek", SECOND_NAME_OF_BAND);
-    dict.put("gentlemen", SECOND_NAME_OF_BAND);
-    dict.put("heads", SECOND_NAME_OF_BAND);
-    dict.put("sessions", SECOND_NAME_OF_BAND);
-    dict.put("sisters", SECOND_NAME_OF_BAND);
+    addWord("airplane", SECOND_NAME_OF_BAND);
+    addWord("boys", SECOND_NAME_OF_BAND);
+    addWord("brothers", SECOND_NAME_OF_BAND);
+    addWord("chicks", SECOND_NAME_OF_BAND);
+    addWord("creek", SECOND_NAME_OF_BAND);
+    addWord("gentlemen", SECOND_NAME_OF_BAND);
+    addWord("heads", SECOND_NAME_OF_BAND);
+    addWord("sessions", SECOND_NAME_OF_BAND);
+    addWord("sisters", SECOND_NAME_OF_BAND);
     
-    dict.put("band", PERSON_BAND);
-    dict.put("experience", PERSON_BAND);
-    dict.put("group", PERSON_BAND);
-    dict.put("orchestra", PERSON_BAND);
-    dict.put("quartet", PERSON_BAND);
-    dict.put("quintet", PERSON_BAND);
-    dict.put("revue", PERSON_BAND);
+    addWord("band", PERSON_BAND);
+    addWord("experience", PERSON_BAND);
+    addWord("group", PERSON_BAND);
+    addWord("orchestra", PERSON_BAND);
+    addWord("quartet", PERSON_BAND);
+    addWord("quintet", PERSON_BAND);
+    addWord("revue", PERSON_BAND);
     
-    dict.put("van", TWO_WORD_LAST_NAME);
+    addWord("van", TWO_WORD_LAST_NAME);
     
-    dict.put("jr", JUNIOR);
-    dict.put("iii", JUNIOR);
+    addWord("jr", JUNIOR);
+    addWord("iii", JUNIOR);
+  }
+  
+  /**
+   Add a word to the dictionary. 
+  
+   @param word The word, in lower case. 
+   @param type The type of word. 
+  */
+  private static void addWord(String word, String type) {
+    int slot = dictSlot(word.length(), word.charAt(0));
+    String[] words = dictWords[slot];
+    String[] types = dictTypes[slot];
+    if (words == null) {
+      words = new String[1];
+      types = new String[1];
+    } else {
+      words = Arrays.copyOf(words, words.length + 1);
+      types = Arrays.copyOf(types, types.length + 1);
+    }
+    words[words.length - 1] = word;
+    types[types.length - 1] = type;
+    dictWords[slot] = words;
+    dictTypes[slot] = types;
+  }
+  
+  private static int dictSlot(int length, char first) {
+    int firstSlot = FIRST_CHAR_SLOTS - 1;
+    if (first >= 'a' && first <= 'z') {
+      firstSlot = first - 'a';
+    }
+    return (length * FIRST_CHAR_SLOTS) + firstSlot;
+  }
+  
+  /**
+   Look up a word in the dictionary, without copying it out of the string 
+   in which it was found. 
+  
+   @param work  The string containing the word. 
+   @param start The index of the first character of the word. 
+   @param end   The index just past the last character of the word. 
+  
+   @return The type of the word, or null if it is not in the dictionary. 
+  */
+  private static String lookup(String work, int start, int end) {
+    int length = end - start;
+    if (length <= 0 || length > MAX_WORD_LENGTH) {
+      return null;
+    }
+    int slot = dictSlot(length, work.charAt(start));
+    String[] words = dictWords[slot];
+    if (words != null) {
+      for (int w = 0; w < words.length; w++) {
+        if (work.regionMatches(start, words[w], 0, length)) {
+          return dictTypes[slot][w];
+        }
+      }
+    }
+    return null;
   }
   
   /**
@@ -125,10 +212,16 @@ public class TunesCommonName {
   
   public void setName(String in, int nameType) {
     this.nameType = nameType;
-    name = new StringBuilder();
+    
+    String cached = cache.get(in, nameType);
+    if (cached != null) {
+      freeze(cached);
+      return;
+    }
     
     // Convert everything to lower case
     String work = in.toLowerCase();
+    StringBuilder name = new StringBuilder(work.length());
     
     // Go through the input name, examining one word at a time
     int i = 0;
@@ -141,10 +234,11 @@ public class TunesCommonName {
     int wordsInName = 2;
     boolean skipRemaining = false;
     int commaCount = 0;
-    while (i < work.length()) {
+    int workLength = work.length();
+    while (i < workLength) {
       
       // Skip past any white space or punctuation symbols
-      while (i < work.length()
+      while (i < workLength
           && (! isWordCharacter(work.charAt(i)))) {
         if (work.charAt(i) == '#') {
           trailingDigitOK = true;
@@ -154,17 +248,17 @@ public class TunesCommonName {
       
       // Now look for end of next word
       int wordStart = i;
-      while (i < work.length() 
+      while (i < workLength 
           && (isWordCharacter(work.charAt(i)))) {
         i++;
       } // end while looking for end of word
-      String word = work.substring(wordStart, i);
-      if (i < work.length() && work.charAt(i) == ',') {
+      int wordLength = i - wordStart;
+      if (i < workLength && work.charAt(i) == ',') {
         commaCount++;
       }
       
       // Now process next word
-      String wordType = dict.get(word);
+      String wordType = lookup(work, wordStart, i);
       if (wordType == null) {
         wordType = " ";
       }
@@ -204,9 +298,9 @@ public class TunesCommonName {
       else
       if (nameType == TRACK_NAME
           && (! trailingDigitOK)
-          && i >= work.length()
-          && word.length() == 1
-          && Character.isDigit(word.charAt(0))) {
+          && i >= workLength
+          && wordLength == 1
+          && Character.isDigit(work.charAt(wordStart))) {
         // Skip a single digit at end of a track name
       } 
       else
@@ -221,7 +315,7 @@ public class TunesCommonName {
           wordsInName++;
           juniorStart = name.length();
         } 
-        name.append(word);
+        name.append(work, wordStart, i);
         wordCount++;
         if (nameType == ARTIST_NAME) {
           if (wordCount == 1
@@ -274,8 +368,45 @@ public class TunesCommonName {
       name.insert(0, lastName);
     }
     
+    freeze(cache.put(in, nameType, name.toString()));
+    
   } // end method setName
   
+  /**
+   Keep the finished key, along with its hash code. 
+  */
+  private void freeze(String key) {
+    name = key;
+    hash = key.hashCode();
+  }
+  
+  /**
+   Write the common name to a snapshot, exactly as computed. 
+  */
+  void writeSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    snapshot.writeInt(nameType);
+    snapshot.writeString(name);
+  }
+  
+  /**
+   Read the common name from a snapshot, without computing it again. 
+  */
+  void readSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    nameType = snapshot.readInt();
+    freeze(snapshot.readString());
+  }
+  
+  /**
+   Return the cache of keys shared by all common names. 
+  
+   @return The shared cache, from which its hit rate may be obtained. 
+  */
+  public static CommonNameCache getCache() {
+    return cache;
+  }
+  
   public static boolean isWordCharacter(char c) {
     return (c == '&'
         || Character.isLetter(c)
@@ -287,15 +418,45 @@ public class TunesCommonName {
   }
   
   public int compareTo(TunesCommonName name2) {
-    return (getName().compareTo(name2.getName()));
+    if (name == name2.name) {
+      return 0;
+    }
+    return (name.compareTo(name2.name));
+  }
+  
+  /**
+   Two common names are equal if their keys are the same, regardless of 
+   the type of name. 
+  */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    else
+    if (obj instanceof TunesCommonName) {
+      TunesCommonName name2 = (TunesCommonName)obj;
+      return (hash == name2.hash && name.equals(name2.name));
+    } else {
+      return false;
+    }
   }
   
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+  
+  /**
+   Return the key, as frozen when the name was set. The same String is 
+   returned every time, so it may be used as a map key without copying. 
+  */
   public String getName() {
-    return name.toString();
+    return name;
   }
   
   public String toString() {
-    return name.toString();
+    return name;
   }
 
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import jdk.jfr.*;
+
+/**
+ Java Flight Recorder events marking each long-running phase of the work: 
+ parsing a library file, scanning a Media Music folder, analyzing the 
+ collection and exporting it. Each event records when the phase started 
+ and ended, along with what was done, so that garbage collection pauses 
+ and I/O stalls seen in a recording can be matched to the phase in which 
+ they occurred. 
+
+ @author Herb Bowie
+ */
+public class TunesEvents {
+  
+  public static final String      CATEGORY          = "TunesChecker";
+  
+  public static final String      OPML              = "OPML";
+  public static final String      TAB_DELIMITED     = "Tab-Delimited";
+  public static final String      COLUMNAR          = "Columnar";
+  
+  private TunesEvents() {
+    
+  }
+  
+  @Name("com.powersurgepub.tuneschecker.Parse")
+  @Label("Parse Library")
+  @Description("Loading of an iTunes Library XML file")
+  @Category(CATEGORY)
+  static class ParseEvent 
+      extends Event {
+    
+    @Label("Library Index")
+    int         libIndex;
+    
+    @Label("Library File")
+    String      libraryFile;
+    
+    @Label("Streaming")
+    @Description("True for the streaming parser, false for SAX")
+    boolean     streaming;
+    
+    @Label("Tracks")
+    int         tracks;
+    
+    @Label("Bytes Read")
+    @DataAmount
+    long        bytes;
+    
+  } // end class ParseEvent
+  
+  @Name("com.powersurgepub.tuneschecker.Scan")
+  @Label("Scan Music Folder")
+  @Description("Scan or rescan of a Media Music folder")
+  @Category(CATEGORY)
+  static class ScanEvent 
+      extends Event {
+    
+    @Label("Library Index")
+    int         libIndex;
+    
+    @Label("Music Folder")
+    String      musicFolder;
+    
+    @Label("Rescan")
+    boolean     rescan;
+    
+    @Label("Tracks")
+    int         tracks;
+    
+    @Label("Folders Listed")
+    int         folders;
+    
+  } // end class ScanEvent
+  
+  @Name("com.powersurgepub.tuneschecker.Analyze")
+  @Label("Analyze Collection")
+  @Description("Search of the collection for anomalies")
+  @Category(CATEGORY)
+  static class AnalyzeEvent 
+      extends Event {
+    
+    @Label("Libraries")
+    int         libraries;
+    
+    @Label("Artists")
+    int         artists;
+    
+    @Label("Anomalies")
+    int         anomalies;
+    
+    @Label("Parallelism")
+    int         parallelism;
+    
+    @Label("Cancelled")
+    boolean     cancelled;
+    
+  } // end class AnalyzeEvent
+  
+  @Name("com.powersurgepub.tuneschecker.Export")
+  @Label("Export Collection")
+  @Description("Export of the collection to a file")
+  @Category(CATEGORY)
+  static class ExportEvent 
+      extends Event {
+    
+    @Label("Format")
+    String      format;
+    
+    @Label("Libraries")
+    int         libraries;
+    
+    @Label("Artists")
+    int         artists;
+    
+    @Label("Tracks")
+    int         tracks;
+    
+    @Label("Bytes Written")
+    @DataAmount
+    long        bytes;
+    
+  } // end class ExportEvent
+  
+}
@@ -16,7 +16,6 @@
 package com.powersurgepub.tuneschecker;
 
   import java.io.*;
-  import java.net.*;
   import javax.swing.tree.*;
 
 /**
@@ -27,6 +26,11 @@ public class TunesFile
   implements Comparable<TunesFile>,
              TunesObject {
   
+  public static final String      KIND              = "Kind";
+  public static final String      LOCATION          = "Location";
+  public static final String      SIZE              = "Size";
+  public static final String      BIT_RATE          = "Bit Rate";
+  
   private     TunesTrack          tunesTrack = null;
   
   private     TunesSources        sources = new TunesSources();
@@ -34,6 +38,7 @@ public class TunesFile
   private     File                location = null;
   private     String              kind = "";
   private     long                size = 0;
+  private     long                lastModified = 0;
   private     int                 bitRate = 0;
   private     int                 sampleRate = 0;
   
@@ -100,7 +105,13 @@ public class TunesFile
       setBitRate(file2.getBitRate());
     }
     if (file2.getSampleRate() > 0) {
-      setSize(file2.getSampleRate());
+      setSampleRate(file2.getSampleRate());
+    }
+    if (file2.getLastModified() > 0) {
+      setLastModified(file2.getLastModified());
+    }
+    if (file2.fileExists()) {
+      setFileExists();
     }
     sources.merge(file2.getSources());
   }
@@ -113,19 +124,13 @@ public class TunesFile
     return kind;
   }
   
+  /**
+   Set the location from a URL, as found in a library, or from a path. 
+  
+   @param inString The URL or path of the file. 
+  */
   public void setLocation(String inString) {
-    File workLocation = null;
-    try {
-      URL locationURL = new URL(inString);
-      URI locationURI = locationURL.toURI();
-      workLocation = new File(locationURI.getSchemeSpecificPart());
-    } catch (MalformedURLException e) {
-      workLocation = new File(inString);
-    }
-    catch (URISyntaxException e) {
-      workLocation = new File(inString);
-    }
-    setLocation(workLocation);
+    setLocation(FileURLDecoder.toFile(inString));
   }
   
   public void setLocation(File location) {
@@ -148,6 +153,19 @@ public class TunesFile
     return size;
   }
   
+  /**
+   Set the time the file was last modified on disk. 
+  
+   @param lastModified The last modified time, in milliseconds since the epoch. 
+  */
+  public void setLastModified(long lastModified) {
+    this.lastModified = lastModified;
+  }
+  
+  public long getLastModified() {
+    return lastModified;
+  }
+  
   public void setBitRate(int bitRate) {
     this.bitRate = bitRate;
   }
@@ -180,6 +198,66 @@ public class TunesFile
     return fileExists;
   }
   
+  /**
+   Export this file as one row of a columnar file, along with the artist, 
+   album and track fields already set. 
+  
+   @param exporter The columnar exporter. 
+  */
+  public void exportToColumnar(ColumnarExporter exporter) 
+      throws IOException {
+    exporter.setField(ColumnarExporter.KIND, kind);
+    if (location == null) {
+      exporter.setField(ColumnarExporter.LOCATION, "");
+    } else {
+      exporter.setField(ColumnarExporter.LOCATION, location.getPath());
+    }
+    exporter.setField(ColumnarExporter.SIZE, size);
+    exporter.setField(ColumnarExporter.BIT_RATE, bitRate);
+    exporter.endRow();
+  }
+  
+  /**
+   Write this file to a snapshot. 
+  
+   @param snapshot The snapshot being written. 
+  */
+  void writeSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    if (location == null) {
+      snapshot.writeString("");
+    } else {
+      snapshot.writeString(location.getPath());
+    }
+    snapshot.writeString(kind);
+    snapshot.writeLong(size);
+    snapshot.writeLong(lastModified);
+    snapshot.writeInt(bitRate);
+    snapshot.writeInt(sampleRate);
+    snapshot.writeBoolean(fileExists);
+    sources.writeSnapshot(snapshot);
+  }
+  
+  /**
+   Read this file from a snapshot. 
+  
+   @param snapshot The snapshot being read. 
+  */
+  void readSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    String path = snapshot.readString();
+    if (path.length() > 0) {
+      location = new File(path);
+    }
+    kind = snapshot.readString();
+    size = snapshot.readLong();
+    lastModified = snapshot.readLong();
+    bitRate = snapshot.readInt();
+    sampleRate = snapshot.readInt();
+    fileExists = snapshot.readBoolean();
+    sources.readSnapshot(snapshot);
+  }
+  
   public void display() {
     System.out.println("        " + location);
   }
@@ -218,6 +296,13 @@ public class TunesFile
   public DefaultMutableTreeNode getAnomalyNode() {
     return anomalyNode;
   }
+  
+  /**
+   Forget the results of any earlier analysis of this file. 
+  */
+  public void clearAnomalies() {
+    anomalyNode = null;
+  }
     
 
 }
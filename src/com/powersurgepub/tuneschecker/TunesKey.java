@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+/**
+ The keys found in an iTunes Library XML file that are of interest to us.
+ Each key is resolved once, when the key element is read, so that the value
+ that follows can be dispatched with a simple switch. Keys are matched
+ without regard to case.
+
+ @author Herb Bowie
+ */
+public enum TunesKey {
+
+  MUSIC_FOLDER    ("Music Folder"),
+  TRACKS          ("Tracks"),
+  PLAYLISTS       ("Playlists"),
+
+  NAME            ("Name"),
+  SORT_NAME       ("Sort Name"),
+  ARTIST          ("Artist"),
+  SORT_ARTIST     ("Sort Artist"),
+  ALBUM_ARTIST    ("Album Artist"),
+  COMPOSER        ("Composer"),
+  ALBUM           ("Album"),
+  SORT_ALBUM      ("Sort Album"),
+  GENRE           ("Genre"),
+  KIND            ("Kind"),
+  LOCATION        ("Location"),
+  TRACK_TYPE      ("Track Type"),
+
+  SIZE            ("Size"),
+  TOTAL_TIME      ("Total Time"),
+  DISC_NUMBER     ("Disc Number"),
+  DISC_COUNT      ("Disc Count"),
+  TRACK_NUMBER    ("Track Number"),
+  TRACK_COUNT     ("Track Count"),
+  YEAR            ("Year"),
+  RATING          ("Rating"),
+  BIT_RATE        ("Bit Rate"),
+  SAMPLE_RATE     ("Sample Rate"),
+
+  PODCAST         ("Podcast"),
+  AUDIOBOOKS      ("Audiobooks"),
+  MOVIE           ("Movie"),
+  HAS_VIDEO       ("Has Video"),
+  COMPILATION     ("Compilation"),
+
+  /** Any other key starting with "Playlist" (matched with case). */
+  PLAYLIST        ("Playlist"),
+
+  /** Any key not listed above. */
+  OTHER           ("");
+
+  /** Size of the hash table: a power of two, at least twice the keys. */
+  private static final int    TABLE_SIZE = 128;
+
+  private static final TunesKey[] table = new TunesKey[TABLE_SIZE];
+
+  /**
+   Static Initialization Block.
+  */
+  static {
+    for (TunesKey nextKey: values()) {
+      if (nextKey != PLAYLIST && nextKey != OTHER) {
+        int slot = hash(nextKey.key) & (TABLE_SIZE - 1);
+        while (table[slot] != null) {
+          slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        table[slot] = nextKey;
+      }
+    }
+  }
+
+  private final String key;
+
+  private TunesKey(String key) {
+    this.key = key;
+  }
+
+  /**
+   Return the key as it appears in the library file.
+
+   @return The text of the key.
+  */
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   Resolve the text of a key element, without creating any new objects.
+
+   @param chars The text of the key element.
+
+   @return The matching key, PLAYLIST for any other key beginning with
+           "Playlist", or OTHER if the key is not of interest.
+  */
+  public static TunesKey lookup(CharSequence chars) {
+    int slot = hash(chars) & (TABLE_SIZE - 1);
+    while (table[slot] != null) {
+      if (matches(table[slot].key, chars)) {
+        return table[slot];
+      }
+      slot = (slot + 1) & (TABLE_SIZE - 1);
+    }
+    if (startsWith(chars, PLAYLIST.key)) {
+      return PLAYLIST;
+    } else {
+      return OTHER;
+    }
+  }
+
+  /**
+   Compute a cheap hash code that ignores case, using only the length and 
+   the first, middle and last characters. Collisions are resolved by 
+   comparing the full text. 
+  */
+  private static int hash(CharSequence chars) {
+    int length = chars.length();
+    if (length == 0) {
+      return 0;
+    }
+    int h = length;
+    h = (31 * h) + fold(chars.charAt(0));
+    h = (31 * h) + fold(chars.charAt(length / 2));
+    h = (31 * h) + fold(chars.charAt(length - 1));
+    return h ^ (h >>> 7);
+  }
+  
+  /**
+   Compare a key to some text, ignoring case, as String.equalsIgnoreCase does.
+  */
+  private static boolean matches(String key, CharSequence chars) {
+    if (key.length() != chars.length()) {
+      return false;
+    }
+    for (int i = 0; i < key.length(); i++) {
+      if (fold(key.charAt(i)) != fold(chars.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   Does the text start with the given prefix (matching case)?
+  */
+  private static boolean startsWith(CharSequence chars, String prefix) {
+    if (chars.length() < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (chars.charAt(i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   Fold a character to a single case, with a quick path for ASCII.
+  */
+  private static char fold(char c) {
+    if (c < 128) {
+      if (c >= 'A' && c <= 'Z') {
+        return (char)(c + ('a' - 'A'));
+      } else {
+        return c;
+      }
+    } else {
+      return Character.toLowerCase(Character.toUpperCase(c));
+    }
+  }
+
+}
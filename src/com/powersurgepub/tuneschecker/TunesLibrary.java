@@ -38,6 +38,8 @@ public class TunesLibrary {
   
   private int[][] count = { {0}, {0} };
   
+  private ScanStateIndex scanState = new ScanStateIndex();
+  
   public TunesLibrary() {
     
   }
@@ -58,7 +60,7 @@ public class TunesLibrary {
       URI folderURI = folderURL.toURI();
       workFolder = new File(folderURI.getSchemeSpecificPart());
       StringBuilder work = new StringBuilder(workFolder.toString());
-      if (work.substring(0, LOCALHOST.length()).equalsIgnoreCase(LOCALHOST)) {
+      if (work.toString().regionMatches(true, 0, LOCALHOST, 0, LOCALHOST.length())) {
         work.delete(0, LOCALHOST.length());
         workFolder = new File(work.toString());
       }
@@ -85,6 +87,19 @@ public class TunesLibrary {
     return musicFolder;
   }
   
+  /**
+   Return what was found the last time the music folder was scanned. 
+  
+   @return The scan state index for this library's music folder. 
+  */
+  public ScanStateIndex getScanState() {
+    return scanState;
+  }
+  
+  public void setScanState(ScanStateIndex scanState) {
+    this.scanState = scanState;
+  }
+  
   public void setCount(int libOrMedia, int objectType, int count) {
     this.count[libOrMedia][objectType] = count;
   }
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.nio.charset.*;
+  import java.util.*;
+  import java.util.concurrent.atomic.*;
+  import jdk.jfr.*;
+
+/**
+ A registry of named timers and counters, measuring each phase of the 
+ work: loading, scanning, storing and analysis. Each is registered once, 
+ usually when a class is loaded, and then updated cheaply, from any thread, 
+ without locking. 
+
+ The values may be written out as a JSON report at any time, and are 
+ also reported to Java Flight Recorder, as a TunesChecker Metric event 
+ for each timer and counter, once a second while a recording is running. 
+
+ @author Herb Bowie
+ */
+public class TunesMetrics {
+  
+  private static TunesMetrics     shared = null;
+  
+  private     TreeMap<String, Counter> counters 
+      = new TreeMap<String, Counter>();
+  private     TreeMap<String, Timer> timers 
+      = new TreeMap<String, Timer>();
+  
+  private TunesMetrics() {
+    FlightRecorder.addPeriodicEvent(MetricEvent.class, new Runnable() {
+      @Override
+      public void run() {
+        emitEvents();
+      }
+    });
+  }
+  
+  /**
+   Get the shared instance of this class, in which all the metrics are 
+   registered. 
+  
+   @return The single shared instance of this class. 
+  */
+  public static synchronized TunesMetrics getShared() {
+    if (shared == null) {
+      shared = new TunesMetrics();
+    }
+    return shared;
+  }
+  
+  /**
+   Return the counter with the given name, registering a new one if no 
+   counter of that name has been registered already. 
+  
+   @param name        The name of the counter, such as "parse.bytes". 
+   @param description What is being counted. 
+  
+   @return The counter. 
+  */
+  public synchronized Counter getCounter(String name, String description) {
+    Counter counter = counters.get(name);
+    if (counter == null) {
+      counter = new Counter(name, description);
+      counters.put(name, counter);
+    }
+    return counter;
+  }
+  
+  /**
+   Return the timer with the given name, registering a new one if no 
+   timer of that name has been registered already. 
+  
+   @param name        The name of the timer, such as "parse". 
+   @param description What is being timed. 
+  
+   @return The timer. 
+  */
+  public synchronized Timer getTimer(String name, String description) {
+    Timer timer = timers.get(name);
+    if (timer == null) {
+      timer = new Timer(name, description);
+      timers.put(name, timer);
+    }
+    return timer;
+  }
+  
+  /**
+   Set all the timers and counters back to zero. 
+  */
+  public synchronized void reset() {
+    for (Counter counter: counters.values()) {
+      counter.reset();
+    }
+    for (Timer timer: timers.values()) {
+      timer.reset();
+    }
+  }
+  
+  /**
+   Write a JSON report of all the timers and counters to a file. 
+  
+   @param file The file to be written. 
+  */
+  public void writeJSON(File file) 
+      throws IOException {
+    Writer out = new BufferedWriter(new OutputStreamWriter(
+        new FileOutputStream(file), StandardCharsets.UTF_8));
+    try {
+      writeJSON(out);
+    } finally {
+      out.close();
+    }
+  }
+  
+  /**
+   Write a JSON report of all the timers and counters, with times in 
+   milliseconds. 
+  
+   @param out The writer to which the report is to be written. 
+  */
+  public synchronized void writeJSON(Writer out) 
+      throws IOException {
+    out.write("{\n  \"timers\": {");
+    String separator = "\n";
+    for (Timer timer: timers.values()) {
+      out.write(separator);
+      out.write("    ");
+      writeJSONString(out, timer.getName());
+      out.write(": {\"count\": ");
+      out.write(String.valueOf(timer.getCount()));
+      out.write(", \"totalMillis\": ");
+      out.write(toMillis(timer.getTotalNanos()));
+      out.write(", \"maxMillis\": ");
+      out.write(toMillis(timer.getMaxNanos()));
+      out.write(", \"description\": ");
+      writeJSONString(out, timer.getDescription());
+      out.write("}");
+      separator = ",\n";
+    }
+    out.write("\n  },\n  \"counters\": {");
+    separator = "\n";
+    for (Counter counter: counters.values()) {
+      out.write(separator);
+      out.write("    ");
+      writeJSONString(out, counter.getName());
+      out.write(": {\"value\": ");
+      out.write(String.valueOf(counter.get()));
+      out.write(", \"description\": ");
+      writeJSONString(out, counter.getDescription());
+      out.write("}");
+      separator = ",\n";
+    }
+    out.write("\n  }\n}\n");
+  }
+  
+  /**
+   Return a JSON report of all the timers and counters. 
+  
+   @return The report, as a string. 
+  */
+  public String toJSON() {
+    StringWriter out = new StringWriter();
+    try {
+      writeJSON(out);
+    } catch (IOException e) {
+      // Not possible with a StringWriter
+    }
+    return out.toString();
+  }
+  
+  private static String toMillis(long nanos) {
+    long micros = nanos / 1000;
+    StringBuilder millis = new StringBuilder();
+    millis.append(micros / 1000);
+    millis.append('.');
+    long fraction = micros % 1000;
+    if (fraction < 100) {
+      millis.append('0');
+    }
+    if (fraction < 10) {
+      millis.append('0');
+    }
+    millis.append(fraction);
+    return millis.toString();
+  }
+  
+  private static void writeJSONString(Writer out, String str) 
+      throws IOException {
+    out.write('"');
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.write('\\');
+        out.write(c);
+      }
+      else
+      if (c < ' ') {
+        out.write(String.format("\\u%04x", (int)c));
+      } else {
+        out.write(c);
+      }
+    }
+    out.write('"');
+  }
+  
+  /**
+   Emit a Flight Recorder event for each timer and counter. 
+  */
+  private synchronized void emitEvents() {
+    for (Timer timer: timers.values()) {
+      MetricEvent event = new MetricEvent();
+      event.metric = timer.getName();
+      event.count = timer.getCount();
+      event.totalTime = timer.getTotalNanos();
+      event.maxTime = timer.getMaxNanos();
+      event.commit();
+    }
+    for (Counter counter: counters.values()) {
+      MetricEvent event = new MetricEvent();
+      event.metric = counter.getName();
+      event.count = counter.get();
+      event.commit();
+    }
+  }
+  
+  /**
+   A count of something done, such as bytes read or tracks stored. 
+  */
+  public static class Counter {
+    
+    private     String              name;
+    private     String              description;
+    private     AtomicLong          value = new AtomicLong();
+    
+    private Counter(String name, String description) {
+      this.name = name;
+      this.description = description;
+    }
+    
+    public String getName() {
+      return name;
+    }
+    
+    public String getDescription() {
+      return description;
+    }
+    
+    public void increment() {
+      value.incrementAndGet();
+    }
+    
+    public void add(long amount) {
+      value.addAndGet(amount);
+    }
+    
+    public long get() {
+      return value.get();
+    }
+    
+    public void reset() {
+      value.set(0);
+    }
+    
+  } // end class Counter
+  
+  /**
+   The number of times something was done, and the total and longest 
+   times it took. 
+  */
+  public static class Timer {
+    
+    private     String              name;
+    private     String              description;
+    private     AtomicLong          count = new AtomicLong();
+    private     AtomicLong          totalNanos = new AtomicLong();
+    private     AtomicLong          maxNanos = new AtomicLong();
+    
+    private Timer(String name, String description) {
+      this.name = name;
+      this.description = description;
+    }
+    
+    public String getName() {
+      return name;
+    }
+    
+    public String getDescription() {
+      return description;
+    }
+    
+    /**
+     Start timing. 
+    
+     @return The starting time, to be passed to stop. 
+    */
+    public long start() {
+      return System.nanoTime();
+    }
+    
+    /**
+     Stop timing, and add the time taken since the passed start time. 
+    
+     @param start The value returned by the matching call to start. 
+    
+     @return The time taken, in nanoseconds. 
+    */
+    public long stop(long start) {
+      long nanos = System.nanoTime() - start;
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      long max = maxNanos.get();
+      while (nanos > max 
+          && (! maxNanos.compareAndSet(max, nanos))) {
+        max = maxNanos.get();
+      }
+      return nanos;
+    }
+    
+    public long getCount() {
+      return count.get();
+    }
+    
+    public long getTotalNanos() {
+      return totalNanos.get();
+    }
+    
+    public long getMaxNanos() {
+      return maxNanos.get();
+    }
+    
+    public void reset() {
+      count.set(0);
+      totalNanos.set(0);
+      maxNanos.set(0);
+    }
+    
+  } // end class Timer
+  
+  /**
+   The current value of one timer or counter, reported periodically to 
+   Java Flight Recorder. 
+  */
+  @Name("com.powersurgepub.tuneschecker.Metric")
+  @Label("TunesChecker Metric")
+  @Category("TunesChecker")
+  @Period("1 s")
+  @StackTrace(false)
+  static class MetricEvent 
+      extends jdk.jfr.Event {
+    
+    @Label("Metric")
+    String      metric;
+    
+    @Label("Count")
+    long        count;
+    
+    @Label("Total Time")
+    @Timespan
+    long        totalTime;
+    
+    @Label("Longest Time")
+    @Timespan
+    long        maxTime;
+    
+  } // end class MetricEvent
+  
+}
@@ -18,6 +18,8 @@ package com.powersurgepub.tuneschecker;
 
   import com.powersurgepub.psutils.*;
   import java.io.*;
+  import java.nio.file.*;
+  import java.nio.file.attribute.*;
   import java.util.*;
   import org.xml.sax.*;
   import org.xml.sax.helpers.*;
@@ -62,13 +64,20 @@ public class TunesParser
   private     ArrayList           chars;
   
   private     File                mediaMusicFolder = null;
-  private     File                artistFolder = null;
+  
+  /** Number of threads to use when scanning a Media Music folder. */
+  private     int                 scanParallelism 
+      = Runtime.getRuntime().availableProcessors();
   
   /** Log used to record events. */
   private     Logger              log = Logger.getShared();
+  
+  /** Progress made, and whether the work has been cancelled. */
+  private     TunesProgress       progress = new TunesProgress();
 
   
-  private     String              key = "";
+  /** The most recent key, resolved to one of the keys we care about. */
+  private     TunesKey            key = TunesKey.OTHER;
   private     TunesCollection     tunes = new TunesCollection();
   private     TunesArtist         artist = new TunesArtist();
   private     TunesAlbum          album = new TunesAlbum();
@@ -85,6 +94,46 @@ public class TunesParser
   
   private     int                 tracksLoaded = 0;
   
+  /** The number of folders listed by the last scan of a music folder. */
+  private     int                 foldersScanned = 0;
+  
+  /** The common names of the artists changed by the last scan. */
+  private     TreeSet<String>     artistsChanged = new TreeSet<String>();
+  
+  /** The number of dict elements started while parsing a library file. */
+  private     int                 dictsProcessed = 0;
+  
+  /** When parsing of the current library file began. */
+  private     long                parseStart = 0;
+  
+  /** The number of bytes read from the current library file. */
+  private     long                bytesRead = 0;
+  
+  /** The Flight Recorder event for the parsing of the current library file. */
+  private     TunesEvents.ParseEvent parseEvent = null;
+  
+  private static final TunesMetrics.Timer parseTimer 
+      = TunesMetrics.getShared().getTimer
+        ("parse", "Parsing of library files");
+  private static final TunesMetrics.Timer scanTimer 
+      = TunesMetrics.getShared().getTimer
+        ("scan", "Full scans of Media Music folders");
+  private static final TunesMetrics.Timer rescanTimer 
+      = TunesMetrics.getShared().getTimer
+        ("rescan", "Rescans of Media Music folders");
+  private static final TunesMetrics.Counter dictsCounter 
+      = TunesMetrics.getShared().getCounter
+        ("parse.dicts", "Dict elements processed in library files");
+  private static final TunesMetrics.Counter tracksParsedCounter 
+      = TunesMetrics.getShared().getCounter
+        ("parse.tracks", "Music tracks loaded from library files");
+  private static final TunesMetrics.Counter foldersCounter 
+      = TunesMetrics.getShared().getCounter
+        ("scan.folders", "Artist and album folders listed");
+  private static final TunesMetrics.Counter tracksFoundCounter 
+      = TunesMetrics.getShared().getCounter
+        ("scan.tracks", "Track files found by full scans");
+  
   /**
    Create a new instance of TunesParser.
   */
@@ -124,6 +173,20 @@ public class TunesParser
   public void setLog (Logger log) {
     this.log = log;
   }
+  
+  /**
+   Report progress to the passed object, and stop parsing or scanning 
+   early if it is cancelled. 
+  
+   @param progress The object to which progress is to be reported. 
+  */
+  public void setProgress(TunesProgress progress) {
+    this.progress = progress;
+  }
+  
+  public TunesProgress getProgress() {
+    return progress;
+  }
 
   /**
      Opens the XML file for subsequent input.
@@ -146,13 +209,8 @@ public class TunesParser
   public int parse (TunesCollection tunes,
       int libIndex,
       String xmlSourceAsString) {
-    this.tunes = tunes;
-    this.libIndex = libIndex;
-    this.xmlSourceAsString = xmlSourceAsString;
-    musicFolder = "";
+    startLibrary(tunes, libIndex, xmlSourceAsString);
     boolean ok = true;
-    
-    tracksLoaded = 0;
 
     try {
       parser = XMLReaderFactory.createXMLReader();
@@ -172,13 +230,80 @@ public class TunesParser
     }
     if (ok) {
       parser.setContentHandler (this);
-      xmlSourceAsFile = new File (xmlSourceAsString);
-      if (! xmlSourceAsFile.exists()) {
-        ok = false;
-        log.recordEvent (LogEvent.MEDIUM, 
-            "XML File or Directory " + xmlSourceAsString + " cannot be found",
-            false);
+      ok = xmlSourceOK();
+    }
+    if (ok) {
+      if (xmlSourceAsFile.isFile()) {
+        parseXMLFile (xmlSourceAsFile);
       }
+    } // end if everything still OK
+    
+    return endLibrary();
+  }  
+  
+  /**
+   Parse an iTunes Library file stored in XML, using a streaming pull 
+   parser rather than SAX. The resulting collection is the same as the one
+   built by parse, but the Playlists section is skipped without being 
+   examined, and no per-element buffers are allocated. 
+  
+   @param tunes The TunesCollection in which the parsed information will be stored.
+   @param libIndex
+   @param xmlSourceAsString The path to the file to be scanned. 
+  
+   @return The number of tracks loaded. 
+  */
+  public int parseStream (TunesCollection tunes,
+      int libIndex,
+      String xmlSourceAsString) {
+    startLibrary(tunes, libIndex, xmlSourceAsString);
+    parseEvent.streaming = true;
+    if (xmlSourceOK()
+        && xmlSourceAsFile.isFile()) {
+      dataParent = xmlSourceAsFile.getParent();
+      TunesStreamParser streamParser = new TunesStreamParser(this);
+      streamParser.setLog(log);
+      streamParser.parse(xmlSourceAsFile);
+      bytesRead = streamParser.getBytesRead();
+    }
+    return endLibrary();
+  }
+  
+  /**
+   Prepare to load a library into the collection. 
+  
+   @param tunes The TunesCollection in which the parsed information will be stored.
+   @param libIndex The index of the library being loaded. 
+   @param xmlSourceAsString The path to the file to be parsed. 
+  */
+  private void startLibrary (TunesCollection tunes,
+      int libIndex,
+      String xmlSourceAsString) {
+    this.tunes = tunes;
+    this.libIndex = libIndex;
+    this.xmlSourceAsString = xmlSourceAsString;
+    musicFolder = "";
+    tracksLoaded = 0;
+    dictsProcessed = 0;
+    bytesRead = 0;
+    parseEvent = new TunesEvents.ParseEvent();
+    parseEvent.begin();
+    parseStart = parseTimer.start();
+  }
+  
+  /**
+   Make sure the XML source exists and can be read, logging any problems. 
+  
+   @return True if the source looks good, false otherwise. 
+  */
+  private boolean xmlSourceOK() {
+    boolean ok = true;
+    xmlSourceAsFile = new File (xmlSourceAsString);
+    if (! xmlSourceAsFile.exists()) {
+      ok = false;
+      log.recordEvent (LogEvent.MEDIUM, 
+          "XML File or Directory " + xmlSourceAsString + " cannot be found",
+          false);
     }
     if (ok) {
       if (! xmlSourceAsFile.canRead()) {
@@ -188,25 +313,48 @@ public class TunesParser
             false);       
       }
     }
-    if (ok) {
-      if (xmlSourceAsFile.isFile()) {
-        parseXMLFile (xmlSourceAsFile);
-      }
-    } // end if everything still OK
+    return ok;
+  }
+  
+  /**
+   Finish loading a library, recording its source and track count. 
+  
+   @return The number of tracks loaded. 
+  */
+  private int endLibrary() {
     tunes.getSources().setFromLibrary(libIndex);
     tunes.getLibraries().get(libIndex).setCount
         (TunesLibrary.LIB, TunesLibrary.TRACKS, tracksLoaded);
+    parseTimer.stop(parseStart);
+    dictsCounter.add(dictsProcessed);
+    tracksParsedCounter.add(tracksLoaded);
+    parseEvent.end();
+    if (parseEvent.shouldCommit()) {
+      parseEvent.libIndex = libIndex;
+      parseEvent.libraryFile = xmlSourceAsString;
+      parseEvent.tracks = tracksLoaded;
+      parseEvent.bytes = bytesRead;
+      parseEvent.commit();
+    }
     
     return tracksLoaded;
-  }  
+  }
   
   private void parseXMLFile (File xmlFile) {
     // System.out.println ("TunesParser.parseXMLFile " + xmlSourceAsString);
     dataParent = xmlFile.getParent();
     elementLevel = -1;
     chars = new ArrayList();
+    InputStream in = null;
+    TunesStreamParser.ProgressInputStream counter = null;
     try {
-      parser.parse (xmlFile.toURI().toString());
+      progress.setBytesTotal(xmlFile.length());
+      counter = new TunesStreamParser.ProgressInputStream
+          (new FileInputStream(xmlFile), progress);
+      in = new BufferedInputStream(counter);
+      InputSource source = new InputSource(in);
+      source.setSystemId(xmlFile.toURI().toString());
+      parser.parse (source);
     } 
     catch (SAXException saxe) {
         log.recordEvent (LogEvent.MEDIUM, 
@@ -220,6 +368,18 @@ public class TunesParser
             + ioe.toString(),
             false);   
     }
+    finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // Nothing more we can do
+        }
+      }
+      if (counter != null) {
+        bytesRead = counter.getBytesRead();
+      }
+    }
   }
   
   /**
@@ -243,7 +403,7 @@ public class TunesParser
       storeField (elementLevel, str);
     }
     if (localName.equalsIgnoreCase("dict")) {
-      initTrackVars();
+      startDict();
     }
   } // end method
   
@@ -289,176 +449,226 @@ public class TunesParser
       StringBuffer str = (StringBuffer)chars.get (elementLevel);
       // System.out.println ("  " + str.toString());
       if (localName.equalsIgnoreCase("key")) {
-        key = str.toString();
+        storeKey(str.toString());
       }
       else
       if (localName.equalsIgnoreCase("string")) {
-        if (key.equalsIgnoreCase("Music Folder")) {
-          tunes.getLibrary(libIndex).setMusicFolder(str.toString());
-          musicFolder = str.toString();
-        }
-        else
-        if (key.equalsIgnoreCase("Sort Name")) {
-          track.setSortName(str.toString());
-        }
-        else
-        if (key.equalsIgnoreCase("Name")) {
-          track.setName(str.toString());
-        }
-        else
-        if (key.equalsIgnoreCase("Artist")) {
-          artist.setArtist(str.toString());
-          if (album.getArtist().length() == 0) {
-            album.setArtist(str.toString());
-          }
-        }
-        else
-        if (key.equalsIgnoreCase("Composer")) {
-          track.setComposer(str.toString());
-        }
-        else
-        if (key.equalsIgnoreCase("Album")) {
-          album.setAlbum(str.toString());
-        }
-        else
-        if (key.equalsIgnoreCase("Sort Album")) {
-          album.setSortAlbum(str.toString());
-        }
-        else
-        if (key.equalsIgnoreCase("Genre")) {
-          track.setGenre(str.toString());
-        }
-        else
-        if (key.equalsIgnoreCase("Sort Artist")) {
-          artist.setSortArtist(str.toString());
-        }
-        else
-        if (key.equalsIgnoreCase("Album Artist")) {
-          albumArtist = str.toString();
-          artist.setArtist(albumArtist);
-          album.setArtist(albumArtist);
-        }
-        else
-        if (key.equalsIgnoreCase("Kind")) {
-          file.setKind(str.toString());
-          String kind = str.toString().toLowerCase();
-          if (kind.endsWith(" app")
-              || kind.endsWith("book")
-              || kind.startsWith("pdf")) {
-            musicTrack = false;
-          }
-        }
-        else
-        if (key.equalsIgnoreCase("Location")) {
-          file.setLocation(str.toString());
-          String location = str.toString();
-          if (musicFolder.length() > 0
-              && location.startsWith(musicFolder)
-              && (! location.substring(musicFolder.length(), 
-                musicFolder.length() + 5).equalsIgnoreCase(MUSIC))) {
-            musicTrack = false;
-          }
-          if (location.contains("/Tones/")) {
-            musicTrack = false;
-          }
-        }
-        else
-        if (key.startsWith("Playlist")) {
-          musicTrack = false;
-        }
-        else
-        if (key.equalsIgnoreCase("Track Type")) {
-          if (! str.toString().equalsIgnoreCase("File")) {
-            musicTrack = false;
-          }
-        }
+        storeString(str.toString());
       }
       else
       if (localName.equalsIgnoreCase("integer")) {
-        int integer = 0;
-        long longInt = 0;
-        try {
-          longInt = Long.parseLong(str.toString());
-          integer = Integer.parseInt(str.toString());
-        } catch (NumberFormatException e) {
-          // System.out.println("Exception parsing " + key + " value of " + str.toString());
-        }
-        if (key.equalsIgnoreCase("Size")) {
-          file.setSize(longInt);
-        }
-        else
-        if (key.equalsIgnoreCase("Total Time")) {
-          track.setTotalTime(integer);
-        }
-        else
-        if (key.equalsIgnoreCase("Disc Number")) {
-          album.setDiscNumber(integer);
-        }
-        else
-        if (key.equalsIgnoreCase("Disc Count")) {
-          album.setDiscCount(integer);
-        }
-        else
-        if (key.equalsIgnoreCase("Track Number")) {
-          track.setTrackNumber(integer);
-        }
-        else
-        if (key.equalsIgnoreCase("Track Count")) {
-          album.setTrackCount(integer);
-        }
-        else
-        if (key.equalsIgnoreCase("Year")) {
-          track.setYear(integer);
-          album.setYear(integer);
-        }
-        else
-        if (key.equalsIgnoreCase("Rating")) {
-          track.setRating(integer);
-        }
-        else
-        if (key.equalsIgnoreCase("Bit Rate")) {
-          file.setBitRate(integer);
-        }
-        else
-        if (key.equalsIgnoreCase("Sample Rate")) {
-          file.setSampleRate(integer);
-        }
+        storeInteger(str.toString());
       }
       else
       if (localName.equalsIgnoreCase("true")) {
-        if (key.equalsIgnoreCase("Podcast")) {
-          musicTrack = false;
+        storeTrue();
+      }
+      else
+      if (localName.equalsIgnoreCase("dict")) {
+        endDict();
+      }
+    } // end if we are within the desired record type
+    elementLevel--;
+  } // end method
+  
+  /**
+   Start a new dict element, which may hold the info for one track. 
+  */
+  void startDict() {
+    dictsProcessed++;
+    initTrackVars();
+  }
+  
+  /**
+   Store the name of the key identifying the value to follow. 
+  
+   @param key The text of a key element. 
+  */
+  void storeKey(String key) {
+    storeKey(TunesKey.lookup(key));
+  }
+  
+  /**
+   Store the key identifying the value to follow. 
+  
+   @param key The key, already resolved from the text of a key element. 
+  */
+  void storeKey(TunesKey key) {
+    this.key = key;
+  }
+  
+  /**
+   Store the text of a string element, according to the current key. 
+  
+   @param str The text of a string element. 
+  */
+  void storeString(String str) {
+    switch (key) {
+      case MUSIC_FOLDER:
+        tunes.getLibrary(libIndex).setMusicFolder(str);
+        musicFolder = str;
+        break;
+      case SORT_NAME:
+        track.setSortName(str);
+        break;
+      case NAME:
+        track.setName(str);
+        break;
+      case ARTIST:
+        artist.setArtist(str);
+        if (album.getArtist().length() == 0) {
+          album.setArtist(str);
         }
-        else
-        if (key.equalsIgnoreCase("Audiobooks")) {
+        break;
+      case COMPOSER:
+        track.setComposer(str);
+        break;
+      case ALBUM:
+        album.setAlbum(str);
+        break;
+      case SORT_ALBUM:
+        album.setSortAlbum(str);
+        break;
+      case GENRE:
+        track.setGenre(str);
+        break;
+      case SORT_ARTIST:
+        artist.setSortArtist(str);
+        break;
+      case ALBUM_ARTIST:
+        albumArtist = str;
+        artist.setArtist(albumArtist);
+        album.setArtist(albumArtist);
+        break;
+      case KIND:
+        file.setKind(str);
+        String kind = str.toLowerCase();
+        if (kind.endsWith(" app")
+            || kind.endsWith("book")
+            || kind.startsWith("pdf")) {
           musicTrack = false;
         }
-        else
-        if (key.equalsIgnoreCase("Movie")) {
+        break;
+      case LOCATION:
+        file.setLocation(str);
+        if (musicFolder.length() > 0
+            && str.startsWith(musicFolder)
+            && (! str.substring(musicFolder.length(), 
+              musicFolder.length() + 5).equalsIgnoreCase(MUSIC))) {
           musicTrack = false;
         }
-        else
-        if (key.equalsIgnoreCase("Has Video")) {
+        if (str.contains("/Tones/")) {
           musicTrack = false;
         }
-        else
-        if (key.equalsIgnoreCase("Compilation")) {
-          album.setCompilation(true);
-        }
-      }
-      else
-      if (localName.equalsIgnoreCase("dict")) {
-        if (
-            // artist.hasKey() &&
-            // (album.hasKey() || file.hasKey()) &&
-            track.hasKey() 
-            && (musicTrack)) {
-          processTrack();
+        break;
+      case PLAYLISTS:
+      case PLAYLIST:
+        musicTrack = false;
+        break;
+      case TRACK_TYPE:
+        if (! str.equalsIgnoreCase("File")) {
+          musicTrack = false;
         }
-      }
-    } // end if we are within the desired record type
-    elementLevel--;
-  } // end method
+        break;
+      default:
+        break;
+    } // end switch on key
+  }
+  
+  /**
+   Store the text of an integer element, according to the current key. 
+  
+   @param str The text of an integer element. 
+  */
+  void storeInteger(String str) {
+    long longInt = 0;
+    try {
+      longInt = Long.parseLong(str);
+    } catch (NumberFormatException e) {
+      // System.out.println("Exception parsing " + key + " value of " + str);
+    }
+    storeInteger(longInt);
+  }
+  
+  /**
+   Store the value of an integer element, according to the current key. 
+   Values too large for an int are stored as zero where an int is expected. 
+  
+   @param longInt The value of an integer element. 
+  */
+  void storeInteger(long longInt) {
+    int integer = 0;
+    if (longInt >= Integer.MIN_VALUE && longInt <= Integer.MAX_VALUE) {
+      integer = (int)longInt;
+    }
+    switch (key) {
+      case SIZE:
+        file.setSize(longInt);
+        break;
+      case TOTAL_TIME:
+        track.setTotalTime(integer);
+        break;
+      case DISC_NUMBER:
+        album.setDiscNumber(integer);
+        break;
+      case DISC_COUNT:
+        album.setDiscCount(integer);
+        break;
+      case TRACK_NUMBER:
+        track.setTrackNumber(integer);
+        break;
+      case TRACK_COUNT:
+        album.setTrackCount(integer);
+        break;
+      case YEAR:
+        track.setYear(integer);
+        album.setYear(integer);
+        break;
+      case RATING:
+        track.setRating(integer);
+        break;
+      case BIT_RATE:
+        file.setBitRate(integer);
+        break;
+      case SAMPLE_RATE:
+        file.setSampleRate(integer);
+        break;
+      default:
+        break;
+    } // end switch on key
+  }
+  
+  /**
+   Note a true element, according to the current key. 
+  */
+  void storeTrue() {
+    switch (key) {
+      case PODCAST:
+      case AUDIOBOOKS:
+      case MOVIE:
+      case HAS_VIDEO:
+        musicTrack = false;
+        break;
+      case COMPILATION:
+        album.setCompilation(true);
+        break;
+      default:
+        break;
+    } // end switch on key
+  }
+  
+  /**
+   End a dict element, processing the track it described, if any. 
+  */
+  void endDict() {
+    if (
+        // artist.hasKey() &&
+        // (album.hasKey() || file.hasKey()) &&
+        track.hasKey() 
+        && (musicTrack)) {
+      processTrack();
+    }
+  }
   
   private void storeField (int level, StringBuffer str) {
     if (chars.size() > level) {
@@ -468,6 +678,47 @@ public class TunesParser
     }
   } // end method
   
+  /**
+   Set the number of threads to be used when scanning a Media Music folder. 
+   Artist folders are listed in parallel, but their contents are always 
+   stored into the collection in the same sequence. 
+  
+   @param scanParallelism The number of threads to use; one means the 
+                          folders will be scanned on the calling thread. 
+  */
+  public void setScanParallelism(int scanParallelism) {
+    if (scanParallelism < 1) {
+      this.scanParallelism = 1;
+    } else {
+      this.scanParallelism = scanParallelism;
+    }
+  }
+  
+  public int getScanParallelism() {
+    return scanParallelism;
+  }
+  
+  /**
+   Return the number of artist and album folders that were listed, or found
+   to have been removed, by the last scan or rescan of a music folder. 
+  
+   @return The number of folders listed, or zero if nothing had changed. 
+  */
+  public int getFoldersScanned() {
+    return foldersScanned;
+  }
+  
+  /**
+   Return the artists whose folders were listed, or found to have been 
+   removed, by the last scan or rescan of a music folder. 
+  
+   @return The common names of the artists changed, which may include 
+           artists no longer in the collection. 
+  */
+  public Set<String> getArtistsChanged() {
+    return artistsChanged;
+  }
+  
   /**
    Scan a music folder for the actual music files contained therein. 
   
@@ -479,7 +730,231 @@ public class TunesParser
       int libIndex,
       File inFolder) {
     
+    long start = scanTimer.start();
+    TunesEvents.ScanEvent event = new TunesEvents.ScanEvent();
+    event.begin();
+    boolean ok = startMediaMusicFolder(tunes, libIndex, inFolder);
+    ScanStateIndex scanState 
+        = tunes.getLibraries().get(libIndex).getScanState();
+    scanState.clear();
+    
+    if (ok) {
+      try {
+        long modified = Files.getLastModifiedTime
+            (mediaMusicFolder.toPath()).toMillis();
+        List<ArtistFolderScan> scans = ArtistFolderScan.scanAll
+            (mediaMusicFolder.toPath(), libIndex, scanParallelism, progress);
+        for (ArtistFolderScan scan: scans) {
+          foldersScanned = foldersScanned + 1 + scan.getAlbums().size();
+          storeArtistFolder(scan, scanState);
+        } // end for each artist
+        scanState.setMusicFolderModified(modified);
+        tunes.getSources().setFromFolder(libIndex);
+      } catch (IOException e) {
+        Logger.getShared().recordEvent(LogEvent.MEDIUM, 
+            "Media Music folder could not be read: " 
+            + mediaMusicFolder.toString(), false);
+      }
+    } // end if we have a good media music folder
+    
+    tunes.getLibraries().get(libIndex).setCount
+        (TunesLibrary.MEDIA, TunesLibrary.TRACKS, tracksLoaded);
+    scanTimer.stop(start);
+    foldersCounter.add(foldersScanned);
+    tracksFoundCounter.add(tracksLoaded);
+    commitScanEvent(event, false, tracksLoaded);
+    
+    return tracksLoaded;
+  }  
+  
+  /**
+   Record the end of a scan or rescan with Flight Recorder. 
+  
+   @param event  The event begun when the scan started. 
+   @param rescan True for a rescan, false for a full scan. 
+   @param tracks The number of tracks now found in the music folder. 
+  */
+  private void commitScanEvent(
+      TunesEvents.ScanEvent event, 
+      boolean rescan, 
+      int tracks) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.libIndex = libIndex;
+      event.musicFolder = String.valueOf(mediaMusicFolder);
+      event.rescan = rescan;
+      event.tracks = tracks;
+      event.folders = foldersScanned;
+      event.commit();
+    }
+  }
+  
+  /**
+   Scan a music folder again, listing only those artist and album folders 
+   whose last modified times have changed since the last scan. Their 
+   entries are merged into the collection, and anything contributed by 
+   entries no longer found is removed from it. If no earlier scan has 
+   been recorded, then the entire folder is scanned. 
+  
+   Note that a folder's last modified time changes when entries are added,
+   removed or renamed, but not when an existing file is rewritten in place. 
+  
+   @param tunes    The collection holding the results of the earlier scan. 
+   @param libIndex The index of the library owning the music folder. 
+   @param inFolder The music folder.
+  
+   @return The number of tracks now found in the music folder. 
+  */
+  public int rescanMediaMusicFolder (TunesCollection tunes,
+      int libIndex,
+      File inFolder) {
+    
+    ScanStateIndex scanState 
+        = tunes.getLibraries().get(libIndex).getScanState();
+    if (scanState.isEmpty()) {
+      return scanMediaMusicFolder(tunes, libIndex, inFolder);
+    }
+    
+    long start = rescanTimer.start();
+    TunesEvents.ScanEvent event = new TunesEvents.ScanEvent();
+    event.begin();
+    boolean ok = startMediaMusicFolder(tunes, libIndex, inFolder);
+    
+    if (ok) {
+      Path musicPath = mediaMusicFolder.toPath();
+      try {
+        long modified = Files.getLastModifiedTime(musicPath).toMillis();
+        ArrayList<ArtistFolderScan> newScans 
+            = new ArrayList<ArtistFolderScan>();
+        if (modified != scanState.getMusicFolderModified()) {
+          foldersScanned++;
+          HashSet<String> listed = new HashSet<String>();
+          try (DirectoryStream<Path> entries 
+              = Files.newDirectoryStream(musicPath)) {
+            for (Path entry: entries) {
+              String artistFolderName = entry.getFileName().toString();
+              if (! artistFolderName.startsWith(".")) {
+                listed.add(artistFolderName);
+                if (scanState.getArtist(artistFolderName) == null) {
+                  newScans.add(new ArtistFolderScan
+                      (musicPath, artistFolderName, libIndex));
+                }
+              }
+            }
+          }
+          for (String artistFolderName: scanState.getArtistFolderNames()) {
+            if (! listed.contains(artistFolderName)) {
+              removeArtistFolder(scanState, artistFolderName);
+            }
+          }
+          scanState.setMusicFolderModified(modified);
+        } // end if the list of artist folders may have changed
+        
+        for (String artistFolderName: scanState.getArtistFolderNames()) {
+          if (progress.isCancelled()) {
+            break;
+          }
+          rescanArtistFolder(scanState, musicPath, artistFolderName);
+        }
+        
+        ArtistFolderScan.scanEach(newScans, scanParallelism, progress);
+        for (ArtistFolderScan scan: newScans) {
+          foldersScanned = foldersScanned + 1 + scan.getAlbums().size();
+          storeArtistFolder(scan, scanState);
+        }
+        tunes.getSources().setFromFolder(libIndex);
+      } catch (IOException e) {
+        Logger.getShared().recordEvent(LogEvent.MEDIUM, 
+            "Media Music folder could not be read: " 
+            + mediaMusicFolder.toString(), false);
+      }
+    } // end if we have a good media music folder
+    
+    int trackCount = scanState.getTrackCount();
+    tunes.getLibraries().get(libIndex).setCount
+        (TunesLibrary.MEDIA, TunesLibrary.TRACKS, trackCount);
+    rescanTimer.stop(start);
+    foldersCounter.add(foldersScanned);
+    commitScanEvent(event, true, trackCount);
+    
+    return trackCount;
+  }
+  
+  /**
+   Check only the named artist folders within a music folder for changes
+   made since the last scan, as when the folders have been reported as 
+   changed by a TunesWatcher. Named folders not recorded by the last scan 
+   are scanned as new artists. If no earlier scan has been recorded, then 
+   the entire folder is scanned. 
+  
+   @param tunes             The collection holding the results of the 
+                            earlier scan. 
+   @param libIndex          The index of the library owning the music folder. 
+   @param inFolder          The music folder.
+   @param artistFolderNames The names of the artist folders to be checked. 
+  
+   @return The number of tracks now found in the music folder. 
+  */
+  public int rescanArtistFolders (TunesCollection tunes,
+      int libIndex,
+      File inFolder,
+      Collection<String> artistFolderNames) {
+    
+    ScanStateIndex scanState 
+        = tunes.getLibraries().get(libIndex).getScanState();
+    if (scanState.isEmpty()) {
+      return scanMediaMusicFolder(tunes, libIndex, inFolder);
+    }
+    
+    long start = rescanTimer.start();
+    TunesEvents.ScanEvent event = new TunesEvents.ScanEvent();
+    event.begin();
+    boolean ok = startMediaMusicFolder(tunes, libIndex, inFolder);
+    
+    if (ok) {
+      Path musicPath = mediaMusicFolder.toPath();
+      ArrayList<ArtistFolderScan> newScans 
+          = new ArrayList<ArtistFolderScan>();
+      for (String artistFolderName: artistFolderNames) {
+        if (scanState.getArtist(artistFolderName) != null) {
+          rescanArtistFolder(scanState, musicPath, artistFolderName);
+        }
+        else
+        if ((! artistFolderName.startsWith("."))
+            && Files.isDirectory(musicPath.resolve(artistFolderName))) {
+          newScans.add(new ArtistFolderScan
+              (musicPath, artistFolderName, libIndex));
+        }
+      } // end for each artist folder named
+      ArtistFolderScan.scanEach(newScans, scanParallelism, progress);
+      for (ArtistFolderScan scan: newScans) {
+        foldersScanned = foldersScanned + 1 + scan.getAlbums().size();
+        storeArtistFolder(scan, scanState);
+      }
+    } // end if we have a good media music folder
+    
+    int trackCount = scanState.getTrackCount();
+    tunes.getLibraries().get(libIndex).setCount
+        (TunesLibrary.MEDIA, TunesLibrary.TRACKS, trackCount);
+    rescanTimer.stop(start);
+    foldersCounter.add(foldersScanned);
+    commitScanEvent(event, true, trackCount);
+    
+    return trackCount;
+  }
+  
+  /**
+   Prepare to scan a music folder. 
+  
+   @return True if the music folder can be scanned. 
+  */
+  private boolean startMediaMusicFolder(TunesCollection tunes,
+      int libIndex,
+      File inFolder) {
+    
     tracksLoaded = 0;
+    foldersScanned = 0;
+    artistsChanged = new TreeSet<String>();
     this.tunes = tunes;
     this.libIndex = libIndex;
     String folderName = inFolder.getName();
@@ -488,120 +963,297 @@ public class TunesParser
       mediaMusicFolder = new File(inFolder, MUSIC);
     }
     
-    boolean ok = true;
     initTrackVars();
     
     if (mediaMusicFolder.exists()
         && mediaMusicFolder.canRead()
         && mediaMusicFolder.isDirectory()) {
-      ok = true;
+      return true;
     } else {
-      ok = false;
       Logger.getShared().recordEvent(LogEvent.MEDIUM, 
           "Invalid Media Music folder", false);
+      return false;
+    }
+  }
+  
+  /**
+   Check an artist folder recorded by an earlier scan, listing it again 
+   only if it has changed, and then checking each of its album folders. 
+  */
+  private void rescanArtistFolder(
+      ScanStateIndex scanState, 
+      Path musicPath, 
+      String artistFolderName) {
+    
+    ScanStateIndex.ArtistEntry artistEntry 
+        = scanState.getArtist(artistFolderName);
+    Path artistPath = musicPath.resolve(artistFolderName);
+    BasicFileAttributes attrs = null;
+    try {
+      attrs = Files.readAttributes(artistPath, BasicFileAttributes.class);
+    } catch (IOException e) {
+      // Treat the folder as removed
+    }
+    artist = tunes.getArtist(artistEntry.getArtistKey());
+    if (attrs == null
+        || (! attrs.isDirectory())
+        || artist == null) {
+      removeArtistFolder(scanState, artistFolderName);
+      if (attrs != null && attrs.isDirectory()) {
+        ArtistFolderScan scan 
+            = new ArtistFolderScan(musicPath, artistFolderName, libIndex);
+        ArtistFolderScan.scanEach
+            (Collections.singletonList(scan), 1, progress);
+        foldersScanned = foldersScanned + 1 + scan.getAlbums().size();
+        storeArtistFolder(scan, scanState);
+      }
+      return;
     }
     
-    String[] artists;
-    if (ok) {
-      artists = mediaMusicFolder.list();
-      for (int i = 0; i < artists.length; i++) {
-        if (artists[i].equals(COMPILATIONS)) {
-          artist = tunes.getCompilations();
+    List<String> albumFolderNames = artistEntry.getAlbumFolderNames();
+    long modified = attrs.lastModifiedTime().toMillis();
+    if (modified != artistEntry.getModified()) {
+      foldersScanned++;
+      artistsChanged.add(artistEntry.getArtistKey());
+      HashSet<String> listed = new HashSet<String>();
+      ArrayList<String> newAlbumFolderNames = new ArrayList<String>();
+      try (DirectoryStream<Path> entries 
+          = Files.newDirectoryStream(artistPath)) {
+        for (Path entry: entries) {
+          String albumFolderName = entry.getFileName().toString();
+          if (! albumFolderName.startsWith(".")) {
+            listed.add(albumFolderName);
+            if (artistEntry.getAlbum(albumFolderName) == null) {
+              newAlbumFolderNames.add(albumFolderName);
+            }
+          }
         }
-        else
-        if (artists[i].startsWith(".")) {
-          artist = null;
-        } else {
-          artist = new TunesArtist();
-          artist.setArtist(artists[i]);
+      } catch (IOException e) {
+        Logger.getShared().recordEvent(LogEvent.MINOR,
+            "Artist folder could not be read: " + artistPath.toString(),
+            false);
+        return;
+      }
+      for (String albumFolderName: albumFolderNames) {
+        if (! listed.contains(albumFolderName)) {
+          removeAlbumFolder(artistEntry.getAlbum(albumFolderName), null);
+          artistEntry.removeAlbum(albumFolderName);
         }
-        if (artist != null
-            && artist.hasKey()) {
-          artist.getSources().setFromFolder(libIndex);
-          artist.setArtistFolderName(artists[i]);
-          artist = tunes.storeArtist(artist);
-          artist.setArtistFolderName(artists[i]);
-          scanArtistFolder();
-        } // end if we have a good artist
-      } // end for each artist
-      tunes.getSources().setFromFolder(libIndex);
-    } // end if we have a good media music folder
-    
-    tunes.getLibraries().get(libIndex).setCount
-        (TunesLibrary.MEDIA, TunesLibrary.TRACKS, tracksLoaded);
+      }
+      for (String albumFolderName: newAlbumFolderNames) {
+        AlbumFolderScan albumScan = new AlbumFolderScan
+            (artistPath.resolve(albumFolderName), albumFolderName, libIndex);
+        foldersScanned++;
+        if (albumScan.scan()) {
+          storeAlbumFolder(albumScan, artistEntry);
+        }
+      }
+      artistEntry.setModified(modified);
+    } // end if the list of album folders may have changed
     
-    return tracksLoaded;
-  }  
+    for (String albumFolderName: albumFolderNames) {
+      if (artistEntry.getAlbum(albumFolderName) != null) {
+        rescanAlbumFolder(artistEntry, artistPath, albumFolderName);
+      }
+    }
+  }
   
-  private void scanArtistFolder() {
-    
-    artistFolder = new File(mediaMusicFolder, 
-        artist.getArtistFolderName());
-    if (! artistFolder.exists()) {
-      System.out.println("No Artist Folder");
-      System.out.println("Media Music Folder = " + mediaMusicFolder.toString());
-      System.out.println("Artist = " + artist.getArtist());
-      System.out.println("Sort Artist = " + artist.getSortArtist());
-      System.out.println("Artist Folder = " + artist.getArtistFolderName());
-    }
-    String[] albums = artistFolder.list();
-    for (int j = 0; j < albums.length; j++) {
-      if (! albums[j].startsWith(".")) {
-        album = new TunesAlbum();
-        album.setAlbum(albums[j]);
-        if (album != null
-            && album.hasKey()) {
-          album.getSources().setFromFolder(libIndex);
-          album.setAlbumFolderName(albums[j]);
-          album = artist.storeAlbum(album);
-          
-          // System.out.println("    " + album.getSortAlbum());
-          scanAlbumFolder();
-        } // end if we have a good album
-      } // end if we have a normal album file
-    } // end for each album for this artist
-  }
-  
-  private void scanAlbumFolder() {
-    
-    File albumFolder = new File(artistFolder, 
-        album.getAlbumFolderName());
-    if (albumFolder.exists()
-        && albumFolder.isDirectory()
-        && albumFolder.canRead()) {
-      // A-OK
+  /**
+   Check an album folder recorded by an earlier scan, and list it again 
+   if it has changed. 
+  */
+  private void rescanAlbumFolder(
+      ScanStateIndex.ArtistEntry artistEntry, 
+      Path artistPath,
+      String albumFolderName) {
+    
+    ScanStateIndex.AlbumEntry albumEntry 
+        = artistEntry.getAlbum(albumFolderName);
+    Path albumPath = artistPath.resolve(albumFolderName);
+    long modified = -1;
+    try {
+      modified = Files.getLastModifiedTime(albumPath).toMillis();
+    } catch (IOException e) {
+      // Treat the folder as removed
+    }
+    if (modified == albumEntry.getModified()) {
+      return;
+    }
+    
+    foldersScanned++;
+    artistsChanged.add(artistEntry.getArtistKey());
+    AlbumFolderScan albumScan = null;
+    if (modified >= 0) {
+      albumScan = new AlbumFolderScan(albumPath, albumFolderName, libIndex);
+      if (! albumScan.scan()) {
+        albumScan = null;
+      }
+    }
+    removeAlbumFolder(albumEntry, albumScan);
+    if (albumScan == null) {
+      artistEntry.removeAlbum(albumFolderName);
     } else {
-      System.out.println("  *** album folder does not exist ***");
-    }
-    String[] tracks = albumFolder.list();
-    for (int k = 0; k < tracks.length; k++) {
-      if (! tracks[k].startsWith(".")
-          && (! tracks[k].endsWith(".pdf"))) {
-        track = new TunesTrack();
-        TrackFileName trackFileName = new TrackFileName(tracks[k]);
-        
-        if (trackFileName.hasTrackNumber()) {
-          track.setTrackNumber
-              (trackFileName.getTrackNumber());
-        }
-        
-        if (trackFileName.hasSortName()) {
-          track.setSortName(trackFileName.getSortName());
-        }
-        if (trackFileName.hasFileName()) {
-          track.setFileName(trackFileName.getFileName());
+      storeAlbumFolder(albumScan, artistEntry);
+    }
+  }
+  
+  /**
+   Remove everything contributed by an artist folder that is no longer 
+   to be found. 
+  */
+  private void removeArtistFolder(
+      ScanStateIndex scanState, 
+      String artistFolderName) {
+    
+    ScanStateIndex.ArtistEntry artistEntry 
+        = scanState.getArtist(artistFolderName);
+    scanState.removeArtist(artistFolderName);
+    foldersScanned++;
+    artistsChanged.add(artistEntry.getArtistKey());
+    artist = tunes.getArtist(artistEntry.getArtistKey());
+    if (artist != null) {
+      for (String albumFolderName: artistEntry.getAlbumFolderNames()) {
+        removeAlbumFolder(artistEntry.getAlbum(albumFolderName), null);
+      }
+      artist.getSources().setFromFolder(false, libIndex);
+      if ((! artist.getSources().isFromAnySource())
+          && artist.getNumberOfAlbums() == 0) {
+        tunes.removeArtist(artist);
+      }
+    }
+  }
+  
+  /**
+   Remove the tracks and files contributed by an earlier scan of an album 
+   folder, for the current artist, that are no longer to be found. Tracks 
+   and files also found in a library file are kept, but are no longer 
+   flagged as found in the folder. 
+  
+   @param albumEntry The album folder as recorded by the earlier scan. 
+   @param albumScan  A new scan of the same folder, or null if the folder
+                     has been removed. 
+  */
+  private void removeAlbumFolder(
+      ScanStateIndex.AlbumEntry albumEntry, 
+      AlbumFolderScan albumScan) {
+    
+    TunesAlbum oldAlbum = artist.getAlbum(albumEntry.getAlbumKey());
+    if (oldAlbum == null) {
+      return;
+    }
+    
+    HashSet<String> trackKeysFound = new HashSet<String>();
+    HashSet<String> filePathsFound = new HashSet<String>();
+    if (albumScan != null) {
+      for (int k = 0; k < albumScan.getNumberOfTracks(); k++) {
+        trackKeysFound.add
+            (albumScan.getTrack(k).getCommonName().getName());
+        if (albumScan.getFile(k) != null) {
+          filePathsFound.add
+              (albumScan.getFile(k).getLocation().getPath());
         }
-        
-        track.getSources().setFromFolder(libIndex);
-        
-        track = album.storeTrack(track);
-        if ((! track.hasName())
-            && trackFileName.hasTrackName()) {
-          track.setName(trackFileName.getTrackName());
-        } // End if track doesn't yet have a name
-        tracksLoaded++;
-      } // End if file name doesn't start with a period
-    } // end for each directory entry
+      }
+    }
+    
+    for (int k = 0; k < albumEntry.getNumberOfTracks(); k++) {
+      String trackKey = albumEntry.getTrackKey(k);
+      String filePath = albumEntry.getFilePath(k);
+      TunesTrack oldTrack = oldAlbum.getTrack(trackKey);
+      if (oldTrack != null) {
+        if (filePath.length() > 0
+            && (! filePathsFound.contains(filePath))) {
+          TunesFile oldFile = oldTrack.getFile(new File(filePath));
+          if (oldFile != null) {
+            oldFile.getSources().setFromFolder(false, libIndex);
+            if (! oldFile.getSources().isFromAnyFolder()) {
+              oldFile.setFileExists(false);
+            }
+            if (! oldFile.getSources().isFromAnySource()) {
+              oldTrack.removeFile(oldFile);
+            }
+          }
+        } // end if file no longer found
+        if (! trackKeysFound.contains(trackKey)) {
+          oldTrack.getSources().setFromFolder(false, libIndex);
+          if (! oldTrack.getSources().isFromAnySource()) {
+            oldAlbum.removeTrack(oldTrack);
+          }
+        } // end if track no longer found
+      }
+    } // end for each track previously found
+    
+    if (albumScan == null) {
+      oldAlbum.getSources().setFromFolder(false, libIndex);
+      if ((! oldAlbum.getSources().isFromAnySource())
+          && oldAlbum.getNumberOfTracks() == 0) {
+        artist.removeAlbum(oldAlbum);
+      }
+    }
+  }
+  
+  /**
+   Store the results of scanning one artist folder into the collection. 
+  
+   @param scan      The completed scan of an artist folder. 
+   @param scanState The folders scanned, to which this artist's are added. 
+  */
+  private void storeArtistFolder(
+      ArtistFolderScan scan, 
+      ScanStateIndex scanState) {
+    
+    if (scan.isCompilations()) {
+      artist = tunes.getCompilations();
+    } else {
+      artist = scan.getArtist();
+    }
+    if (artist != null
+        && artist.hasKey()
+        && scan.isArtistFolder()) {
+      artist.getSources().setFromFolder(libIndex);
+      artist.setArtistFolderName(scan.getArtistFolderName());
+      artist = tunes.storeArtist(artist);
+      artist.setArtistFolderName(scan.getArtistFolderName());
+      ScanStateIndex.ArtistEntry artistEntry = scanState.putArtist(
+          scan.getArtistFolderName(), 
+          artist.getCommonName().getName(), 
+          scan.getLastModified());
+      artistsChanged.add(artistEntry.getArtistKey());
+      for (AlbumFolderScan albumScan: scan.getAlbums()) {
+        storeAlbumFolder(albumScan, artistEntry);
+      }
+    } // end if we have a good artist
+  }
+  
+  /**
+   Store the results of scanning one album folder into the collection. 
+  
+   @param albumScan The completed scan of an album folder. 
+  */
+  private void storeAlbumFolder(
+      AlbumFolderScan albumScan, 
+      ScanStateIndex.ArtistEntry artistEntry) {
+    
+    album = artist.storeAlbum(albumScan.getAlbum());
+    ScanStateIndex.AlbumEntry albumEntry = artistEntry.putAlbum(
+        albumScan.getAlbumFolderName(), 
+        album.getCommonName().getName(), 
+        albumScan.getLastModified());
+    
+    for (int k = 0; k < albumScan.getNumberOfTracks(); k++) {
+      TrackFileName trackFileName = albumScan.getTrackFileName(k);
+      track = album.storeTrack(albumScan.getTrack(k));
+      if ((! track.hasName())
+          && trackFileName.hasTrackName()) {
+        track.setName(trackFileName.getTrackName());
+      } // End if track doesn't yet have a name
+      String filePath = "";
+      if (albumScan.getFile(k) != null) {
+        track.storeFile(albumScan.getFile(k));
+        filePath = albumScan.getFile(k).getLocation().getPath();
+      }
+      albumEntry.addTrack(track.getCommonName().getName(), filePath);
+      tracksLoaded++;
+    } // end for each track file
   }
   
   private void initTrackVars() {
@@ -674,6 +1326,7 @@ public class TunesParser
     // if (album.getNumberOfTracks() > priorNumberOfTracks) {
       tracksLoaded++;
     // }
+    progress.addTrackParsed();
   }
 
   /**
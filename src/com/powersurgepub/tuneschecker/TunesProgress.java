@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.util.concurrent.atomic.*;
+
+/**
+ Keeps track of the progress of a long-running load or analysis, and 
+ lets it be cancelled. The counts are updated by the threads doing the 
+ work, and may be read at any time, from any thread, to report on 
+ progress; reading them does nothing to slow the work down. 
+
+ Work in progress checks isCancelled now and then, and stops early once 
+ it returns true. Whatever was being built should then be discarded. 
+
+ @author Herb Bowie
+ */
+public class TunesProgress {
+  
+  private volatile boolean        cancelled = false;
+  private volatile String         phase = "";
+  
+  private volatile long           bytesTotal = 0;
+  private volatile int            artistsTotal = 0;
+  
+  private     AtomicLong          bytesRead = new AtomicLong();
+  private     AtomicInteger       tracksParsed = new AtomicInteger();
+  private     AtomicInteger       foldersScanned = new AtomicInteger();
+  private     AtomicInteger       artistsAnalyzed = new AtomicInteger();
+  
+  public TunesProgress() {
+    
+  }
+  
+  /**
+   Ask for the work to stop as soon as it can. 
+  */
+  public void cancel() {
+    cancelled = true;
+  }
+  
+  public boolean isCancelled() {
+    return cancelled;
+  }
+  
+  /**
+   Start a new phase of the work, such as the loading of another library, 
+   resetting all of the counts. 
+  
+   @param phase A short description of the work now being done. 
+  */
+  public void startPhase(String phase) {
+    this.phase = phase;
+    bytesTotal = 0;
+    artistsTotal = 0;
+    bytesRead.set(0);
+    tracksParsed.set(0);
+    foldersScanned.set(0);
+    artistsAnalyzed.set(0);
+  }
+  
+  public String getPhase() {
+    return phase;
+  }
+  
+  public void setBytesTotal(long bytesTotal) {
+    this.bytesTotal = bytesTotal;
+  }
+  
+  public long getBytesTotal() {
+    return bytesTotal;
+  }
+  
+  public void addBytesRead(long bytes) {
+    bytesRead.addAndGet(bytes);
+  }
+  
+  public long getBytesRead() {
+    return bytesRead.get();
+  }
+  
+  public void addTrackParsed() {
+    tracksParsed.incrementAndGet();
+  }
+  
+  public int getTracksParsed() {
+    return tracksParsed.get();
+  }
+  
+  public void addFoldersScanned(int folders) {
+    foldersScanned.addAndGet(folders);
+  }
+  
+  public int getFoldersScanned() {
+    return foldersScanned.get();
+  }
+  
+  public void setArtistsTotal(int artistsTotal) {
+    this.artistsTotal = artistsTotal;
+  }
+  
+  public void addArtistsAnalyzed(int artists) {
+    artistsAnalyzed.addAndGet(artists);
+  }
+  
+  public int getArtistsAnalyzed() {
+    return artistsAnalyzed.get();
+  }
+  
+  /**
+   Describe the progress made so far, in a form suitable for a status bar. 
+  
+   @return The phase, followed by whatever has been counted in it. 
+  */
+  @Override
+  public String toString() {
+    StringBuilder status = new StringBuilder(phase);
+    if (cancelled) {
+      status.append(" (cancelling)");
+    }
+    long bytes = bytesRead.get();
+    if (bytes > 0) {
+      status.append(": ");
+      status.append(String.valueOf(bytes / (1024 * 1024)));
+      status.append(" MB");
+      if (bytesTotal > 0) {
+        status.append(" of ");
+        status.append(String.valueOf(bytesTotal / (1024 * 1024)));
+        status.append(" MB");
+      }
+      status.append(" read, ");
+      status.append(String.valueOf(tracksParsed.get()));
+      status.append(" tracks");
+    }
+    int folders = foldersScanned.get();
+    if (folders > 0) {
+      if (bytes > 0) {
+        status.append(", ");
+      } else {
+        status.append(": ");
+      }
+      status.append(String.valueOf(folders));
+      status.append(" folders scanned");
+    }
+    int artists = artistsAnalyzed.get();
+    if (artistsTotal > 0) {
+      status.append(": ");
+      status.append(String.valueOf(artists));
+      status.append(" of ");
+      status.append(String.valueOf(artistsTotal));
+      status.append(" artists");
+    }
+    return status.toString();
+  }
+  
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import com.powersurgepub.psutils.*;
+  import java.io.*;
+  import java.nio.charset.*;
+  import java.util.*;
+
+/**
+ A compact binary snapshot of a tunes collection, saved next to the most
+ recently opened library file. The snapshot records the size and last
+ modified time of each library file that went into it, and is only loaded
+ if none of those files has changed since.
+
+ Numbers are written as variable-length integers, and each distinct string
+ is written only once, with later occurrences written as a reference to the
+ first. Each tunes object writes and reads its own fields.
+
+ @author Herb Bowie
+ */
+public class TunesSnapshot {
+
+  public static final String      SUFFIX        = ".snapshot";
+
+  /** Identifies a snapshot file: "TCSN" in ASCII. */
+  public static final int         MAGIC         = 0x5443534E;
+
+  /** Bump this whenever the layout of any object changes. */
+  public static final int         VERSION       = 3;
+
+  public static final int         BUFFER_SIZE   = 64 * 1024;
+
+  private static final Charset    UTF8          = Charset.forName("UTF-8");
+
+  private     DataOutputStream    out = null;
+  private     DataInputStream     in = null;
+
+  /** Strings already written, with their reference numbers. */
+  private     HashMap<String, Integer> stringRefs = null;
+
+  /** Strings already read, in reference number sequence. */
+  private     ArrayList<String>   strings = null;
+
+  private TunesSnapshot(DataOutputStream out) {
+    this.out = out;
+    stringRefs = new HashMap<String, Integer>();
+  }
+
+  private TunesSnapshot(DataInputStream in) {
+    this.in = in;
+    strings = new ArrayList<String>();
+  }
+
+  /**
+   Return the snapshot file to be used for a library.
+
+   @param libraryFile The iTunes Library XML file.
+
+   @return The snapshot file, in the same folder as the library.
+  */
+  public static File getSnapshotFile(File libraryFile) {
+    return new File(libraryFile.getParentFile(),
+        libraryFile.getName() + SUFFIX);
+  }
+
+  /**
+   Save the collection to a snapshot next to its most recently added
+   library. The snapshot is first written to a temporary file, so that
+   a failure will never leave a partial snapshot behind.
+
+   @param tunes The collection to be saved.
+
+   @return True if the snapshot was saved, false otherwise.
+  */
+  public static boolean save(TunesCollection tunes) {
+    TunesLibrary lastLibrary = tunes.getLastLibrary();
+    if (lastLibrary == null
+        || lastLibrary.getLibraryFile() == null) {
+      return false;
+    }
+    File snapshotFile = getSnapshotFile(lastLibrary.getLibraryFile());
+    File tempFile = new File(snapshotFile.getParentFile(),
+        snapshotFile.getName() + ".tmp");
+    boolean ok = false;
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(
+            new FileOutputStream(tempFile), BUFFER_SIZE))) {
+      TunesSnapshot snapshot = new TunesSnapshot(out);
+      snapshot.writeHeader(tunes);
+      tunes.writeSnapshot(snapshot);
+      ok = true;
+    } catch (IOException e) {
+      Logger.getShared().recordEvent(LogEvent.MINOR,
+          "Snapshot could not be saved to " + snapshotFile.toString()
+          + ": " + e.toString(), false);
+    }
+    if (ok) {
+      snapshotFile.delete();
+      ok = tempFile.renameTo(snapshotFile);
+    }
+    if (ok) {
+      Logger.getShared().recordEvent(LogEvent.NORMAL,
+          "Snapshot saved to " + snapshotFile.toString(), false);
+    } else {
+      tempFile.delete();
+    }
+    return ok;
+  }
+
+  /**
+   Load the collection from the snapshot next to its most recently added
+   library, if there is one, and if it was made from the same library
+   files that have now been added to the collection, none of which may
+   have changed since. The collection is left untouched if the snapshot
+   cannot be used.
+
+   @param tunes The collection to be loaded.
+
+   @return True if the collection was loaded from the snapshot, false if
+           the library files must be read instead.
+  */
+  public static boolean load(TunesCollection tunes) {
+    TunesLibrary lastLibrary = tunes.getLastLibrary();
+    if (lastLibrary == null
+        || lastLibrary.getLibraryFile() == null) {
+      return false;
+    }
+    File snapshotFile = getSnapshotFile(lastLibrary.getLibraryFile());
+    if (! snapshotFile.exists()) {
+      return false;
+    }
+    boolean ok = false;
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(
+            new FileInputStream(snapshotFile), BUFFER_SIZE))) {
+      TunesSnapshot snapshot = new TunesSnapshot(in);
+      ArrayList<LibraryState> states = snapshot.readHeader(tunes);
+      if (states == null) {
+        Logger.getShared().recordEvent(LogEvent.NORMAL,
+            "Snapshot is out of date: " + snapshotFile.toString(), false);
+      } else {
+        tunes.readSnapshot(snapshot);
+        for (int i = 0; i < states.size(); i++) {
+          states.get(i).restore(tunes.getLibrary(i));
+        }
+        ok = true;
+      }
+    } catch (IOException e) {
+      Logger.getShared().recordEvent(LogEvent.MINOR,
+          "Snapshot could not be loaded from " + snapshotFile.toString()
+          + ": " + e.toString(), false);
+    }
+    if (ok) {
+      Logger.getShared().recordEvent(LogEvent.NORMAL,
+          "Snapshot loaded from " + snapshotFile.toString(), false);
+    }
+    return ok;
+  }
+
+  /**
+   Write the version, and the state of each library file in the collection.
+  */
+  private void writeHeader(TunesCollection tunes)
+      throws IOException {
+    out.writeInt(MAGIC);
+    writeInt(VERSION);
+    writeInt(tunes.getNumberOfLibraries());
+    for (int i = 0; i < tunes.getNumberOfLibraries(); i++) {
+      TunesLibrary library = tunes.getLibrary(i);
+      File libraryFile = library.getLibraryFile();
+      writeString(libraryFile.getAbsolutePath());
+      writeLong(libraryFile.length());
+      writeLong(libraryFile.lastModified());
+      File musicFolder = library.getMusicFolder();
+      if (musicFolder == null) {
+        writeString("");
+      } else {
+        writeString(musicFolder.getPath());
+      }
+      writeInt(library.getCount(TunesLibrary.LIB, TunesLibrary.TRACKS));
+      writeInt(library.getCount(TunesLibrary.MEDIA, TunesLibrary.TRACKS));
+      library.getScanState().writeSnapshot(this);
+    }
+  }
+
+  /**
+   Read the header, and check it against the libraries now in the collection.
+
+   @return The saved state of each library, or null if the snapshot does
+           not match the libraries now in the collection.
+  */
+  private ArrayList<LibraryState> readHeader(TunesCollection tunes)
+      throws IOException {
+    if (in.readInt() != MAGIC
+        || readInt() != VERSION
+        || readInt() != tunes.getNumberOfLibraries()) {
+      return null;
+    }
+    ArrayList<LibraryState> states = new ArrayList<LibraryState>();
+    boolean current = true;
+    for (int i = 0; i < tunes.getNumberOfLibraries(); i++) {
+      File libraryFile = tunes.getLibrary(i).getLibraryFile();
+      String path = readString();
+      long size = readLong();
+      long lastModified = readLong();
+      if (libraryFile == null
+          || (! path.equals(libraryFile.getAbsolutePath()))
+          || size != libraryFile.length()
+          || lastModified != libraryFile.lastModified()) {
+        current = false;
+      }
+      LibraryState state = new LibraryState();
+      state.musicFolder = readString();
+      state.libTracks = readInt();
+      state.mediaTracks = readInt();
+      state.scanState.readSnapshot(this);
+      states.add(state);
+    }
+    if (current) {
+      return states;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   Write a string, or a reference to the same string written earlier.
+  */
+  public void writeString(String s)
+      throws IOException {
+    Integer ref = stringRefs.get(s);
+    if (ref == null) {
+      byte[] bytes = s.getBytes(UTF8);
+      writeInt(0);
+      writeInt(bytes.length);
+      out.write(bytes);
+      stringRefs.put(s, stringRefs.size() + 1);
+    } else {
+      writeInt(ref.intValue());
+    }
+  }
+
+  public String readString()
+      throws IOException {
+    int ref = readInt();
+    if (ref == 0) {
+      int length = readInt();
+      if (length < 0) {
+        throw new IOException("Invalid string length in snapshot");
+      }
+      byte[] bytes = new byte[length];
+      in.readFully(bytes);
+      String s = new String(bytes, UTF8);
+      strings.add(s);
+      return s;
+    }
+    else
+    if (ref > 0 && ref <= strings.size()) {
+      return strings.get(ref - 1);
+    } else {
+      throw new IOException("Invalid string reference in snapshot");
+    }
+  }
+
+  /**
+   Write an int in as few bytes as its magnitude allows, using a zigzag
+   encoding so that small negative numbers are also short.
+  */
+  public void writeInt(int i)
+      throws IOException {
+    writeLong(i);
+  }
+
+  public int readInt()
+      throws IOException {
+    return (int)readLong();
+  }
+
+  public void writeLong(long l)
+      throws IOException {
+    long zigzag = (l << 1) ^ (l >> 63);
+    while ((zigzag & ~0x7FL) != 0) {
+      out.writeByte((int)((zigzag & 0x7F) | 0x80));
+      zigzag = zigzag >>> 7;
+    }
+    out.writeByte((int)zigzag);
+  }
+
+  public long readLong()
+      throws IOException {
+    long zigzag = 0;
+    int shift = 0;
+    int b;
+    do {
+      if (shift > 63) {
+        throw new IOException("Invalid number in snapshot");
+      }
+      b = in.readUnsignedByte();
+      zigzag = zigzag | ((long)(b & 0x7F) << shift);
+      shift = shift + 7;
+    } while ((b & 0x80) != 0);
+    return (zigzag >>> 1) ^ (0 - (zigzag & 1));
+  }
+
+  public void writeBoolean(boolean b)
+      throws IOException {
+    out.writeBoolean(b);
+  }
+
+  public boolean readBoolean()
+      throws IOException {
+    return in.readBoolean();
+  }
+
+  /**
+   What we saved about one library, other than its tracks.
+  */
+  private static class LibraryState {
+
+    private String musicFolder = "";
+    private int    libTracks = 0;
+    private int    mediaTracks = 0;
+    private ScanStateIndex scanState = new ScanStateIndex();
+
+    private void restore(TunesLibrary library) {
+      if (musicFolder.length() > 0) {
+        library.setMusicFolder(new File(musicFolder));
+      }
+      library.setCount(TunesLibrary.LIB, TunesLibrary.TRACKS, libTracks);
+      library.setCount(TunesLibrary.MEDIA, TunesLibrary.TRACKS, mediaTracks);
+      library.setScanState(scanState);
+    }
+  }
+
+}
@@ -15,40 +15,129 @@
  */
 package com.powersurgepub.tuneschecker;
 
+  import java.io.*;
+  import java.util.*;
+
 /**
  Keep track of the sources of our information. Note that each iTunes library
  has an associated Music Folder, and that info stored in TunesChecker can 
  come from the library file, from the music folder, or from both sources. 
 
+ The sources are kept as two sets of bits, one for library files and one 
+ for music folders, with one bit for each library. The first 64 libraries 
+ fit in a pair of longs; any beyond that are kept in an array that is only 
+ created when needed. There is no limit on the number of libraries. 
+
  @author Herb Bowie
  */
 public class TunesSources {
   
-  public static final int        MAX_LIBS = 2;
+  /** The number of libraries whose bits fit in a single word. */
+  public static final int        LIBS_PER_WORD = 64;
   
-  private boolean[] sources;
+  private     long                libraryBits = 0;
+  private     long                folderBits = 0;
+  
+  /** 
+   Bits for libraries beyond the first word: the library word, then the 
+   folder word, for each additional group of 64 libraries. 
+  */
+  private     long[]              moreBits = null;
   
   public TunesSources() {
-    sources = new boolean[MAX_LIBS * 2];
-    for (int i = 0; i < MAX_LIBS; i = i + 2) {
-      sources[i] = false;
-      sources[i + 1] = false;
-    }
+    
   }
   
+  /**
+   Add the sources of another object to this one. 
+  
+   @param sources2 The sources to be added. 
+  */
   public void merge(TunesSources sources2) {
-    for (int i = 0; i < MAX_LIBS; i++) {
-      if (sources2.isFromLibrary(i)) {
-        setFromLibrary(i);
+    libraryBits = libraryBits | sources2.libraryBits;
+    folderBits = folderBits | sources2.folderBits;
+    if (sources2.moreBits != null) {
+      ensureCapacity(sources2.moreBits.length);
+      for (int i = 0; i < sources2.moreBits.length; i++) {
+        moreBits[i] = moreBits[i] | sources2.moreBits[i];
+      }
+    }
+  }
+  
+  /**
+   Did this info come from any library, or from any music folder?
+  
+   @return True if any source has been recorded. 
+  */
+  public boolean isFromAnySource() {
+    if ((libraryBits | folderBits) != 0) {
+      return true;
+    }
+    if (moreBits != null) {
+      for (int i = 0; i < moreBits.length; i++) {
+        if (moreBits[i] != 0) {
+          return true;
+        }
       }
-      if (sources2.isFromFolder(i)) {
-        setFromFolder(i);
+    }
+    return false;
+  }
+  
+  /**
+   Did this info come from any music folder?
+  
+   @return True if found in the music folder for any library. 
+  */
+  public boolean isFromAnyFolder() {
+    if (folderBits != 0) {
+      return true;
+    }
+    if (moreBits != null) {
+      for (int i = 1; i < moreBits.length; i = i + 2) {
+        if (moreBits[i] != 0) {
+          return true;
+        }
       }
     }
+    return false;
   }
   
   public boolean isFromBoth(int libIndex) {
-    return (isFromLibrary(libIndex) && isFromFolder(libIndex));
+    if (libIndex < 0) {
+      return false;
+    }
+    int word = libIndex / LIBS_PER_WORD;
+    long both = getLibraryWord(word) & getFolderWord(word);
+    return ((both & bit(libIndex)) != 0);
+  }
+  
+  /**
+   Find the next library for which this info did not come from both the 
+   library file and the music folder. 
+  
+   @param fromIndex          The first library index to be checked. 
+   @param numberOfLibraries  The number of libraries in the collection. 
+  
+   @return The index of the next such library, or -1 if there are no more. 
+  */
+  public int nextIncomplete(int fromIndex, int numberOfLibraries) {
+    int libIndex = Math.max(0, fromIndex);
+    while (libIndex < numberOfLibraries) {
+      int word = libIndex / LIBS_PER_WORD;
+      long incomplete = (~(getLibraryWord(word) & getFolderWord(word)))
+          & (-1L << (libIndex % LIBS_PER_WORD));
+      if (incomplete != 0) {
+        int found = (word * LIBS_PER_WORD) 
+            + Long.numberOfTrailingZeros(incomplete);
+        if (found < numberOfLibraries) {
+          return found;
+        } else {
+          return -1;
+        }
+      }
+      libIndex = (word + 1) * LIBS_PER_WORD;
+    }
+    return -1;
   }
   
   public void setFromLibrary(int libIndex) {
@@ -56,14 +145,21 @@ public class TunesSources {
   }
   
   public void setFromLibrary(boolean fromLibrary, int libIndex) {
-    if (libIndex >= 0 && libIndex < MAX_LIBS) {
-      sources[libIndex * 2] = fromLibrary;
+    if (libIndex >= 0) {
+      int word = libIndex / LIBS_PER_WORD;
+      long bits = getLibraryWord(word);
+      if (fromLibrary) {
+        bits = bits | bit(libIndex);
+      } else {
+        bits = bits & (~bit(libIndex));
+      }
+      setWord(word, 0, bits);
     }
   }
   
   public boolean isFromLibrary(int libIndex) {
-    if (libIndex >= 0 && libIndex < MAX_LIBS) {
-      return sources[libIndex * 2];
+    if (libIndex >= 0) {
+      return ((getLibraryWord(libIndex / LIBS_PER_WORD) & bit(libIndex)) != 0);
     } else {
       return false;
     }
@@ -74,17 +170,124 @@ public class TunesSources {
   }
   
   public void setFromFolder(boolean fromFolder, int libIndex) {
-    if (libIndex >= 0 && libIndex < MAX_LIBS) {
-      sources[(libIndex * 2) + 1] = fromFolder;
+    if (libIndex >= 0) {
+      int word = libIndex / LIBS_PER_WORD;
+      long bits = getFolderWord(word);
+      if (fromFolder) {
+        bits = bits | bit(libIndex);
+      } else {
+        bits = bits & (~bit(libIndex));
+      }
+      setWord(word, 1, bits);
     }
   }
   
   public boolean isFromFolder(int libIndex) {
-    if (libIndex >= 0 && libIndex < MAX_LIBS) {
-      return sources[(libIndex * 2) + 1];
+    if (libIndex >= 0) {
+      return ((getFolderWord(libIndex / LIBS_PER_WORD) & bit(libIndex)) != 0);
     } else {
       return false;
     }
   }
+  
+  /**
+   Write the sources to a snapshot. 
+  */
+  void writeSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    snapshot.writeLong(libraryBits);
+    snapshot.writeLong(folderBits);
+    if (moreBits == null) {
+      snapshot.writeInt(0);
+    } else {
+      snapshot.writeInt(moreBits.length);
+      for (int i = 0; i < moreBits.length; i++) {
+        snapshot.writeLong(moreBits[i]);
+      }
+    }
+  }
+  
+  /**
+   Read the sources from a snapshot. 
+  */
+  void readSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    libraryBits = snapshot.readLong();
+    folderBits = snapshot.readLong();
+    int numberOfWords = snapshot.readInt();
+    if (numberOfWords < 0 || numberOfWords % 2 != 0) {
+      throw new IOException("Invalid sources in snapshot");
+    }
+    if (numberOfWords == 0) {
+      moreBits = null;
+    } else {
+      moreBits = new long[numberOfWords];
+      for (int i = 0; i < numberOfWords; i++) {
+        moreBits[i] = snapshot.readLong();
+      }
+    }
+  }
+  
+  private static long bit(int libIndex) {
+    return (1L << (libIndex % LIBS_PER_WORD));
+  }
+  
+  private long getLibraryWord(int word) {
+    if (word == 0) {
+      return libraryBits;
+    } else {
+      return getMoreBits((word - 1) * 2);
+    }
+  }
+  
+  private long getFolderWord(int word) {
+    if (word == 0) {
+      return folderBits;
+    } else {
+      return getMoreBits(((word - 1) * 2) + 1);
+    }
+  }
+  
+  private long getMoreBits(int i) {
+    if (moreBits != null && i < moreBits.length) {
+      return moreBits[i];
+    } else {
+      return 0;
+    }
+  }
+  
+  /**
+   Store one word of bits. 
+  
+   @param word   The word index: zero for the first 64 libraries, and so on. 
+   @param folder Zero for the library word, one for the folder word. 
+   @param bits   The bits to be stored. 
+  */
+  private void setWord(int word, int folder, long bits) {
+    if (word == 0) {
+      if (folder == 0) {
+        libraryBits = bits;
+      } else {
+        folderBits = bits;
+      }
+    } else {
+      int i = ((word - 1) * 2) + folder;
+      if (bits != 0 || moreBits != null) {
+        ensureCapacity(i + 1);
+        moreBits[i] = bits;
+      }
+    }
+  }
+  
+  private void ensureCapacity(int length) {
+    int evenLength = length + (length % 2);
+    if (moreBits == null) {
+      moreBits = new long[evenLength];
+    }
+    else
+    if (moreBits.length < evenLength) {
+      moreBits = Arrays.copyOf(moreBits, evenLength);
+    }
+  }
 
 }
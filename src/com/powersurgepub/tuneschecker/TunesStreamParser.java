@@ -0,0 +1,364 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import com.powersurgepub.psutils.*;
+  import java.io.*;
+  import javax.xml.stream.*;
+
+/**
+ Reads an iTunes Library XML file with a StAX pull parser, passing keys and
+ values to a TunesParser as they are encountered. A single text buffer is
+ reused for every element, and the Playlists array is skipped without
+ collecting any of its text.
+
+ @author Herb Bowie
+ */
+class TunesStreamParser {
+
+  public static final String      DICT          = "dict";
+  public static final String      ARRAY         = "array";
+  public static final String      KEY           = "key";
+  public static final String      STRING        = "string";
+  public static final String      INTEGER       = "integer";
+  public static final String      TRUE          = "true";
+
+  public static final int         BUFFER_SIZE   = 64 * 1024;
+
+  private     TunesParser         handler;
+
+  /** Log used to record events. */
+  private     Logger              log = Logger.getShared();
+
+  /** Text of the current element, reused for every element. */
+  private     StringBuilder       text = new StringBuilder(256);
+
+  /** The most recent key seen. */
+  private     TunesKey            key = TunesKey.OTHER;
+
+  /** Nesting level of dict elements, with the outermost dict at level 1. */
+  private     int                 dictLevel = 0;
+
+  /** Are we within the dict holding all of the tracks? */
+  private     boolean             inTracks = false;
+
+  /** The number of bytes read from the library file by the last parse. */
+  private     long                bytesRead = 0;
+
+  /**
+   Create a new stream parser.
+
+   @param handler The parser that will store the keys and values into
+                  its tunes collection.
+  */
+  public TunesStreamParser(TunesParser handler) {
+    this.handler = handler;
+  }
+
+  /**
+     Sets a logger to be used for logging operations.
+
+     @param log Logger instance.
+   */
+  public void setLog (Logger log) {
+    this.log = log;
+  }
+
+  /**
+   Parse the passed library file, logging any errors encountered.
+
+   @param xmlFile The iTunes Library XML file to be parsed.
+  */
+  public void parse(File xmlFile) {
+    InputStream in = null;
+    ProgressInputStream counter = null;
+    XMLStreamReader reader = null;
+    bytesRead = 0;
+    try {
+      TunesProgress progress = handler.getProgress();
+      progress.setBytesTotal(xmlFile.length());
+      counter = new ProgressInputStream(new FileInputStream(xmlFile), progress);
+      in = new BufferedInputStream(counter, BUFFER_SIZE);
+      reader = createFactory().createXMLStreamReader(in);
+      parse(reader);
+    }
+    catch (XMLStreamException xse) {
+      log.recordEvent (LogEvent.MEDIUM,
+          "Encountered XML stream error while reading XML file "
+          + xmlFile.toString() + xse.toString(),
+          false);
+    }
+    catch (IOException ioe) {
+      log.recordEvent (LogEvent.MEDIUM,
+          "Encountered I/O error while reading XML file " + xmlFile.toString()
+          + ioe.toString(),
+          false);
+    }
+    finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          // Nothing more we can do
+        }
+      }
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // Nothing more we can do
+        }
+      }
+      if (counter != null) {
+        bytesRead = counter.getBytesRead();
+      }
+    }
+  }
+
+  /**
+   Return the number of bytes read from the library file by the last parse.
+
+   @return The number of bytes read.
+  */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   Build a factory that won't try to fetch the plist DTD from Apple.
+
+   @return A factory for non-validating, non-coalescing readers.
+  */
+  private XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty
+        (XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    return factory;
+  }
+
+  /**
+   Pull events from the reader until the end of the document.
+
+   @param reader The reader positioned at the start of the document.
+  */
+  private void parse(XMLStreamReader reader)
+      throws XMLStreamException {
+
+    key = TunesKey.OTHER;
+    dictLevel = 0;
+    inTracks = false;
+    TunesProgress progress = handler.getProgress();
+
+    while (reader.hasNext()
+        && (! progress.isCancelled())) {
+      int event = reader.next();
+      switch (event) {
+        case XMLStreamConstants.START_ELEMENT:
+          startElement(reader);
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+          text.append(reader.getTextCharacters(),
+              reader.getTextStart(), reader.getTextLength());
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          endElement(reader.getLocalName());
+          break;
+        default:
+          break;
+      }
+    } // end while more events to process
+  }
+
+  /**
+   Handle the start of a new element.
+
+   @param reader The reader positioned at the start of the element.
+  */
+  private void startElement(XMLStreamReader reader)
+      throws XMLStreamException {
+
+    text.setLength(0);
+    String localName = reader.getLocalName();
+    if (localName.equals(DICT)) {
+      dictLevel++;
+      if (dictLevel == 2 && key == TunesKey.TRACKS) {
+        inTracks = true;
+      }
+      handler.startDict();
+    }
+    else
+    if (localName.equals(ARRAY)
+        && dictLevel == 1
+        && key == TunesKey.PLAYLISTS) {
+      skipElement(reader);
+    }
+  }
+
+  /**
+   Handle the end of an element.
+
+   @param localName The name of the element being ended.
+  */
+  private void endElement(String localName) {
+    if (localName.equals(KEY)) {
+      key = TunesKey.lookup(text);
+      handler.storeKey(key);
+    }
+    else
+    if (localName.equals(STRING)) {
+      handler.storeString(text.toString());
+    }
+    else
+    if (localName.equals(INTEGER)) {
+      handler.storeInteger(parseLong(text));
+    }
+    else
+    if (localName.equals(TRUE)) {
+      handler.storeTrue();
+    }
+    else
+    if (localName.equals(DICT)) {
+      if (inTracks && dictLevel == 3) {
+        handler.endDict();
+      }
+      else
+      if (dictLevel == 2) {
+        inTracks = false;
+      }
+      dictLevel--;
+    }
+    text.setLength(0);
+  }
+
+  /**
+   Skip past the remainder of the current element, including all of its
+   children, without collecting any text.
+
+   @param reader The reader positioned at the start of the element.
+  */
+  private void skipElement(XMLStreamReader reader)
+      throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      }
+      else
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  /**
+   Convert the text of an integer element without creating a String,
+   returning zero if the text is not a valid long, just as
+   TunesParser.storeInteger(String) does.
+
+   @param chars The text of an integer element.
+
+   @return The value of the integer, or zero.
+  */
+  static long parseLong(CharSequence chars) {
+    int length = chars.length();
+    if (length == 0 || length > 18) {
+      // Leave the edge cases to the library
+      try {
+        return Long.parseLong(chars.toString());
+      } catch (NumberFormatException e) {
+        return 0;
+      }
+    }
+    int i = 0;
+    boolean negative = false;
+    char c = chars.charAt(0);
+    if (c == '-' || c == '+') {
+      negative = (c == '-');
+      i++;
+      if (length == 1) {
+        return 0;
+      }
+    }
+    long value = 0;
+    while (i < length) {
+      c = chars.charAt(i);
+      if (c < '0' || c > '9') {
+        return 0;
+      }
+      value = (value * 10) + (c - '0');
+      i++;
+    }
+    if (negative) {
+      return 0 - value;
+    } else {
+      return value;
+    }
+  }
+
+  /**
+   Counts the bytes read from the library file, a buffer at a time,
+   reporting them both as progress and as a metric.
+  */
+  static class ProgressInputStream
+      extends FilterInputStream {
+
+    private static final TunesMetrics.Counter bytesCounter
+        = TunesMetrics.getShared().getCounter
+          ("parse.bytes", "Bytes read from library files");
+
+    private TunesProgress progress;
+    private long          bytesRead = 0;
+
+    ProgressInputStream(InputStream in, TunesProgress progress) {
+      super(in);
+      this.progress = progress;
+    }
+
+    @Override
+    public int read()
+        throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        progress.addBytesRead(1);
+        bytesCounter.increment();
+        bytesRead++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+        throws IOException {
+      int count = super.read(b, off, len);
+      if (count > 0) {
+        progress.addBytesRead(count);
+        bytesCounter.add(count);
+        bytesRead = bytesRead + count;
+      }
+      return count;
+    }
+
+    long getBytesRead() {
+      return bytesRead;
+    }
+  }
+
+}
@@ -16,9 +16,6 @@
 package com.powersurgepub.tuneschecker;
 
   import com.powersurgepub.psdatalib.psdata.*;
-  import com.powersurgepub.psdatalib.tabdelim.*;
-  import com.powersurgepub.psdatalib.txbio.*;
-  import com.powersurgepub.psdatalib.txbmodel.*;
   import java.io.*;
   import java.util.*;
   import javax.swing.tree.*;
@@ -76,7 +73,7 @@ public class TunesTrack
     this.tunesAlbum = tunesAlbum;
   }
   
-  private TunesAlbum getTunesAlbum() {
+  public TunesAlbum getTunesAlbum() {
     return tunesAlbum;
   }
   
@@ -305,6 +302,96 @@ public class TunesTrack
     return file;
   }
   
+  /**
+   Write this track, and all of its files, to a snapshot. 
+  
+   @param snapshot The snapshot being written. 
+  */
+  void writeSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    snapshot.writeInt(trackNumber);
+    snapshot.writeString(name);
+    snapshot.writeString(sortName);
+    snapshot.writeString(fileName);
+    commonName.writeSnapshot(snapshot);
+    snapshot.writeString(sortArtist);
+    snapshot.writeString(artist);
+    snapshot.writeString(composer);
+    snapshot.writeString(genre);
+    snapshot.writeInt(year);
+    snapshot.writeInt(rating);
+    snapshot.writeInt(totalTime);
+    sources.writeSnapshot(snapshot);
+    snapshot.writeInt(files.size());
+    for (TunesFile nextFile: files) {
+      nextFile.writeSnapshot(snapshot);
+    }
+  }
+  
+  /**
+   Read this track, and all of its files, from a snapshot. 
+  
+   @param snapshot The snapshot being read. 
+  */
+  void readSnapshot(TunesSnapshot snapshot) 
+      throws IOException {
+    trackNumber = snapshot.readInt();
+    name = snapshot.readString();
+    sortName = snapshot.readString();
+    fileName = snapshot.readString();
+    commonName.readSnapshot(snapshot);
+    sortArtist = snapshot.readString();
+    artist = snapshot.readString();
+    composer = snapshot.readString();
+    genre = snapshot.readString();
+    year = snapshot.readInt();
+    rating = snapshot.readInt();
+    totalTime = snapshot.readInt();
+    sources.readSnapshot(snapshot);
+    int numberOfFiles = snapshot.readInt();
+    for (int i = 0; i < numberOfFiles; i++) {
+      TunesFile nextFile = new TunesFile();
+      nextFile.readSnapshot(snapshot);
+      nextFile.setTunesTrack(this);
+      files.add(nextFile);
+    }
+    if (files.isEmpty()) {
+      file = new TunesFile();
+      index = -1;
+    } else {
+      file = files.get(0);
+      index = 0;
+    }
+  }
+  
+  /**
+   Return the file stored for a location. 
+  
+   @param location The location of the file. 
+  
+   @return The file, or null if no file has been stored for the location. 
+  */
+  public TunesFile getFile(File location) {
+    for (TunesFile nextFile: files) {
+      if (nextFile.getLocation() != null
+          && nextFile.getLocation().equals(location)) {
+        return nextFile;
+      }
+    }
+    return null;
+  }
+  
+  /**
+   Remove a file from this track. 
+  
+   @param fileToRemove The file to be removed. 
+  */
+  public void removeFile(TunesFile fileToRemove) {
+    files.remove(fileToRemove);
+    file = new TunesFile();
+    index = -1;
+  }
+  
   public void display() {
     System.out.print("      " + String.valueOf(trackNumber) + ". ");
     System.out.print(sortName);
@@ -318,30 +405,37 @@ public class TunesTrack
   }
   
   /**
-   Analyze this object and identify any anomalies. 
+   Analyze this object and identify any anomalies. Nothing outside this 
+   object and those below it is changed, so that many objects may be 
+   analyzed at once. 
+  
+   @param collection The collection containing this object. 
+   @param analysis   The options for this analysis. 
+   @param found      The sink to which any anomalies are to be passed, in 
+                     the sequence in which they are to appear. 
   */
-  public void analyze(TunesCollection collection, TunesAnalysis analysis) {
+  public void analyze(
+      TunesCollection collection, 
+      TunesAnalysis analysis, 
+      AnomalySink found) {
     
     // Analyze this track
-    for (int libIndex = 0; libIndex < collection.getNumberOfLibraries(); libIndex++) {
-      if (sources.isFromBoth(libIndex)) {
-        // Everything is cool
-      }
-      else
+    // Only libraries missing either the library entry or the folder matter
+    int numberOfLibraries = collection.getNumberOfLibraries();
+    for (int libIndex = sources.nextIncomplete(0, numberOfLibraries); 
+        libIndex >= 0; 
+        libIndex = sources.nextIncomplete(libIndex + 1, numberOfLibraries)) {
       if (sources.isFromFolder(libIndex)) {
-        collection.addAnomaly(libIndex, this,  
-            analysis.getAnomalyType(AnomalyTypeTable.ON_DISK_NOT_IN_LIB), 
-            analysis);
+        found.add(new TunesAnomaly(libIndex, this, 
+            analysis.getAnomalyType(AnomalyTypeTable.ON_DISK_NOT_IN_LIB)));
       } 
       else
       if (sources.isFromLibrary(libIndex)) {
-        collection.addAnomaly(libIndex, this,  
-            analysis.getAnomalyType(AnomalyTypeTable.IN_LIB_NOT_ON_DISK), 
-            analysis);
+        found.add(new TunesAnomaly(libIndex, this, 
+            analysis.getAnomalyType(AnomalyTypeTable.IN_LIB_NOT_ON_DISK)));
       } else {
-        collection.addAnomaly(libIndex, this, 
-            analysis.getAnomalyType(AnomalyTypeTable.MISSING_FROM_LIBRARY), 
-            analysis);
+        found.add(new TunesAnomaly(libIndex, this, 
+            analysis.getAnomalyType(AnomalyTypeTable.MISSING_FROM_LIBRARY)));
       }
     } // end for each library
     
@@ -354,20 +448,15 @@ public class TunesTrack
   /**
    Export this object to an OPML file. 
   
-   @param writer The OPML writer. 
+   @param exporter The OPML exporter. 
   */
-  public void exportToOPML(MarkupWriter writer) {
-    writer.startOutlineOpen();
-    writer.writeOutlineAttribute(TextType.TEXT, name);
-    writer.writeOutlineAttribute("Number", 
-        String.format("%02d", getTrackNumber()));
-    writer.writeOutlineAttribute("Genre", genre);
-    writer.writeOutlineAttribute("Rating", String.valueOf(rating / 20.0));
-    writer.startOutlineClose();
-    /* for (TunesTrack nextTrack: tracks) {
-      nextTrack.exportToOPML(writer);
-    } */
-    writer.endOutline();
+  public void exportToOPML(OPMLExporter exporter) {
+    exporter.startOutlineOpen();
+    exporter.writeOutlineAttribute(OPMLExporter.TEXT, name);
+    exporter.writeOutlineAttribute(OPMLExporter.NUMBER, getTrackNumber(), 2);
+    exporter.writeOutlineAttribute(OPMLExporter.GENRE, genre);
+    exporter.writeRatingAttribute(OPMLExporter.RATING, rating);
+    exporter.closeEmptyOutline();
   }
   
   public static void addRecDefColumns(RecordDefinition recDef) {
@@ -387,29 +476,49 @@ public class TunesTrack
     // TunesTrack.addRecDefColumns(recDef);
   }
   
-  public void exportToTabDelim(
-      TabDelimFile tdf, 
-      RecordDefinition recDef, 
-      DataRecord rec) 
-        throws IOException {
+  public void exportToTabDelim(TabDelimExporter exporter) 
+      throws IOException {
     
-    rec.storeField(recDef, TRACK_NUMBER, 
-        String.format("%02d", getTrackNumber()));
-    rec.storeField(recDef, TRACK_NAME, name);
-    rec.storeField(recDef, TRACK_SORT_NAME, sortName);
-    rec.storeField(recDef, TRACK_FILE_NAME, fileName);
-    rec.storeField(recDef, TRACK_COMMON_NAME, commonName.toString());
-    rec.storeField(recDef, TRACK_ARTIST, artist);
-    rec.storeField(recDef, COMPOSER, composer);
-    rec.storeField(recDef, GENRE, genre);
-    rec.storeField(recDef, YEAR, String.valueOf(year));
-    rec.storeField(recDef, RATING, String.valueOf(rating / 20.0));
-    rec.storeField(recDef, PLAYING_TIME, String.valueOf(totalTime));
+    exporter.setField(exporter.trackNumberColumn, getTrackNumber(), 2);
+    exporter.setField(exporter.trackNameColumn, name);
+    exporter.setField(exporter.trackSortNameColumn, sortName);
+    exporter.setField(exporter.trackFileNameColumn, fileName);
+    exporter.setField(exporter.trackCommonNameColumn, commonName.toString());
+    exporter.setField(exporter.trackArtistColumn, artist);
+    exporter.setField(exporter.composerColumn, composer);
+    exporter.setField(exporter.genreColumn, genre);
+    exporter.setField(exporter.yearColumn, year, 1);
+    exporter.setRatingField(exporter.ratingColumn, rating);
+    exporter.setField(exporter.playingTimeColumn, totalTime, 1);
     
-    tdf.nextRecordOut(rec);
+    exporter.endRecord();
     
   }
   
+  /**
+   Export this object to a columnar file, with a row for each of its 
+   files, or a single row with empty file columns if it has none. 
+  
+   @param exporter The columnar exporter. 
+  */
+  public void exportToColumnar(ColumnarExporter exporter) 
+      throws IOException {
+    
+    exporter.setField(ColumnarExporter.TRACK_NUMBER, getTrackNumber());
+    exporter.setField(ColumnarExporter.TRACK_NAME, name);
+    exporter.setField(ColumnarExporter.GENRE, genre);
+    exporter.setField(ColumnarExporter.YEAR, year);
+    exporter.setField(ColumnarExporter.RATING, rating);
+    exporter.setField(ColumnarExporter.PLAYING_TIME, totalTime);
+    if (files.isEmpty()) {
+      new TunesFile().exportToColumnar(exporter);
+    } else {
+      for (TunesFile nextFile: files) {
+        nextFile.exportToColumnar(exporter);
+      }
+    }
+  }
+  
   /**
    Return a string to be used to identify the node in the anomaly tree. 
   
@@ -450,5 +559,15 @@ public class TunesTrack
   public DefaultMutableTreeNode getAnomalyNode() {
     return anomalyNode;
   }
+  
+  /**
+   Forget the results of any earlier analysis of this track and its files. 
+  */
+  public void clearAnomalies() {
+    anomalyNode = null;
+    for (TunesFile nextFile: files) {
+      nextFile.clearAnomalies();
+    }
+  }
 
 }
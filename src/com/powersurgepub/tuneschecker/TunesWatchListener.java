@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.util.*;
+
+/**
+ Something that wants to know when a TunesWatcher has seen changes to a
+ library. Both methods are called on the watcher's own thread, once changes
+ have stopped arriving for a moment.
+
+ @author Herb Bowie
+ */
+public interface TunesWatchListener {
+
+  /**
+   Entries have been added to, or removed from, the music folder.
+
+   @param libIndex          The index of the library whose music folder
+                            has changed.
+   @param artistFolderNames The names of the artist folders in which changes
+                            were seen, or null if so many changes were seen
+                            that the entire music folder should be checked.
+  */
+  public void musicFoldersChanged(int libIndex, Set<String> artistFolderNames);
+
+  /**
+   The library file has been written.
+
+   @param libIndex The index of the library whose file has changed.
+  */
+  public void libraryChanged(int libIndex);
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import com.powersurgepub.psutils.*;
+  import java.io.*;
+  import java.nio.file.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+
+/**
+ Watches one library for changes, using a WatchService registered with the
+ Media Music folder, each artist and album folder within it, and the folder
+ containing the library file. Changes are gathered together until none have
+ arrived for a moment, and are then passed to a listener as the set of
+ artist folders affected.
+
+ Note that each watched folder uses a watch of its own, and that some
+ systems limit the number of watches available to each user.
+
+ @author Herb Bowie
+ */
+public class TunesWatcher
+    implements Runnable {
+
+  /** How long changes must stop arriving before they are passed along. */
+  public static final long        QUIET_MILLIS  = 1000;
+
+  /** Depth of an album folder below the Media Music folder. */
+  private static final int        ALBUM_DEPTH   = 2;
+
+  private     int                 libIndex;
+  private     Path                musicPath;
+  private     Path                libraryPath;
+  private     TunesWatchListener  listener;
+
+  private     WatchService        watcher = null;
+  private     HashMap<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+  private     Thread              thread = null;
+  private volatile boolean        running = false;
+
+  /** Changes seen since the listener was last called. */
+  private     TreeSet<String>     artistFolderNames = new TreeSet<String>();
+  private     boolean             overflow = false;
+  private     boolean             libraryChanged = false;
+
+  /**
+   Prepare to watch a library.
+
+   @param libIndex    The index of the library to be watched.
+   @param musicFolder The library's Media Music folder.
+   @param libraryFile The library file, or null if only the music folder
+                      is to be watched.
+   @param listener    The listener to be told of changes.
+  */
+  public TunesWatcher(
+      int libIndex,
+      File musicFolder,
+      File libraryFile,
+      TunesWatchListener listener) {
+
+    this.libIndex = libIndex;
+    this.musicPath = musicFolder.toPath().toAbsolutePath();
+    if (libraryFile != null) {
+      this.libraryPath = libraryFile.toPath().toAbsolutePath();
+    }
+    this.listener = listener;
+  }
+
+  public int getLibIndex() {
+    return libIndex;
+  }
+
+  /**
+   Register the folders to be watched, and start watching them on a new
+   daemon thread.
+
+   @throws IOException If the folders could not be registered.
+  */
+  public void start()
+      throws IOException {
+    watcher = FileSystems.getDefault().newWatchService();
+    try {
+      if (libraryPath != null
+          && libraryPath.getParent() != null) {
+        register(libraryPath.getParent());
+      }
+      registerTree(musicPath, 0);
+    } catch (IOException e) {
+      watcher.close();
+      throw e;
+    }
+    running = true;
+    thread = new Thread(this, "TunesWatcher " + String.valueOf(libIndex + 1));
+    thread.setDaemon(true);
+    thread.start();
+    Logger.getShared().recordEvent(LogEvent.NORMAL,
+        "Watching " + String.valueOf(keys.size()) + " folders for library "
+        + String.valueOf(libIndex + 1), false);
+  }
+
+  /**
+   Stop watching. Any changes not yet passed along are dropped.
+  */
+  public void stop() {
+    running = false;
+    if (watcher != null) {
+      try {
+        watcher.close();
+      } catch (IOException e) {
+        // Nothing more we can do
+      }
+    }
+  }
+
+  /**
+   Wait for changes, and pass them along once they stop arriving.
+  */
+  @Override
+  public void run() {
+    try {
+      while (running) {
+        WatchKey key = watcher.take();
+        while (key != null) {
+          processEvents(key);
+          key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        notifyListener();
+      }
+    } catch (InterruptedException e) {
+      // Time to stop
+    } catch (ClosedWatchServiceException e) {
+      // We've been asked to stop
+    }
+    running = false;
+  }
+
+  /**
+   Note the artist folders affected by the events for one watched folder,
+   and start watching any new artist or album folders.
+  */
+  private void processEvents(WatchKey key) {
+    Path dir = keys.get(key);
+    if (dir != null) {
+      for (WatchEvent<?> event: key.pollEvents()) {
+        WatchEvent.Kind<?> kind = event.kind();
+        if (kind == StandardWatchEventKinds.OVERFLOW) {
+          overflow = true;
+        } else {
+          Path child = dir.resolve((Path)event.context());
+          if (child.equals(libraryPath)) {
+            libraryChanged = true;
+          }
+          if (child.startsWith(musicPath)
+              && (! child.equals(musicPath))) {
+            Path relative = musicPath.relativize(child);
+            String artistFolderName = relative.getName(0).toString();
+            if (! artistFolderName.startsWith(".")) {
+              artistFolderNames.add(artistFolderName);
+              if (kind == StandardWatchEventKinds.ENTRY_CREATE
+                  && relative.getNameCount() <= ALBUM_DEPTH
+                  && Files.isDirectory(child)) {
+                try {
+                  registerTree(child, relative.getNameCount());
+                } catch (IOException e) {
+                  Logger.getShared().recordEvent(LogEvent.MINOR,
+                      "Could not watch new folder " + child.toString(),
+                      false);
+                }
+              }
+            }
+          } // end if change within the music folder
+        }
+      } // end for each event
+    }
+    if (! key.reset()) {
+      keys.remove(key);
+    }
+  }
+
+  /**
+   Pass along the changes gathered so far.
+  */
+  private void notifyListener() {
+    if (overflow) {
+      listener.musicFoldersChanged(libIndex, null);
+    }
+    else
+    if (! artistFolderNames.isEmpty()) {
+      listener.musicFoldersChanged(libIndex,
+          Collections.unmodifiableSet(artistFolderNames));
+    }
+    if (libraryChanged) {
+      listener.libraryChanged(libIndex);
+    }
+    artistFolderNames = new TreeSet<String>();
+    overflow = false;
+    libraryChanged = false;
+  }
+
+  /**
+   Watch a folder, along with any artist or album folders within it.
+
+   @param dir   The folder to be watched.
+   @param depth The depth of the folder below the Media Music folder.
+  */
+  private void registerTree(Path dir, int depth)
+      throws IOException {
+    register(dir);
+    if (depth < ALBUM_DEPTH) {
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+        for (Path entry: entries) {
+          if ((! entry.getFileName().toString().startsWith("."))
+              && Files.isDirectory(entry)) {
+            registerTree(entry, depth + 1);
+          }
+        }
+      }
+    }
+  }
+
+  private void register(Path dir)
+      throws IOException {
+    WatchKey key = dir.register(watcher,
+        StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_DELETE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+    keys.put(key, dir);
+  }
+
+}
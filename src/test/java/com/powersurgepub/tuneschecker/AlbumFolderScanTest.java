@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.nio.file.*;
+  import org.junit.*;
+  import org.junit.rules.*;
+  import static org.junit.Assert.*;
+
+/**
+ Scans album folders holding entries that cannot all be read. 
+
+ @author Herb Bowie
+ */
+public class AlbumFolderScanTest {
+  
+  public static final int       TRACKS = 6;
+  
+  @Rule
+  public TemporaryFolder        folder = new TemporaryFolder();
+  
+  /**
+   A link to a track file that is no longer there must not cut the scan 
+   of the album short: every track is still found, and the link is listed 
+   as a track without a file. 
+  */
+  @Test
+  public void danglingLink() 
+      throws IOException {
+    File albumFolder = folder.newFolder("Alb1");
+    for (int track = 1; track <= TRACKS; track++) {
+      Files.write(new File(albumFolder, 
+          "0" + String.valueOf(track) + " Song.mp3").toPath(), new byte[16]);
+    }
+    Path link = new File(albumFolder, "07 Gone.mp3").toPath();
+    Files.createSymbolicLink(link, new File(folder.getRoot(), "gone.mp3").toPath());
+    Assume.assumeTrue(Files.isSymbolicLink(link));
+    
+    AlbumFolderScan scan 
+        = new AlbumFolderScan(albumFolder.toPath(), "Alb1", 0);
+    assertTrue(scan.scan());
+    assertEquals(TRACKS + 1, scan.getNumberOfTracks());
+    int files = 0;
+    for (int i = 0; i < scan.getNumberOfTracks(); i++) {
+      if (scan.getFile(i) != null) {
+        assertEquals(16, scan.getFile(i).getSize());
+        files++;
+      }
+    }
+    assertEquals(TRACKS, files);
+    assertEquals(albumFolder.lastModified(), scan.getLastModified());
+  }
+  
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.util.*;
+  import org.junit.*;
+  import org.junit.rules.*;
+  import static org.junit.Assert.*;
+
+/**
+ Exports rows to columnar files and reads them back with ColumnarReader, 
+ comparing every column of every row. 
+
+ @author Herb Bowie
+ */
+public class ColumnarExporterTest {
+  
+  public static final int       COLUMNS = ColumnarExporter.COLUMN_NAMES.length;
+  
+  /** Values for the packed columns, at both ends of their range. */
+  private static final long[]   EXTREMES = {
+      -5, Long.MAX_VALUE, Long.MIN_VALUE, 0, 7, -1, Long.MIN_VALUE + 1
+  };
+  
+  private static final String[] WORDS = {
+      "", "The Beatles", "Björk", "Sigur Rós", "坂本龍一", "é😀", "Rock", "Jazz"
+  };
+  
+  @Rule
+  public TemporaryFolder        folder = new TemporaryFolder();
+  
+  @Test
+  public void emptyCollection() 
+      throws IOException {
+    File file = folder.newFile("empty" + ColumnarExporter.SUFFIX);
+    new TunesCollection().exportToColumnar(file);
+    ColumnarReader reader = new ColumnarReader(file);
+    try {
+      assertEquals(0, reader.getNumberOfRows());
+      assertEquals(0, reader.getNumberOfGroups());
+      assertEquals(COLUMNS, reader.getNumberOfColumns());
+      for (int column = 0; column < COLUMNS; column++) {
+        assertEquals(ColumnarExporter.COLUMN_NAMES[column], 
+            reader.getColumnName(column));
+        assertEquals(ColumnarExporter.COLUMN_TYPES[column], 
+            reader.getColumnType(column));
+      }
+    } finally {
+      reader.close();
+    }
+  }
+  
+  @Test
+  public void extremeValues() 
+      throws IOException {
+    int rows = EXTREMES.length;
+    String[][] strings = new String[COLUMNS][rows];
+    long[][] numbers = new long[COLUMNS][rows];
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < COLUMNS; column++) {
+        strings[column][row] = WORDS[(row + column) % WORDS.length];
+        numbers[column][row] = EXTREMES[(row + column) % EXTREMES.length];
+      }
+    }
+    roundTrip(strings, numbers, rows);
+  }
+  
+  /**
+   Export enough rows to fill two groups and start a third, with random 
+   values, including wide and negative numbers. 
+  */
+  @Test
+  public void multipleGroups() 
+      throws IOException {
+    int rows = ColumnarExporter.ROWS_PER_GROUP * 2 + 1234;
+    Random random = new Random(25);
+    String[][] strings = new String[COLUMNS][rows];
+    long[][] numbers = new long[COLUMNS][rows];
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < COLUMNS; column++) {
+        if (ColumnarExporter.COLUMN_TYPES[column] == ColumnarExporter.PLAIN) {
+          strings[column][row] = WORDS[random.nextInt(WORDS.length)] 
+              + " " + String.valueOf(row);
+        } 
+        else
+        if (ColumnarExporter.COLUMN_TYPES[column] 
+            == ColumnarExporter.DICTIONARY) {
+          strings[column][row] = WORDS[random.nextInt(WORDS.length)];
+        } 
+        else
+        if (column == ColumnarExporter.SIZE) {
+          numbers[column][row] = random.nextLong();
+        } 
+        else
+        if (column == ColumnarExporter.BIT_RATE) {
+          numbers[column][row] = EXTREMES[random.nextInt(EXTREMES.length)];
+        } else {
+          numbers[column][row] = random.nextInt(2000) - 1000;
+        }
+      }
+    }
+    roundTrip(strings, numbers, rows);
+  }
+  
+  /**
+   A file closed without being finished has no footer, and must not be 
+   mistaken for a columnar file. 
+  */
+  @Test(expected = IOException.class)
+  public void unfinishedFile() 
+      throws IOException {
+    File file = folder.newFile("unfinished" + ColumnarExporter.SUFFIX);
+    ColumnarExporter exporter = new ColumnarExporter(file);
+    for (int row = 0; row < 100; row++) {
+      exporter.setField(ColumnarExporter.ARTIST, WORDS[row % WORDS.length]);
+      exporter.endRow();
+    }
+    exporter.close();
+    new ColumnarReader(file).close();
+  }
+  
+  /**
+   Export the given rows, then read them back and compare every column. 
+  
+   @param strings The values of each string column, by column and row. 
+   @param numbers The values of each packed column, by column and row. 
+   @param rows    The number of rows. 
+  */
+  private void roundTrip(String[][] strings, long[][] numbers, int rows) 
+      throws IOException {
+    File file = folder.newFile("rows" + ColumnarExporter.SUFFIX);
+    ColumnarExporter exporter = new ColumnarExporter(file);
+    try {
+      for (int row = 0; row < rows; row++) {
+        for (int column = 0; column < COLUMNS; column++) {
+          if (ColumnarExporter.COLUMN_TYPES[column] == ColumnarExporter.PACKED) {
+            exporter.setField(column, numbers[column][row]);
+          } else {
+            exporter.setField(column, strings[column][row]);
+          }
+        }
+        exporter.endRow();
+      }
+      exporter.finish();
+    } finally {
+      exporter.close();
+    }
+    assertEquals(rows, exporter.getRows());
+    assertEquals(file.length(), exporter.getBytesWritten());
+    
+    ColumnarReader reader = new ColumnarReader(file);
+    try {
+      assertEquals(rows, reader.getNumberOfRows());
+      int groups = (rows + ColumnarExporter.ROWS_PER_GROUP - 1) 
+          / ColumnarExporter.ROWS_PER_GROUP;
+      assertEquals(groups, reader.getNumberOfGroups());
+      int start = 0;
+      for (int group = 0; group < groups; group++) {
+        int groupRows = reader.getGroupRows(group);
+        assertEquals(Math.min(ColumnarExporter.ROWS_PER_GROUP, rows - start), 
+            groupRows);
+        for (int column = 0; column < COLUMNS; column++) {
+          if (ColumnarExporter.COLUMN_TYPES[column] == ColumnarExporter.PACKED) {
+            long[] values = reader.readNumbers(group, column);
+            for (int row = 0; row < groupRows; row++) {
+              assertEquals(ColumnarExporter.COLUMN_NAMES[column] 
+                    + " at row " + String.valueOf(start + row), 
+                  numbers[column][start + row], values[row]);
+            }
+          } else {
+            String[] values = reader.readStrings(group, column);
+            for (int row = 0; row < groupRows; row++) {
+              assertEquals(ColumnarExporter.COLUMN_NAMES[column] 
+                    + " at row " + String.valueOf(start + row), 
+                  strings[column][start + row], values[row]);
+            }
+          }
+        }
+        start = start + groupRows;
+      }
+    } finally {
+      reader.close();
+    }
+  }
+  
+}
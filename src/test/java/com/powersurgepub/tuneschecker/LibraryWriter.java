@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.nio.charset.*;
+  import java.nio.file.*;
+
+/**
+ Writes small iTunes libraries for the tests, each holding one artist with 
+ a few albums, along with a Music folder holding a file for each track. 
+
+ @author Herb Bowie
+ */
+public class LibraryWriter {
+  
+  public static final int       ALBUMS = 2;
+  public static final int       TRACKS = 3;
+  public static final int       TRACK_SIZE = 16;
+  
+  /**
+   Write a library file for one artist, with a Music folder holding a file 
+   for each of its tracks. The albums are named Alb1, Alb2 and so on. 
+  
+   @param libraryFolder The folder to hold the library file and the Music 
+                        folder, which must already exist. 
+   @param artist        The name of the artist. 
+  
+   @return The library file. 
+  */
+  public static File writeLibrary(File libraryFolder, String artist) 
+      throws IOException {
+    String folderURL = "file://localhost" + libraryFolder.getAbsolutePath();
+    StringBuilder xml = new StringBuilder();
+    xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    xml.append("<plist version=\"1.0\">\n<dict>\n");
+    xml.append("<key>Music Folder</key><string>")
+        .append(folderURL).append("/</string>\n");
+    xml.append("<key>Tracks</key>\n<dict>\n");
+    int trackID = 1000;
+    for (int album = 1; album <= ALBUMS; album++) {
+      String albumName = "Alb" + String.valueOf(album);
+      File albumFolder = getAlbumFolder(libraryFolder, artist, albumName);
+      albumFolder.mkdirs();
+      for (int track = 1; track <= TRACKS; track++) {
+        trackID++;
+        String trackName = "Song" + String.valueOf(trackID);
+        String fileName = "0" + String.valueOf(track) + " " + trackName + ".mp3";
+        Files.write(new File(albumFolder, fileName).toPath(), 
+            new byte[TRACK_SIZE]);
+        xml.append("<key>").append(trackID).append("</key>\n<dict>\n");
+        appendKey(xml, "Track ID", trackID);
+        appendKey(xml, "Name", trackName);
+        appendKey(xml, "Artist", artist);
+        appendKey(xml, "Album", albumName);
+        appendKey(xml, "Kind", "MPEG audio file");
+        appendKey(xml, "Size", TRACK_SIZE);
+        appendKey(xml, "Track Number", track);
+        appendKey(xml, "Track Count", TRACKS);
+        appendKey(xml, "Track Type", "File");
+        appendKey(xml, "Location", folderURL + "/Music/" + artist + "/" 
+            + albumName + "/" + fileName.replace(" ", "%20"));
+        xml.append("</dict>\n");
+      }
+    }
+    xml.append("</dict>\n</dict>\n</plist>\n");
+    File libraryFile = new File(libraryFolder, "iTunes Library.xml");
+    Files.write(libraryFile.toPath(), 
+        xml.toString().getBytes(StandardCharsets.UTF_8));
+    return libraryFile;
+  }
+  
+  /**
+   Add a track file to an album folder that is not listed in the library, 
+   making sure that the folder's last modified time changes. 
+  
+   @param libraryFolder The folder holding the library. 
+   @param artist        The name of the artist. 
+   @param albumName     The name of the album. 
+   @param fileName      The name of the track file. 
+  */
+  public static void addTrackFile(
+      File libraryFolder, 
+      String artist, 
+      String albumName, 
+      String fileName) 
+        throws IOException {
+    File albumFolder = getAlbumFolder(libraryFolder, artist, albumName);
+    Files.write(new File(albumFolder, fileName).toPath(), 
+        new byte[TRACK_SIZE]);
+    albumFolder.setLastModified(albumFolder.lastModified() + 60000);
+  }
+  
+  public static File getAlbumFolder(
+      File libraryFolder, 
+      String artist, 
+      String albumName) {
+    return new File(libraryFolder, "Music/" + artist + "/" + albumName);
+  }
+  
+  private static void appendKey(StringBuilder xml, String key, String value) {
+    xml.append("<key>").append(key).append("</key><string>")
+        .append(value).append("</string>\n");
+  }
+  
+  private static void appendKey(StringBuilder xml, String key, int value) {
+    xml.append("<key>").append(key).append("</key><integer>")
+        .append(value).append("</integer>\n");
+  }
+  
+}
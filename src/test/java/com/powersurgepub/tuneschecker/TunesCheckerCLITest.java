@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.nio.charset.*;
+  import java.nio.file.*;
+  import org.junit.*;
+  import org.junit.rules.*;
+  import static org.junit.Assert.*;
+
+/**
+ Runs the command line version against small libraries written on the fly, 
+ each with its own Music folder. 
+
+ @author Herb Bowie
+ */
+public class TunesCheckerCLITest {
+  
+  @Rule
+  public TemporaryFolder        folder = new TemporaryFolder();
+  
+  /**
+   A track added to the first of two libraries after both were saved in 
+   snapshots must be found when the snapshots are loaded, even though the 
+   second library's snapshot, loaded last, knows nothing of it; and must 
+   still be found the next time, once the snapshots have been saved again. 
+  */
+  @Test
+  public void snapshotsOfSeveralLibraries() 
+      throws IOException {
+    File folder1 = folder.newFolder("l1");
+    File library1 = LibraryWriter.writeLibrary(folder1, "Art1");
+    File library2 = LibraryWriter.writeLibrary(folder.newFolder("l2"), "Art2");
+    
+    File before = runCLI("before", true, library1, library2);
+    assertTrue(TunesSnapshot.getSnapshotFile(library1).exists());
+    assertTrue(TunesSnapshot.getSnapshotFile(library2).exists());
+    assertFalse(read(before).contains("Extra"));
+    
+    LibraryWriter.addTrackFile(folder1, "Art1", "Alb1", "02 Extra.mp3");
+    
+    String expected = read(runCLI("full", false, library1, library2));
+    assertTrue(expected.contains("Extra"));
+    assertEquals(expected, read(runCLI("rescanned", true, library1, library2)));
+    assertEquals(expected, read(runCLI("reloaded", true, library1, library2)));
+  }
+  
+  /**
+   Run a complete check, returning the file of anomalies found. 
+  */
+  private File runCLI(String name, boolean useSnapshots, File... libraries) 
+      throws IOException {
+    File anomalies = new File(folder.getRoot(), name + ".txt");
+    String[] args = new String[libraries.length + (useSnapshots ? 4 : 5)];
+    int i = 0;
+    args[i++] = "-threads";
+    args[i++] = "1";
+    args[i++] = "-anomalies";
+    args[i++] = anomalies.getPath();
+    if (! useSnapshots) {
+      args[i++] = "-nosnapshot";
+    }
+    for (File library : libraries) {
+      args[i++] = library.getPath();
+    }
+    int status = new TunesCheckerCLI().run(args);
+    assertTrue("Exit status " + String.valueOf(status), 
+        status != TunesCheckerCLI.EXIT_ERROR);
+    return anomalies;
+  }
+  
+  private String read(File file) 
+      throws IOException {
+    return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+  }
+  
+}
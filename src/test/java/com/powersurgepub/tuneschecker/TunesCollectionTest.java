@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.util.*;
+  import org.junit.*;
+  import org.junit.rules.*;
+  import static org.junit.Assert.*;
+
+/**
+ Loads small libraries into a collection, and analyzes them. 
+
+ @author Herb Bowie
+ */
+public class TunesCollectionTest {
+  
+  @Rule
+  public TemporaryFolder        folder = new TemporaryFolder();
+  
+  /**
+   Artists analyzed again after a change to their folders, as when a 
+   watcher sees the change, must end up with the same anomalies as a 
+   complete analysis would find; and nothing must change until the new 
+   anomalies are put in place of the old. 
+  */
+  @Test
+  public void reanalyzeChangedArtists() 
+      throws IOException {
+    File libraryFolder = folder.newFolder("l1");
+    File libraryFile = LibraryWriter.writeLibrary(libraryFolder, "Art1");
+    TunesParser parser = new TunesParser();
+    TunesCollection tunes = load(libraryFile, parser);
+    TunesAnalysis analysis = new TunesAnalysis();
+    tunes.analyze(analysis);
+    int before = tunes.getAnomalyCount();
+    int nodesBefore = tunes.getAnomalyRoot().getChildCount();
+    
+    LibraryWriter.addTrackFile(libraryFolder, "Art1", "Alb1", "02 Extra.mp3");
+    parser.rescanArtistFolders(tunes, 0, 
+        tunes.getLibrary(0).getMusicFolder(), Collections.singleton("Art1"));
+    assertEquals(1, parser.getArtistsChanged().size());
+    List<ArtistAnalysis> analyses 
+        = tunes.findAnomalies(parser.getArtistsChanged(), analysis);
+    assertEquals(1, analyses.size());
+    assertEquals(before, tunes.getAnomalyCount());
+    assertEquals(nodesBefore, tunes.getAnomalyRoot().getChildCount());
+    
+    tunes.replaceAnomalies(analyses, analysis);
+    TunesCollection reloaded = load(libraryFile, new TunesParser());
+    reloaded.analyze(new TunesAnalysis());
+    assertTrue(reloaded.getAnomalyCount() > before);
+    assertEquals(reloaded.getAnomalyCount(), tunes.getAnomalyCount());
+    assertEquals(reloaded.getAnomalyRoot().getChildCount(), 
+        tunes.getAnomalyRoot().getChildCount());
+  }
+  
+  /**
+   Load a library into a new collection, along with its Music folder. 
+  */
+  private TunesCollection load(File libraryFile, TunesParser parser) {
+    TunesCollection tunes = new TunesCollection();
+    TunesLibrary library = new TunesLibrary();
+    library.setLibraryFile(libraryFile);
+    int libIndex = tunes.addLibrary(library);
+    parser.parseStream(tunes, libIndex, libraryFile.toString());
+    parser.scanMediaMusicFolder(tunes, libIndex, library.getMusicFolder());
+    return tunes;
+  }
+  
+}
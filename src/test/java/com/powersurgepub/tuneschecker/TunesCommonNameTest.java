@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 - 2015 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.powersurgepub.tuneschecker;
+
+  import java.io.*;
+  import java.nio.charset.*;
+  import java.util.*;
+  import org.junit.*;
+  import static org.junit.Assert.*;
+
+/**
+ Checks the keys of common names against a corpus of names, each followed 
+ by the keys expected for it as a generic name, an artist name and a track 
+ name, separated by tabs. The expected keys were produced by the original 
+ tokenizer, before it was rewritten to work in place, so that any change to 
+ the keys of existing libraries shows up here. 
+
+ @author Herb Bowie
+ */
+public class TunesCommonNameTest {
+  
+  public static final String    CORPUS = "common-names.txt";
+  
+  private static final int[]    NAME_TYPES = {
+      TunesCommonName.GENERIC_NAME,
+      TunesCommonName.ARTIST_NAME,
+      TunesCommonName.TRACK_NAME
+  };
+  
+  private     List<String[]>      corpus;
+  
+  @Before
+  public void loadCorpus() 
+      throws IOException {
+    corpus = new ArrayList<String[]>();
+    InputStream stream = TunesCommonNameTest.class.getResourceAsStream(CORPUS);
+    assertNotNull("Missing " + CORPUS, stream);
+    BufferedReader reader = new BufferedReader(
+        new InputStreamReader(stream, StandardCharsets.UTF_8));
+    try {
+      String line = reader.readLine();
+      while (line != null) {
+        String[] fields = line.split("\t", -1);
+        assertEquals("Malformed line: " + line, 
+            NAME_TYPES.length + 1, fields.length);
+        corpus.add(fields);
+        line = reader.readLine();
+      }
+    } finally {
+      reader.close();
+    }
+    TunesCommonName.getCache().clear();
+  }
+  
+  /**
+   Reduce every name in the corpus twice: once with an empty cache, so that 
+   each key is computed, and once more, so that each is found in the cache. 
+  */
+  @Test
+  public void keysMatchCorpus() {
+    assertFalse(corpus.isEmpty());
+    for (int pass = 0; pass < 2; pass++) {
+      for (String[] fields : corpus) {
+        for (int i = 0; i < NAME_TYPES.length; i++) {
+          TunesCommonName commonName = new TunesCommonName();
+          commonName.setName(fields[0], NAME_TYPES[i]);
+          assertArrayEquals("Key of type " + String.valueOf(NAME_TYPES[i])
+                + " for '" + fields[0] + "'",
+              fields[i + 1].getBytes(StandardCharsets.UTF_8), 
+              commonName.getName().getBytes(StandardCharsets.UTF_8));
+        }
+      }
+    }
+  }
+  
+  @Test
+  public void equalKeysAreEqualNames() {
+    for (String[] fields : corpus) {
+      for (int i = 0; i < NAME_TYPES.length; i++) {
+        TunesCommonName name1 = new TunesCommonName();
+        name1.setName(fields[0], NAME_TYPES[i]);
+        TunesCommonName name2 = new TunesCommonName();
+        name2.setName(new String(fields[0]), NAME_TYPES[i]);
+        assertEquals(name1, name2);
+        assertEquals(name1.hashCode(), name2.hashCode());
+        assertEquals(0, name1.compareTo(name2));
+      }
+    }
+  }
+  
+}